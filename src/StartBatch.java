@@ -0,0 +1,83 @@
+import logging.Log;
+import sim.constants.Constants;
+import sim.constants.Globals;
+import sim.logic.BatchRunner;
+import sim.logic.Simulator;
+
+import java.io.File;
+
+/**
+ * Runs schematics from the command line, without opening any window.
+ *
+ * Usage: StartBatch [-ticks n] [-idle] [-noskip] [-minecraft folder] input output
+ * The input is a schematic or a folder of them, the output is a folder for the results. With -noskip, ticks in which
+ * nothing would happen are still ticked one by one.
+ */
+public class StartBatch {
+
+	public static void main(String[] args) {
+
+		System.setProperty("java.awt.headless", "true");
+
+		int ticks = Constants.BATCH_TICKS;
+		boolean untilIdle = false;
+		boolean skipIdle = Constants.SKIP_IDLE;
+		String minecraftFolder = null;
+		File input = null, output = null;
+
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "-ticks":
+					ticks = Integer.parseInt(args[++i]);
+					break;
+				case "-idle":
+					untilIdle = true;
+					break;
+				case "-noskip":
+					skipIdle = false;
+					break;
+				case "-minecraft":
+					minecraftFolder = args[++i];
+					break;
+				default:
+					if (input == null)
+						input = new File(args[i]);
+					else
+						output = new File(args[i]);
+			}
+		}
+
+		if (input == null || output == null) {
+			System.err.println("Usage: StartBatch [-ticks n] [-idle] [-noskip] [-minecraft folder] input output");
+			System.exit(2);
+		}
+
+		if (minecraftFolder == null)
+			minecraftFolder = Globals.findMinecraftFolder();
+
+		if (minecraftFolder == null) {
+			Log.e("Could not find the .minecraft folder, give it with -minecraft");
+			System.exit(1);
+		}
+
+		try {
+			BatchRunner runner = new BatchRunner(new Simulator(Constants.MCPCONFFOLDER, minecraftFolder));
+			runner.setSkipIdle(skipIdle);
+
+			if (input.isDirectory())
+				runner.runDirectory(input, output, ticks, untilIdle);
+
+			else {
+				if (!output.isDirectory() && !output.mkdirs())
+					throw new IllegalArgumentException("Could not create the output folder: " + output);
+
+				runner.run(input, new File(output, input.getName()),
+						new File(output, input.getName() + Constants.BATCH_METRICSEXTENSION), ticks, untilIdle);
+			}
+
+		} catch (Exception e) {
+			Log.e("Could not run the batch: " + e);
+			System.exit(1);
+		}
+	}
+}
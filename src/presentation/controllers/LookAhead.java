@@ -0,0 +1,233 @@
+package presentation.controllers;
+
+import logging.Log;
+import presentation.objects.Entity;
+import sim.constants.Constants;
+import sim.objects.BlockChanges;
+import sim.objects.SchematicState;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Simulates ahead of what is shown, on its own thread, into a bounded queue of frames that are ready to be shown.
+ * A slow tick then only eats into the queue instead of stalling playback, and the simulation never waits on drawing.
+ *
+ * While it runs, nothing else may use the simulation. Stopping it leaves the simulation at the last tick that was
+ * simulated, which can be ahead of the last frame that was taken.
+ */
+class LookAhead {
+
+	private final SimController simController;
+	private final BlockingQueue<Frame> frames;
+
+	private Producer producer;
+
+	// The last tick that was simulated
+	private volatile int tick;
+
+	// How long a tick took on average
+	private volatile long nanosPerTick;
+
+	// Whether only some frames get what's needed to show them, and at least how many ms apart
+	private volatile boolean sampling;
+	private volatile int sampleDelay;
+
+	// Whether ticks in which nothing would happen are skipped
+	private volatile boolean skipping;
+
+	// Whether the producer gave up because the simulation failed
+	private volatile boolean failed;
+
+	public LookAhead(SimController simController, int capacity) {
+		this.simController = simController;
+
+		frames = new ArrayBlockingQueue<>(capacity);
+	}
+
+	/**
+	 * Starts simulating ticks after the given one, the simulation is expected to be at that tick.
+	 */
+	public synchronized void start(int tick, long nanosPerTick) {
+
+		if (producer != null)
+			return;
+
+		this.tick = tick;
+		this.nanosPerTick = nanosPerTick;
+		failed = false;
+
+		frames.clear();
+
+		producer = new Producer();
+		producer.start();
+	}
+
+	/**
+	 * When sampling, most frames are only good for the time line. Getting the blocks and entities to show isn't
+	 * free, so that's only done for a frame when the last one that got them is long enough ago.
+	 * @param sampleDelay At least how many ms there are between two frames that can be shown.
+	 */
+	public void setSampling(boolean sampling, int sampleDelay) {
+		this.sampling = sampling;
+		this.sampleDelay = sampleDelay;
+	}
+
+	/**
+	 * When skipping, the ticks before the next one in which something happens are left out, the frames' ticks jump
+	 * ahead by that many. See {@link sim.logic.SimWorld#skipIdleTicks(int)}.
+	 */
+	public void setSkipping(boolean skipping) {
+		this.skipping = skipping;
+	}
+
+	/**
+	 * Stops simulating and throws away the frames that weren't taken yet. The block changes in those are lost with
+	 * them, so the next time the blocks are asked for, it's all of them.
+	 * @return The tick the simulation was left at.
+	 */
+	public synchronized int stop() {
+
+		if (producer != null) {
+			producer.running = false;
+			producer.interrupt();
+
+			try {
+				producer.join();
+			} catch (InterruptedException e) {
+				Log.e("Interrupted while waiting for the look ahead to stop");
+				Thread.currentThread().interrupt();
+			}
+
+			producer = null;
+			simController.markAllBlocksChanged();
+		}
+
+		frames.clear();
+		return tick;
+	}
+
+	public synchronized boolean isRunning() {
+		return producer != null;
+	}
+
+	/**
+	 * Whether it stopped simulating on its own because a tick couldn't be gotten from the simulation. The frames
+	 * before that can still be taken, it has to be stopped after.
+	 */
+	public boolean hasFailed() {
+		return failed;
+	}
+
+	/**
+	 * The next frame, without waiting.
+	 * @return null if it isn't ready yet.
+	 */
+	public Frame poll() {
+		return frames.poll();
+	}
+
+	/**
+	 * Takes all frames that are ready, without waiting.
+	 */
+	public int drainTo(List<Frame> list) {
+		return frames.drainTo(list);
+	}
+
+	public long getNanosPerTick() {
+		return nanosPerTick;
+	}
+
+	private class Producer extends Thread {
+
+		private volatile boolean running = true;
+
+		Producer() {
+			super("Look ahead");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+
+			long lastSample = 0;
+
+			try {
+
+				while (running) {
+
+					int skipped = skipping ? simController.skipIdleTicks(Constants.SKIP_IDLE_MAX) : 0;
+
+					long start = System.nanoTime();
+
+					if (!simController.tick()) {
+						Log.e("Could not simulate tick " + (tick + skipped + 1) + ", the look ahead stops");
+						failed = true;
+						return;
+					}
+
+					nanosPerTick = (nanosPerTick * 7 + System.nanoTime() - start) / 8;
+
+					tick += skipped + 1;
+
+					long now = System.currentTimeMillis();
+					boolean sample = !sampling || now - lastSample >= sampleDelay;
+
+					if (sample)
+						lastSample = now;
+
+					// One trip to the simulation thread for all of it, the schematic is copied there since its blocks
+					// are written to again by the next tick
+					int frameTick = tick;
+					Frame frame = simController.batch(simWorld -> new Frame(frameTick,
+							SchematicState.fromTag(simWorld.getSchematic()), simWorld.getTickChanges(),
+							sample ? simWorld.getBlockChanges() : null, sample ? simWorld.getEntityObjects() : null));
+
+					if (frame == null) {
+						Log.e("Could not get tick " + tick + " from the simulation, the look ahead stops");
+						failed = true;
+						return;
+					}
+
+					// Blocks while the queue is full, until a frame is taken or this is stopped
+					frames.put(frame);
+				}
+
+			} catch (InterruptedException ignored) {
+				// Stopped while waiting for room, the simulation is still at the last tick
+			}
+		}
+	}
+
+	/**
+	 * Everything about one tick that is needed to show it and to put it on the time line. The blocks and entities
+	 * are null if the frame wasn't sampled. The blocks are what changed since the last sampled frame, so every sampled
+	 * frame has to be applied to the view, in order, even the ones that aren't shown. The time controller gets its
+	 * own ticks and edits from the simulation as a frame too.
+	 */
+	public static class Frame {
+
+		// Can be more than one after the tick before, if idle ticks were skipped in between
+		public final int tick;
+		public final SchematicState state;
+
+		// What changed in just this tick, null if that isn't known
+		public final int[] tickChanges;
+
+		public final BlockChanges blocks;
+		public final Entity[] entities;
+
+		Frame(int tick, SchematicState state, int[] tickChanges, BlockChanges blocks, Entity[] entities) {
+			this.tick = tick;
+			this.state = state;
+			this.tickChanges = tickChanges;
+			this.blocks = blocks;
+			this.entities = entities;
+		}
+
+		public boolean canShow() {
+			return blocks != null;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package presentation.controllers;
+
+import logging.Log;
+import presentation.main.Constants;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Puts a world's beans on the platform MBean server, as mcsim:type=...,name="world name",id=n. They can be looked at
+ * with jconsole or any other JMX client on this machine.
+ */
+class MBeans {
+
+    // Tells apart the beans of worlds by the same name
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private MBeans() {
+    }
+
+    /**
+     * @return The name it got, null if it couldn't be registered.
+     */
+    public static ObjectName register(Object bean, String type, String worldName) {
+
+        try {
+            ObjectName name = new ObjectName(Constants.JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(worldName)
+                    + ",id=" + ids.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, name);
+
+            return name;
+
+        } catch (JMException e) {
+            Log.w("Could not publish the " + type.toLowerCase() + " of " + worldName + " over JMX: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+
+        if (name == null)
+            return;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+
+        } catch (JMException e) {
+            Log.w("Could not remove " + name + " from JMX: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package presentation.controllers;
+
+import java.util.Map;
+
+/**
+ * Minecraft's profiler for one world, over JMX. Registered as mcsim:type=Profiler,name="world name".
+ */
+public interface ProfilerMXBean {
+
+    /**
+     * The sections of Minecraft's profiler that took the most time over the last ticks, in average ns per tick.
+     */
+    Map<String, Long> getHottestSections();
+
+    /**
+     * How many ticks the sections are averaged over.
+     */
+    int getWindowTicks();
+
+    /**
+     * Forgets what was measured so far, along with the tick metrics.
+     */
+    void clear();
+}
@@ -0,0 +1,59 @@
+package presentation.controllers;
+
+import presentation.main.Constants;
+import sim.objects.ProfilerWindow;
+
+import javax.management.ObjectName;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes a world's profiler sections over JMX, for as long as the world is open.
+ */
+class ProfilerMonitor implements ProfilerMXBean {
+
+    private final SimController simController;
+
+    private ObjectName objectName;
+
+    public ProfilerMonitor(SimController simController) {
+        this.simController = simController;
+    }
+
+    public void register(String worldName) {
+        objectName = MBeans.register(this, "Profiler", worldName);
+    }
+
+    public void unregister() {
+        MBeans.unregister(objectName);
+        objectName = null;
+    }
+
+    @Override
+    public Map<String, Long> getHottestSections() {
+
+        List<ProfilerWindow.Section> hottest = simController.batch(
+                simWorld -> simWorld.getProfilerWindow().getHottest(Constants.PROFILER_HOTTEST));
+
+        Map<String, Long> sections = new LinkedHashMap<>();
+
+        if (hottest != null)
+            for (ProfilerWindow.Section section : hottest)
+                sections.put(section.name, section.nanosPerTick);
+
+        return sections;
+    }
+
+    @Override
+    public int getWindowTicks() {
+
+        Integer ticks = simController.batch(simWorld -> simWorld.getProfilerWindow().getTicks());
+        return ticks == null ? 0 : ticks;
+    }
+
+    @Override
+    public void clear() {
+        simController.clearMetrics();
+    }
+}
@@ -1,45 +1,112 @@
 package presentation.controllers;
 
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.TimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
 import logging.Log;
 import presentation.objects.Entity;
 import sim.logic.SimWorld;
+import sim.objects.BlockChanges;
+import sim.objects.SchematicDelta;
+import sim.objects.TickMetrics;
 import utils.Tag;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * Largely responsible for catching errors and giving meaningful messages back
  * to the GUI. Fuck I hate this class.
+ *
+ * Everything is run on the world's own {@link SimThread}. Calls that don't give
+ * anything back are only queued, whatever is asked after them still sees them.
  */
 public class SimController {
 
-    private static final int SUF = 5; // Seconds Until Failure
-
     private final SimWorld simWorld;
 
-    private final TimeLimiter limiter;
+    private final SimThread simThread;
 
-    public SimController(SimWorld simWorld) {
+    public SimController(SimWorld simWorld, String name) {
         this.simWorld = simWorld;
 
-        limiter = new SimpleTimeLimiter();
+        simThread = new SimThread(name);
+        simThread.start();
+    }
+
+    /**
+     * Something to run on the simulation thread with the world.
+     */
+    public interface Query<T> {
+        T run(SimWorld simWorld) throws Exception;
+    }
+
+    /**
+     * Runs a bunch of queries on the world in one go, instead of a trip to
+     * the simulation thread for each of them.
+     * @return null if it failed.
+     */
+    public <T> T batch(Query<T> query) {
+
+        try {
+            return simThread.call(() -> query.run(simWorld));
+
+        } catch (Exception e) {
+
+            Log.e("Could not query the simulator" + analyseException(e));
+            return null;
+        }
+    }
+
+    /**
+     * Like {@link #batch(Query)}, but doesn't wait for it.
+     */
+    public <T> Future<T> submit(Query<T> query) {
+        return simThread.submit(() -> query.run(simWorld));
+    }
+
+    /**
+     * Stops the simulation thread once everything that was queued is done.
+     */
+    public void close() {
+        simThread.shutdown();
+    }
+
+    /**
+     * How long the last thing the simulation did took, in ns.
+     */
+    public long getLastCommandNanos() {
+        return simThread.getLastCommandNanos();
+    }
+
+    private void post(String error, Callable<?> command) {
+
+        simThread.submit(() -> {
+
+            try {
+                return command.call();
+
+            } catch (Exception e) {
+
+                try {
+                    Log.e(error + analyseException(e));
+                } catch (RuntimeException cause) {
+                    Log.e(error + ": " + cause);
+                }
+
+                return null;
+            }
+        });
     }
 
     public void setSchematic(Tag schematic) {
 
         try {
 
-            limiter.callWithTimeout(() -> {
+            simThread.call(() -> {
                 simWorld.setSchematic(schematic);
                 return null;
-            }, SUF, TimeUnit.SECONDS, false);
+            });
 
         } catch (Exception e) {
 
@@ -47,11 +114,29 @@ public class SimController {
         }
     }
 
+    /**
+     * Moves the simulation to a neighbouring state in place, see {@link SimWorld#restore(Tag, SchematicDelta, boolean)}
+     */
+    public void restore(Tag schematic, SchematicDelta delta, boolean forward) {
+
+        try {
+
+            simThread.call(() -> {
+                simWorld.restore(schematic, delta, forward);
+                return null;
+            });
+
+        } catch (Exception e) {
+
+            Log.e("Failed to restore the simulator " + analyseException(e));
+        }
+    }
+
     public Tag getSchematic() {
 
         try {
 
-            return limiter.callWithTimeout(() -> simWorld.getSchematic(), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.getSchematic());
 
         } catch (Exception e) {
 
@@ -64,10 +149,10 @@ public class SimController {
 
         try {
 
-            limiter.callWithTimeout(() -> {
+            simThread.call(() -> {
                 simWorld.createEmptyWorld(xSize, ySize, zSize);
                 return null;
-            }, SUF, TimeUnit.SECONDS, false);
+            });
 
         } catch (Exception e) {
 
@@ -80,10 +165,10 @@ public class SimController {
 
         try {
 
-            limiter.callWithTimeout(() -> {
+            simThread.call(() -> {
                 simWorld.getSchematic(output);
                 return null;
-            }, SUF, TimeUnit.SECONDS, false);
+            });
 
         } catch (Exception e) {
 
@@ -91,11 +176,19 @@ public class SimController {
         }
     }
 
+    /**
+     * Ticks the world once. What {@link SimWorld#tickWorld()} returns says whether tile ticks were left for later, not
+     * whether it worked, so it isn't passed on.
+     * @return false if the tick failed.
+     */
     public boolean tick() {
 
         try {
 
-            return limiter.callWithTimeout(() -> simWorld.tickWorld(), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> {
+                simWorld.tickWorld();
+                return true;
+            });
 
         } catch (Exception e) {
 
@@ -104,67 +197,80 @@ public class SimController {
         }
     }
 
-    public void setBlock(int x, int y, int z, byte blockId, byte blockData, boolean update) {
+    /**
+     * Moves the world past the ticks in which nothing would happen, see {@link SimWorld#skipIdleTicks(int)}.
+     * @return How many ticks were skipped.
+     */
+    public int skipIdleTicks(int max) {
 
         try {
 
-            limiter.callWithTimeout(() -> {
-                simWorld.setBlock(x, y, z, blockId, blockData, update);
-                return null;
-            }, SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.skipIdleTicks(max));
 
         } catch (Exception e) {
 
-            Log.e("Could not set block" + analyseException(e));
+            Log.e("Could not skip idle ticks" + analyseException(e));
+            return 0;
         }
     }
 
-    public void activateBlock(int x, int y, int z) {
+    public void setBlock(int x, int y, int z, byte blockId, byte blockData, boolean update) {
 
-        try {
-            limiter.callWithTimeout(() -> {
-                simWorld.onBlockActivated(x, y, z);
-                return null;
-            }, SUF, TimeUnit.SECONDS, false);
+        post("Could not set block", () -> {
+            simWorld.setBlock(x, y, z, blockId, blockData, update);
+            return null;
+        });
+    }
 
-        } catch (Exception e) {
+    /**
+     * Sets a whole box of blocks at once, see {@link SimWorld#setRegion(int, int, int, int, int, int, char[], boolean)}.
+     */
+    public void setRegion(int x, int y, int z, int xSize, int ySize, int zSize, char[] blocks, boolean update) {
 
-            Log.e("Could not activate block (" + x + ", " + y + ", " + z + "): " + analyseException(e));
-        }
+        post("Could not set region", () -> simWorld.setRegion(x, y, z, xSize, ySize, zSize, blocks, update));
     }
 
-    public void updateBlock(int x, int y, int z, boolean randomUpdate) {
+    public void fill(int x, int y, int z, int xSize, int ySize, int zSize, char block, boolean update) {
 
-        try {
-            limiter.callWithTimeout(() -> {
-                simWorld.updateBlock(x, y, z, randomUpdate);
-                return null;
-            }, SUF, TimeUnit.SECONDS, false);
+        post("Could not fill region", () -> simWorld.fill(x, y, z, xSize, ySize, zSize, block, update));
+    }
 
-        } catch (Exception e) {
+    public void copyRegion(int fromX, int fromY, int fromZ, int xSize, int ySize, int zSize, int toX, int toY, int toZ, boolean update) {
 
-            Log.e("Could not update block (" + x + ", " + y + ", " + z + "): " + analyseException(e));
-        }
+        post("Could not copy region", () -> simWorld.copyRegion(fromX, fromY, fromZ, xSize, ySize, zSize, toX, toY, toZ, update));
     }
 
-    public void debug(int x, int y, int z) {
+    public void activateBlock(int x, int y, int z) {
 
-        try {
-            limiter.callWithTimeout(() -> {
-                simWorld.debug(x, y, z);
-                return null;
-            }, SUF, TimeUnit.SECONDS, false);
+        post("Could not activate block (" + x + ", " + y + ", " + z + ")", () -> {
+            simWorld.onBlockActivated(x, y, z);
+            return null;
+        });
+    }
 
-        } catch (Exception e) {
+    public void updateBlock(int x, int y, int z, boolean randomUpdate) {
 
-            Log.e("Could not debug block (" + x + ", " + y + ", " + z + "): " + analyseException(e));
-        }
+        post("Could not update block (" + x + ", " + y + ", " + z + ")", () -> {
+            simWorld.updateBlock(x, y, z, randomUpdate);
+            return null;
+        });
     }
 
-    public char[][][] getBlocks() {
+    public void debug(int x, int y, int z) {
+
+        post("Could not debug block (" + x + ", " + y + ", " + z + ")", () -> {
+            simWorld.debug(x, y, z);
+            return null;
+        });
+    }
+
+    /**
+     * What changed since this was last asked, see {@link SimWorld#getBlockChanges()}.
+     */
+    public BlockChanges getBlockChanges() {
 
         try {
-            return limiter.callWithTimeout(() -> simWorld.getBlocks(), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.getBlockChanges());
 
         } catch (Exception e) {
 
@@ -173,10 +279,21 @@ public class SimController {
         }
     }
 
+    /**
+     * For when changes were taken but not shown, the next {@link #getBlockChanges()} gets every block.
+     */
+    public void markAllBlocksChanged() {
+
+        post("Could not mark the blocks as changed", () -> {
+            simWorld.markAllBlocksChanged();
+            return null;
+        });
+    }
+
     public Object getBlockState(int x, int y, int z) {
 
         try {
-            return limiter.callWithTimeout(() -> simWorld.getBlockState(x, y, z), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.getBlockState(x, y, z));
         } catch (Exception e) {
 
             Log.e("Could not get block state" + analyseException(e));
@@ -187,7 +304,7 @@ public class SimController {
     public Object getBlockFromState(Object blockState) {
 
         try {
-            return limiter.callWithTimeout(() -> simWorld.getBlockFromState(blockState), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.getBlockFromState(blockState));
         } catch (Exception e) {
 
             Log.e("Could not get block from state" + analyseException(e));
@@ -198,7 +315,7 @@ public class SimController {
     public Entity[] getEntityObjects() {
 
         try {
-            return limiter.callWithTimeout(() -> simWorld.getEntityObjects(), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.getEntityObjects());
 
         } catch (Exception e) {
 
@@ -207,10 +324,37 @@ public class SimController {
         }
     }
 
+    /**
+     * A copy of how long ticks and their phases took, see {@link SimWorld#getMetrics()}.
+     */
+    public TickMetrics getMetrics() {
+
+        try {
+            return simThread.call(() -> simWorld.getMetrics().copy());
+
+        } catch (Exception e) {
+
+            Log.e("Could not get the tick metrics" + analyseException(e));
+            return null;
+        }
+    }
+
+    /**
+     * Forgets the tick metrics and what Minecraft's profiler measured so far.
+     */
+    public void clearMetrics() {
+
+        post("Could not clear the tick metrics", () -> {
+            simWorld.getMetrics().clear();
+            simWorld.getProfilerWindow().clear();
+            return null;
+        });
+    }
+
     public long getWorldTime() {
 
         try {
-            return limiter.callWithTimeout(() -> simWorld.getWorldTime(), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.getWorldTime());
         } catch (Exception e) {
 
             Log.e("Could not get the world time: " + analyseException(e));
@@ -221,7 +365,7 @@ public class SimController {
     public boolean isFullCube(Object block) {
 
         try {
-            return limiter.callWithTimeout(() -> simWorld.isFullCube(block), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.isFullCube(block));
 
         } catch (Exception e) {
 
@@ -233,7 +377,7 @@ public class SimController {
     public boolean isOpaque(Object block) {
 
         try {
-            return limiter.callWithTimeout(() -> simWorld.isOpaque(block), SUF, TimeUnit.SECONDS, false);
+            return simThread.call(() -> simWorld.isOpaque(block));
 
         } catch (Exception e) {
 
@@ -278,10 +422,6 @@ public class SimController {
             else
                 msg = "Invocation failed with error: " + cause;
 
-        } else if (e instanceof UncheckedTimeoutException || e instanceof TimeoutException) {
-
-            msg = "A call took too long (> " + SUF + " sec): " + e.getStackTrace()[1].getMethodName();
-
         } else
             msg = "Error: " + e.getClass();
 
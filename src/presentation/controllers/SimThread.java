@@ -0,0 +1,169 @@
+package presentation.controllers;
+
+import logging.Log;
+import sim.constants.Constants;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The one thread that touches a world's Minecraft objects. Everything else hands it commands, which are run in the
+ * order they were given, so a read that is queued after a write sees that write.
+ *
+ * Nothing is ever killed for taking too long, Minecraft doesn't survive that. Instead a watchdog keeps an eye on how
+ * long the current command runs and says where it's at when it's slow.
+ */
+class SimThread extends Thread {
+
+	private final BlockingQueue<FutureTask<?>> commands;
+	private final Timer watchdog;
+
+	private volatile boolean running = true;
+
+	// When the current command started in ns, 0 when idle, and whether the watchdog already complained about it
+	private volatile long commandStart;
+	private volatile boolean reported;
+
+	private volatile long lastCommandNanos;
+
+	public SimThread(String name) {
+		super("Simulation " + name);
+		setDaemon(true);
+
+		commands = new LinkedBlockingQueue<>();
+
+		watchdog = new Timer("Simulation watchdog " + name, true);
+		watchdog.schedule(new Watchdog(), Constants.SIM_WATCHDOG_INTERVAL, Constants.SIM_WATCHDOG_INTERVAL);
+	}
+
+	/**
+	 * Queues a command without waiting on it.
+	 */
+	public <T> Future<T> submit(Callable<T> command) {
+
+		FutureTask<T> task = new FutureTask<>(command);
+
+		if (!running)
+			task.cancel(false);
+		else
+			commands.add(task);
+
+		return task;
+	}
+
+	/**
+	 * Runs a command and waits for it. Interrupts are held off until it's done, the simulation can't be left halfway.
+	 * From the simulation thread itself, the command is run right away.
+	 */
+	public <T> T call(Callable<T> command) throws Exception {
+
+		if (Thread.currentThread() == this)
+			return command.call();
+
+		Future<T> future = submit(command);
+		boolean interrupted = false;
+
+		try {
+			while (true) {
+				try {
+					return future.get();
+
+				} catch (InterruptedException e) {
+					interrupted = true;
+
+				} catch (ExecutionException e) {
+
+					Throwable cause = e.getCause();
+
+					if (cause instanceof Exception)
+						throw (Exception) cause;
+
+					throw (Error) cause;
+				}
+			}
+
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Lets the commands that were queued run, then stops.
+	 */
+	public void shutdown() {
+
+		running = false;
+		watchdog.cancel();
+
+		// Wakes up the thread when the queue is empty
+		commands.add(new FutureTask<>(() -> null));
+	}
+
+	/**
+	 * How long the last command took, in ns.
+	 */
+	public long getLastCommandNanos() {
+		return lastCommandNanos;
+	}
+
+	@Override
+	public void run() {
+
+		while (running || !commands.isEmpty()) {
+
+			FutureTask<?> command;
+
+			try {
+				command = commands.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+
+			reported = false;
+			long start = System.nanoTime();
+			commandStart = start;
+
+			command.run();
+
+			commandStart = 0;
+			lastCommandNanos = System.nanoTime() - start;
+
+			if (reported)
+				Log.w("The simulation is responsive again, after " + lastCommandNanos / 1000000 + " ms");
+		}
+	}
+
+	private class Watchdog extends TimerTask {
+
+		@Override
+		public void run() {
+
+			long start = commandStart;
+
+			if (start == 0 || reported)
+				return;
+
+			long ms = (System.nanoTime() - start) / 1000000;
+
+			if (ms < Constants.SIM_SLOW_COMMAND)
+				return;
+
+			reported = true;
+
+			StringBuilder trace = new StringBuilder();
+			StackTraceElement[] stack = getStackTrace();
+
+			for (int i = 0; i < Math.min(stack.length, 8); i++)
+				trace.append("\n\tat ").append(stack[i]);
+
+			Log.w("The simulation has been busy for " + ms + " ms" + trace);
+		}
+	}
+}
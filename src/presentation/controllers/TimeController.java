@@ -1,19 +1,33 @@
 package presentation.controllers;
 
 import logging.Log;
+import presentation.gui.time.CheckpointIndex;
 import presentation.gui.time.PlayState;
 import presentation.gui.time.TimeInfo;
 import presentation.gui.time.TimeLine;
+import presentation.gui.time.TimeLineSpill;
+import presentation.gui.windows.main.options.IPreferenceChangedListener;
+import presentation.objects.Entity;
 import presentation.objects.ViewData;
+import sim.constants.Constants;
+import sim.constants.Prefs;
+import sim.objects.BlockChanges;
+import sim.objects.SchematicDelta;
+import sim.objects.SchematicState;
 import utils.Tag;
 
-public class TimeController {
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.prefs.Preferences;
+
+public class TimeController implements IPreferenceChangedListener {
 	
-	private final TimeLine<Tag> timeLine;
+	private final TimeLine timeLine;
 
 	private int tickCounter = 0;
-    private int minCount = 0;
-	private int maxCount = 0;
 	
 	private final WorldController worldController;
 	private final SimController simController;
@@ -22,6 +36,21 @@ public class TimeController {
 
 	private final TimeInfo timeInfo;
 
+	// Simulates ahead while playing forward past the end of the time line
+	private final LookAhead lookAhead;
+
+	// How long a tick takes on average, for deciding between loading and ticking when seeking
+	private long nanosPerTick = Constants.TIMELINE_TICK_COST;
+
+	// The tick the simulation was left at by the last seek, -1 if it's at the time line's current tick
+	private int seekTick = -1;
+
+	// When the frame that is shown now was shown, to keep playback at a steady rate
+	private long lastFrameTime;
+
+	// The tick of the frame that is shown now, when rushing that's not every tick
+	private int shownTick;
+
 	private boolean goForward, isPaused, hasDelay;
 	private boolean go;
     private Thread thready;
@@ -34,7 +63,22 @@ public class TimeController {
 		timeInfo = worldController.getMainController().getFrame().getTimebar();
 		viewData = worldController.getWorldData();
 		
-		timeLine = new TimeLine<>(sim.constants.Constants.TIMELINE_LENGTH);
+		Preferences prefs = Preferences.userRoot();
+		timeLine = new TimeLine(prefs.getInt(Prefs.TIMELINE_BUDGET, Constants.TIMELINE_BUDGET) * 1024L * 1024L,
+				Constants.TIMELINE_KEYFRAME_INTERVAL, Constants.TIMELINE_MAX_THINNING,
+				prefs.getBoolean(Prefs.TIMELINE_THINNING, Constants.TIMELINE_THINNING));
+
+		if (prefs.getBoolean(Prefs.TIMELINE_SPILL, Constants.TIMELINE_SPILL))
+			timeLine.setSpill(createSpill());
+
+		timeLine.setCheckpoints(new CheckpointIndex(Constants.TIMELINE_CHECKPOINT_INTERVAL, Constants.TIMELINE_MAX_CHECKPOINTS,
+				Constants.TIMELINE_MAX_PINNED, Constants.TIMELINE_CHECKPOINT_BUDGET * 1024L * 1024L));
+
+		lookAhead = new LookAhead(simController, Constants.LOOKAHEAD_FRAMES);
+
+		worldController.getMainController().getOptionsController().registerPreferenceListener(Prefs.TIMELINE_BUDGET, this);
+		worldController.getMainController().getOptionsController().registerPreferenceListener(Prefs.TIMELINE_THINNING, this);
+		worldController.getMainController().getOptionsController().registerPreferenceListener(Prefs.TIMELINE_SPILL, this);
 		
 		setPlaystate(PlayState.PAUSED);
 	}
@@ -43,21 +87,44 @@ public class TimeController {
 
 		isPaused = true;
 
-		viewData.setState(simController.getBlocks(), simController.getEntityObjects());
-		timeLine.init(simController.getSchematic());
+		updateView();
+		seekTick = -1;
+
+		Tag schematic = simController.getSchematic();
 
-		timeInfo.setStep(0);
+		// The first tick that does get a schematic starts the time line instead
+		if (schematic != null)
+			timeLine.init(schematic, 0);
+		else
+			Log.e("Could not get the world's schematic, the time line starts once it can be gotten");
+
+		setTickCounter(0);
 		go = true;
         (thready = new Thready()).start();
 	}
 
-	private Tag tick() {
-		simController.tick();
+	private void tick() {
+		timedTick();
+		seekTick = -1;
 
-		Tag schematic = simController.getSchematic();
-		timeLine.add(schematic);
+		// The schematic is copied on the simulation thread, its blocks are written to again by the next tick
+		int tick = tickCounter + 1;
+		LookAhead.Frame frame = simController.batch(simWorld -> new LookAhead.Frame(tick,
+				SchematicState.fromTag(simWorld.getSchematic()), simWorld.getTickChanges(), null, null));
 
-		return schematic;
+		if (frame == null) {
+			Log.e("Could not get the schematic after tick " + (tickCounter + 1) + ", pausing");
+
+			// The simulation is a tick past the time line now
+			if (timeLine.getEntryCount() > 0)
+				seekTick = tickCounter + 1;
+
+			pause();
+
+			return;
+		}
+
+		timeLine.add(frame.state, frame.tick, frame.tickChanges);
 	}
 	
 	public synchronized void setPlaystate(PlayState playState) {
@@ -67,12 +134,14 @@ public class TimeController {
 			case START:
 				isPaused = true;
 				hasDelay = false;
+				stopLookAhead();
+				seekTick = -1;
 
 				simController.setSchematic(timeLine.first());
-				viewData.setState(simController.getBlocks(), simController.getEntityObjects());
+				updateView();
 
 				worldController.onSchematicUpdated();
-                setTickCounter(minCount);
+                setTickCounter(timeLine.getTick());
 				break;
 
 			case RUSHBACK:
@@ -130,13 +199,15 @@ public class TimeController {
 			case END:
 				isPaused = true;
 				hasDelay = false;
+				stopLookAhead();
+				seekTick = -1;
 
 				// TODO setSchematic may not be necessary
 				simController.setSchematic(timeLine.last());
-				viewData.setState(simController.getBlocks(), simController.getEntityObjects());
+				updateView();
 
 				worldController.onSchematicUpdated();
-                setTickCounter(maxCount);
+                setTickCounter(timeLine.getTick());
                 timeInfo.setBackEnabled(true);
 		}
 	}
@@ -149,12 +220,7 @@ public class TimeController {
 
     private void setTickCounter(int tickCounter) {
         timeInfo.setStep(tickCounter);
-
-        if (tickCounter > maxCount)
-            this.maxCount = tickCounter;
-
-        if (tickCounter - minCount > sim.constants.Constants.TIMELINE_LENGTH)
-            this.minCount = tickCounter - sim.constants.Constants.TIMELINE_LENGTH;
+        timeInfo.setRange(getTickStartRange(), getTickEndRange(), timeLine.getRetainedBytes());
 
         this.tickCounter = tickCounter;
     }
@@ -164,46 +230,346 @@ public class TimeController {
 	 */
 	public void loadCurrentTimeIntoSchematic(boolean ignoreIfAtEnd) {
 
-		if (ignoreIfAtEnd && timeLine.atEnd())
+		stopLookAhead();
+
+		if (ignoreIfAtEnd && timeLine.atEnd() && seekTick < 0)
 			return;
 
 		simController.setSchematic(timeLine.get());
+		seekTick = -1;
 	}
 
+	/**
+	 * Puts what the simulation is at now on the time line in place of the current tick, after an edit. Only the blocks
+	 * that changed since the view was last brought up to date are compared and written to the view.
+	 */
 	public void updateCurrentSchematic() {
-		Tag schem = simController.getSchematic();
+		stopLookAhead();
 
-		timeLine.set(schem);
-		viewData.setState(simController.getBlocks(), simController.getEntityObjects());
+		int tick = tickCounter;
+		LookAhead.Frame frame = simController.batch(simWorld -> new LookAhead.Frame(tick,
+				SchematicState.fromTag(simWorld.getSchematic()), null, simWorld.getBlockChanges(),
+				simWorld.getEntityObjects()));
+		seekTick = -1;
+
+		if (frame == null) {
+			Log.e("Could not get the schematic after an edit, the time line is left as it was");
+			return;
+		}
+
+		timeLine.set(frame.state, frame.blocks.isComplete() ? null : frame.blocks.getPositions());
+		viewData.applyChanges(frame.blocks);
+		viewData.setEntities(frame.entities);
 
 		worldController.onSchematicUpdated();
 	}
+
+	/**
+	 * Brings the view up to what the simulation is at now, the blocks and the entities in one trip to it.
+	 */
+	private void updateView() {
+
+		ViewState state = simController.batch(simWorld -> new ViewState(simWorld.getBlockChanges(),
+				simWorld.getEntityObjects()));
+
+		// The changes may have been taken before it failed, so the next time gets every block
+		if (state == null) {
+			simController.markAllBlocksChanged();
+			return;
+		}
+
+		viewData.setState(state.blocks, state.entities);
+	}
 	
 	public void stopThread() {
 		go = false;
+		stopLookAhead();
+
+		// Gets rid of the files
+		timeLine.setSpill(null);
 	}
 
 	public int getTickCount() {
 		return tickCounter;
 	}
 
+    /**
+     * The oldest tick that is still buffered
+     */
     public int getTickStartRange() {
-        return minCount;
+        return timeLine.getFirstTick();
     }
 
+    /**
+     * The newest tick that is buffered
+     */
     public int getTickEndRange() {
-        return maxCount;
+        return timeLine.getLastTick();
+    }
+
+    /**
+     * The oldest tick that can still be gone to, by ticking forward from a checkpoint if it's no longer buffered
+     */
+    public int getTickSeekRange() {
+        int checkpoint = timeLine.getCheckpoints().getFirstTick();
+        return checkpoint < 0 ? getTickStartRange() : Math.min(checkpoint, getTickStartRange());
+    }
+
+    public long getRetainedBytes() {
+        return timeLine.getRetainedBytes();
+    }
+
+    public int getTimeLineEntryCount() {
+        return timeLine.getEntryCount();
+    }
+
+    /**
+     * Pauses playback, like the pause button does, for when it's asked from outside the time bar. Like the other two
+     * below, this can be called from any thread, the time bar is brought along on Swing's.
+     */
+    public void pause() {
+        setPlaystate(PlayState.PAUSED);
+        SwingUtilities.invokeLater(() -> timeInfo.setPaused(true));
+    }
+
+    /**
+     * Goes one tick forward and stays paused, like the step button does.
+     */
+    public void step() {
+        SwingUtilities.invokeLater(() -> {
+            timeInfo.setPaused(true);
+            timeInfo.setBackEnabled(true);
+        });
+        setPlaystate(PlayState.STEPFORWARD);
+    }
+
+    /**
+     * Plays forward at the normal rate, like the play button does.
+     */
+    public void play() {
+        SwingUtilities.invokeLater(() -> timeInfo.setPaused(false));
+        setPlaystate(PlayState.PLAYFORWARD);
     }
 
     public void gotoTickCount(int count) {
 
-        if (count < getTickStartRange() || count > getTickEndRange()) {
+        if (count < getTickSeekRange() || count > getTickEndRange()) {
             Log.e("Tickcount out of buffer: " + count);
             return;
         }
 
-        simController.setSchematic(timeLine.getRelative(count - tickCounter));
-        viewData.setState(simController.getBlocks(), simController.getEntityObjects());
+        stopLookAhead();
+        seek(count);
+        updateView();
+    }
+
+    /**
+     * Puts the simulation at a tick. It can load what the time line has, tick forward from the closest buffered tick or
+     * checkpoint before it, or carry on from where the last seek left off, whichever is expected to be the quickest.
+     */
+    private void seek(int count) {
+
+        CheckpointIndex checkpoints = timeLine.getCheckpoints();
+        int checkpoint = checkpoints.getTickAtOrBefore(count);
+        int buffered = timeLine.getTickAtOrBefore(count);
+
+        // Starting from before a checkpoint could mean ticking past an edit, so those are ruled out
+        long bufferedCost = buffered < 0 || buffered < checkpoint ? Long.MAX_VALUE :
+                timeLine.getSeekCost(count) + (count - buffered) * nanosPerTick;
+        long checkpointCost = checkpoint < 0 ? Long.MAX_VALUE : (count - checkpoint) * nanosPerTick;
+        long continueCost = seekTick < 0 || seekTick < checkpoint || seekTick > count ? Long.MAX_VALUE :
+                (count - seekTick) * nanosPerTick;
+
+        int from;
+
+        if (continueCost <= bufferedCost && continueCost <= checkpointCost)
+            from = seekTick;
+
+        else if (bufferedCost <= checkpointCost) {
+            simController.setSchematic(timeLine.getAtTick(count));
+            from = buffered;
+
+        } else {
+            simController.setSchematic(checkpoints.get(checkpoint));
+            from = checkpoint;
+        }
+
+        for (int tick = from; tick < count; tick++)
+            timedTick();
+
+        seekTick = count;
+    }
+
+    /**
+     * Moves the time line and the simulation one tick along. When the simulation is at the time line's current tick,
+     * only what differs is changed, rather than loading the whole schematic.
+     */
+    private Tag step(boolean forward) {
+
+        SchematicDelta delta = seekTick < 0 ? timeLine.getStep(forward) : null;
+        Tag schem = forward ? timeLine.next() : timeLine.prev();
+
+        simController.restore(schem, delta, forward);
+        seekTick = -1;
+
+        return schem;
+    }
+
+    /**
+     * Shows what the look ahead simulated since the last frame, starting it if it isn't running yet. When playing, that's
+     * the next frame. When rushing, every frame that is ready goes on the time line, but only the last one is shown.
+     * @return false if there was nothing new to show.
+     */
+    private boolean showLookAhead() {
+        // Locks the look ahead rather than this, the thread gets here while holding its own lock
+        synchronized (lookAhead) {
+
+            // The play state could have changed since the thread looked
+            if (isPaused || !goForward)
+                return false;
+
+            if (!lookAhead.isRunning()) {
+                // A seek may have left the simulation somewhere else
+                if (seekTick >= 0)
+                    loadCurrentTimeIntoSchematic(false);
+
+                lookAhead.start(timeLine.getTick(), nanosPerTick);
+            }
+
+            // Rushing goes as fast as ticking can, and only grabs something to show as often as it can be drawn
+            lookAhead.setSampling(!hasDelay, worldController.getMinFrameDelay());
+            lookAhead.setSkipping(!hasDelay && Constants.SKIP_IDLE);
+
+            List<LookAhead.Frame> frames = new ArrayList<>();
+
+            if (hasDelay) {
+                LookAhead.Frame frame = lookAhead.poll();
+                if (frame != null)
+                    frames.add(frame);
+
+            } else
+                lookAhead.drainTo(frames);
+
+            if (frames.isEmpty())
+                return false;
+
+            LookAhead.Frame shown = null;
+
+            for (LookAhead.Frame frame : frames) {
+
+                // Only there to be safe, the look ahead stops rather than hand out a frame without a schematic
+                if (frame.state == null)
+                    continue;
+
+                timeLine.add(frame.state, frame.tick, frame.tickChanges);
+
+                if (frame.canShow()) {
+                    viewData.applyChanges(frame.blocks);
+                    shown = frame;
+                }
+            }
+
+            setTickCounter(frames.get(frames.size() - 1).tick);
+            timeInfo.setBackEnabled(true);
+
+            if (shown == null)
+                return false;
+
+            viewData.setEntities(shown.entities);
+            shownTick = shown.tick;
+
+            return true;
+        }
+    }
+
+    /**
+     * Stops the look ahead, if it's running. The simulation is left at the last tick that it simulated, which isn't on
+     * the time line if its frame wasn't shown.
+     */
+    private void stopLookAhead() {
+        synchronized (lookAhead) {
+
+            if (!lookAhead.isRunning())
+                return;
+
+            int tick = lookAhead.stop();
+            nanosPerTick = lookAhead.getNanosPerTick();
+
+            if (tick != timeLine.getTick() || !timeLine.atEnd())
+                seekTick = tick;
+
+            // The last frames of a rush may not have been sampled, the time line's tick is shown when stopping
+            if (shownTick != timeLine.getTick()) {
+                if (seekTick >= 0) {
+                    simController.setSchematic(timeLine.get());
+                    seekTick = -1;
+                }
+
+                updateView();
+                worldController.onSchematicUpdated();
+            }
+        }
+    }
+
+    private void timedTick() {
+
+        long start = System.nanoTime();
+        simController.tick();
+
+        nanosPerTick = (nanosPerTick * 7 + System.nanoTime() - start) / 8;
+    }
+
+    /**
+     * How long a tick is shown when playing, never shorter than a frame at the editor's max fps.
+     */
+    private long getPlayDelay() {
+        return Math.max(Constants.PLAY_TICK_DELAY, worldController.getMinFrameDelay());
+    }
+
+    @Override
+    public void preferenceChanged(String preference) {
+
+        Preferences prefs = Preferences.userRoot();
+
+        if (preference.equals(Prefs.TIMELINE_BUDGET))
+            timeLine.setBudget(prefs.getInt(Prefs.TIMELINE_BUDGET, Constants.TIMELINE_BUDGET) * 1024L * 1024L);
+
+        else if (preference.equals(Prefs.TIMELINE_THINNING))
+            timeLine.setThinning(prefs.getBoolean(Prefs.TIMELINE_THINNING, Constants.TIMELINE_THINNING));
+
+        else if (preference.equals(Prefs.TIMELINE_SPILL))
+            timeLine.setSpill(prefs.getBoolean(Prefs.TIMELINE_SPILL, Constants.TIMELINE_SPILL) ? createSpill() : null);
+
+        timeInfo.setRange(getTickStartRange(), getTickEndRange(), timeLine.getRetainedBytes());
+    }
+
+    /**
+     * A spill in a fresh temporary folder, or null if there's no place to put it.
+     */
+    private TimeLineSpill createSpill() {
+
+        try {
+            return new TimeLineSpill(Files.createTempDirectory(Constants.TIMELINE_SPILL_PREFIX).toFile(),
+                    Constants.TIMELINE_SEGMENT_SIZE * 1024L * 1024L, Constants.TIMELINE_KEYFRAME_INTERVAL);
+
+        } catch (IOException e) {
+            Log.e("Couldn't create a folder to move old ticks to, they'll be dropped instead: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * What the view is brought up to, taken from the simulation in one go.
+     */
+    private static class ViewState {
+
+        final BlockChanges blocks;
+        final Entity[] entities;
+
+        ViewState(BlockChanges blocks, Entity[] entities) {
+            this.blocks = blocks;
+            this.entities = entities;
+        }
     }
 
     private class Thready extends Thread {
@@ -218,28 +584,64 @@ public class TimeController {
 
                 while (go) {
 
-                    if (isPaused)
+                    if (isPaused) {
+                        stopLookAhead();
                         wait();
+                    }
 
-                    if (goForward) {
-                        if (timeLine.atEnd())
-                            schem = tick();
+                    if (goForward && !isPaused && timeLine.atEnd()) {
 
-                        else {
-                            schem = timeLine.next();
-                            simController.setSchematic(schem);
+                        if (!showLookAhead()) {
+
+                            // Out here, pausing takes the controller's lock, which can't be done while holding the look ahead's
+                            if (lookAhead.hasFailed()) {
+                                stopLookAhead();
+                                pause();
+                            }
+
+                            // Nothing was simulated or sampled yet, checks again in a moment
+                            wait(1l);
+                            continue;
                         }
 
-                        setTickCounter(tickCounter + 1);
+                        worldController.onSchematicUpdated();
+
+                        // Playing keeps a steady rate, however long it took to get the frame out
+                        if (hasDelay) {
+                            long delay = lastFrameTime + getPlayDelay() - System.currentTimeMillis();
+                            wait(Math.max(delay, 1l));
+                        } else
+                            wait(1l);
+
+                        lastFrameTime = System.currentTimeMillis();
+                        continue;
+                    }
+
+                    stopLookAhead();
+
+                    if (goForward) {
+                        if (timeLine.atEnd()) {
+                            // A seek may have left the simulation somewhere else
+                            if (seekTick >= 0)
+                                loadCurrentTimeIntoSchematic(false);
+
+                            tick();
+
+                        } else
+                            schem = step(true);
+
+                        setTickCounter(timeLine.getTick());
                         timeInfo.setBackEnabled(true);
 
                     } else {
                         if (timeLine.atStart()) {
                             schem = timeLine.first();
+                            simController.setSchematic(schem);
+                            seekTick = -1;
                             setPlaystate(PlayState.PAUSED);
 
                         } else {
-                            schem = timeLine.prev();
+                            schem = step(false);
 
                             if (timeLine.atStart()) {
                                 setPlaystate(PlayState.PAUSED);
@@ -247,17 +649,15 @@ public class TimeController {
                                 timeInfo.setBackEnabled(false);
                             }
 
-                            setTickCounter(tickCounter - 1);
+                            setTickCounter(timeLine.getTick());
                         }
-
-                        simController.setSchematic(schem);
                     }
 
-                    viewData.setState(simController.getBlocks(), simController.getEntityObjects());
+                    updateView();
                     worldController.onSchematicUpdated();
 
                     if (hasDelay)
-                        wait(100l);
+                        wait(getPlayDelay());
                     else
                         // If we wouldn't give away our locks for at least a millisecond, shit will freeze.
                         wait(1l);
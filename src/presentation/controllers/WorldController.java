@@ -9,6 +9,7 @@ import presentation.gui.editor.selection.SelectionManager;
 import presentation.gui.menu.WorldMenu;
 import presentation.gui.windows.main.options.IPreferenceChangedListener;
 import presentation.gui.windows.world.DrawingWindow;
+import presentation.gui.windows.world.MetricsWindow;
 import presentation.gui.windows.world.NBTviewer;
 import presentation.main.Constants;
 import presentation.main.Cord2S;
@@ -45,6 +46,10 @@ public class WorldController implements IPreferenceChangedListener {
 	private NBTviewer nbtViewer;
 	private NBTController nbtController;
 
+	private MetricsWindow metricsWindow;
+	private ProfilerMonitor profilerMonitor;
+	private WorldMonitor worldMonitor;
+
 	private File lastSavedFile;
 
     private LayerManager layerManager;
@@ -57,10 +62,13 @@ public class WorldController implements IPreferenceChangedListener {
 
     private int minFrameDelay;
 
+    // How many edits are open, see beginEdit
+    private int editDepth;
+
     public WorldController(MainController mainController, SimWorld simWorld, String name, short xSize, short ySize, short zSize) {
 
 		this.mainController = mainController;
-		this.simController = new SimController(simWorld);
+		this.simController = new SimController(simWorld, name);
 
         initiliseMinFrameDelay();
 
@@ -73,7 +81,7 @@ public class WorldController implements IPreferenceChangedListener {
 	public WorldController(MainController mainController, SimWorld simWorld, File schematicFile) throws IOException, NoSuchAlgorithmException {
 
 		this.mainController = mainController;
-		this.simController = new SimController(simWorld);
+		this.simController = new SimController(simWorld, schematicFile.getName());
 		this.lastSavedFile = schematicFile;
 
         initiliseMinFrameDelay();
@@ -81,9 +89,9 @@ public class WorldController implements IPreferenceChangedListener {
 		Tag schematic = Tag.readFrom(new FileInputStream(schematicFile));
 		
 		viewData = new ViewData(schematicFile.getName(),
-								(short) schematic.findTagByName("Width").getValue(),
-								(short) schematic.findTagByName("Height").getValue(),
-								(short) schematic.findTagByName("Length").getValue());
+								(short) schematic.getChild("Width").getValue(),
+								(short) schematic.getChild("Height").getValue(),
+								(short) schematic.getChild("Length").getValue());
 
 		// Loads the world
 		simController.setSchematic(schematic);
@@ -108,6 +116,11 @@ public class WorldController implements IPreferenceChangedListener {
 		nbtViewer = new NBTviewer(mainController.getFrame().getDesktop(), this);
 		nbtController = new NBTController(this, nbtViewer);
 
+		metricsWindow = new MetricsWindow(mainController.getFrame().getDesktop(), this);
+
+		profilerMonitor = new ProfilerMonitor(simController);
+		profilerMonitor.register(viewData.getName());
+
         layerManager = new LayerManager(mainController);
         entityManager = new EntityManager(this);
         selectionManager = new SelectionManager(this);
@@ -122,6 +135,10 @@ public class WorldController implements IPreferenceChangedListener {
         addNewPerspective(Orientation.TOP);
 
         setDoUpdate(true);
+
+        // Only once everything it looks at is there
+        worldMonitor = new WorldMonitor(this);
+        worldMonitor.register(viewData.getName());
 	}
 	
 	public void addNewPerspective(Orientation orientation) {
@@ -157,31 +174,89 @@ public class WorldController implements IPreferenceChangedListener {
             editor.getDaddy().dispose();
 
 		timeController.stopThread();
+		profilerMonitor.unregister();
+		worldMonitor.unregister();
+		simController.close();
 		
 		nbtViewer.dispose();
+		metricsWindow.dispose();
 		
 		mainController.getFrame().getWindowMenu().removeWorldMenu(worldMenu);
 		mainController.onWorldRemoved(this);
 	}
 	
-	public void setBlock(final int x, final int y, final int z, final char block, boolean update) {
+	/**
+	 * Starts an edit. Everything that's changed until the matching {@link #commitEdit()} goes on the time line as one
+	 * change, and is only read back from the simulation once. Edits can be nested, the outer one counts.
+	 */
+	public void beginEdit() {
 
-        try {
-            setDoUpdate(false);
+        if (editDepth++ > 0)
+            return;
+
+        setDoUpdate(false);
+        timeController.loadCurrentTimeIntoSchematic(true);
+    }
+
+	/**
+	 * Ends an edit, see {@link #beginEdit()}.
+	 */
+	public void commitEdit() {
+
+        if (editDepth == 0 || --editDepth > 0)
+            return;
+
+        timeController.updateCurrentSchematic();
+        setDoUpdate(true);
+    }
+
+	public boolean isEditing() {
+        return editDepth > 0;
+    }
+
+	public void setBlock(final int x, final int y, final int z, final char block, boolean update) {
 
-            timeController.loadCurrentTimeIntoSchematic(true);
+        beginEdit();
 
+        try {
             simController.setBlock(x, y, z, Block.getId(block), Block.getData(block), update);
 
-            timeController.updateCurrentSchematic();
+            // Shown right away, what the simulation made of it comes with the commit
+            if (editDepth > 1) {
+                viewData.setBlock(x, y, z, block);
 
-            setDoUpdate(true);
+                for (Editor editor : editors)
+                    editor.onSchematicUpdated();
+            }
 
         } catch (NullPointerException e) {
             Log.printEntireStackTraceAndBeDoneWithIt(e);
+
+        } finally {
+            commitEdit();
         }
 	}
 	
+	/**
+	 * Sets every selected block to the same block, as one edit. Does nothing if nothing's selected.
+	 */
+	public void fillSelection(char block, boolean update) {
+
+        if (!selectionManager.isAnythingSelected())
+            return;
+
+        Cord3S start = selectionManager.getStart(), end = selectionManager.getEnd();
+
+        beginEdit();
+
+        try {
+            simController.fill(start.x, start.y, start.z, end.x - start.x + 1, end.y - start.y + 1,
+                    end.z - start.z + 1, block, update);
+        } finally {
+            commitEdit();
+        }
+	}
+
 	public void onSchematicUpdated() {
         if (!shouldUpdate())
             return;
@@ -216,6 +291,18 @@ public class WorldController implements IPreferenceChangedListener {
 		return worldMenu;
 	}
 	
+	/**
+	 * How much memory the buffered layers of all views of this world take up.
+	 */
+	public long getLayerBufferBytes() {
+
+		long bytes = 0;
+		for (Editor editor : editors)
+			bytes += editor.getBufferedBytes();
+
+		return bytes;
+	}
+
 	public List<Editor> getEditors() {
 		return editors;
 	}
@@ -356,6 +443,13 @@ public class WorldController implements IPreferenceChangedListener {
         minFrameDelay = 1000 / Preferences.userRoot().getInt(Prefs.EDITOR_MAXFPS, Constants.MAX_FPS);
     }
 
+    /**
+     * How many ms there are at least between two redraws, from the maximum fps in the options
+     */
+    public int getMinFrameDelay() {
+        return minFrameDelay;
+    }
+
     class TimerUpdater implements Runnable {
 
         private long timeTarget;
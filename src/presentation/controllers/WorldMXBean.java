@@ -0,0 +1,41 @@
+package presentation.controllers;
+
+/**
+ * How one open world is doing, over JMX. Registered as mcsim:type=World,name="world name".
+ */
+public interface WorldMXBean {
+
+    /**
+     * The tick the world is at, as shown in the time bar.
+     */
+    int getTick();
+
+    /**
+     * How many ticks were simulated per second, since the last time this was read at least a second ago.
+     */
+    double getTicksPerSecond();
+
+    long getLastTickNanos();
+
+    long getAverageTickNanos();
+
+    long getP99TickNanos();
+
+    int getPendingTickEntries();
+
+    int getLoadedEntities();
+
+    int getTickableTileEntities();
+
+    int getTimeLineEntries();
+
+    long getTimeLineRetainedBytes();
+
+    long getLayerBufferBytes();
+
+    void pause();
+
+    void step();
+
+    void play();
+}
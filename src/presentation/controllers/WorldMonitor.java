@@ -0,0 +1,135 @@
+package presentation.controllers;
+
+import sim.objects.Histogram;
+import sim.objects.TickMetrics;
+
+import javax.management.ObjectName;
+
+/**
+ * Publishes how a world is doing over JMX, for as long as the world is open. Everything that comes from the simulation
+ * is asked on its thread, so a read waits for the tick that is running.
+ */
+class WorldMonitor implements WorldMXBean {
+
+    private final WorldController worldController;
+    private final SimController simController;
+
+    private ObjectName objectName;
+
+    // The tick count and time the rate is measured from, and what it came to the last time
+    private long rateTicks = -1, rateNanos;
+    private double ticksPerSecond;
+
+    public WorldMonitor(WorldController worldController) {
+        this.worldController = worldController;
+        this.simController = worldController.getSimController();
+    }
+
+    public void register(String worldName) {
+        objectName = MBeans.register(this, "World", worldName);
+    }
+
+    public void unregister() {
+        MBeans.unregister(objectName);
+        objectName = null;
+    }
+
+    private Histogram getTickHistogram() {
+
+        Histogram tick = simController.batch(simWorld -> simWorld.getMetrics().get(TickMetrics.Phase.TICK).copy());
+        return tick == null ? new Histogram() : tick;
+    }
+
+    @Override
+    public int getTick() {
+        return worldController.getTimeController().getTickCount();
+    }
+
+    @Override
+    public synchronized double getTicksPerSecond() {
+
+        long ticks = getTickHistogram().getCount();
+        long now = System.nanoTime();
+
+        // Cleared metrics start the count over
+        if (rateTicks < 0 || ticks < rateTicks) {
+            rateTicks = ticks;
+            rateNanos = now;
+            return ticksPerSecond;
+        }
+
+        if (now - rateNanos >= 1000000000L) {
+            ticksPerSecond = (ticks - rateTicks) * 1e9 / (now - rateNanos);
+            rateTicks = ticks;
+            rateNanos = now;
+        }
+
+        return ticksPerSecond;
+    }
+
+    @Override
+    public long getLastTickNanos() {
+        return getTickHistogram().getLast();
+    }
+
+    @Override
+    public long getAverageTickNanos() {
+        return getTickHistogram().getMean();
+    }
+
+    @Override
+    public long getP99TickNanos() {
+        return getTickHistogram().getPercentile(99);
+    }
+
+    @Override
+    public int getPendingTickEntries() {
+
+        Integer count = simController.batch(simWorld -> simWorld.getPendingTickCount());
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public int getLoadedEntities() {
+
+        Integer count = simController.batch(simWorld -> simWorld.getEntityCount());
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public int getTickableTileEntities() {
+
+        Integer count = simController.batch(simWorld -> simWorld.getTickableTileEntityCount());
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public int getTimeLineEntries() {
+        return worldController.getTimeController().getTimeLineEntryCount();
+    }
+
+    @Override
+    public long getTimeLineRetainedBytes() {
+        return worldController.getTimeController().getRetainedBytes();
+    }
+
+    @Override
+    public long getLayerBufferBytes() {
+        return worldController.getLayerBufferBytes();
+    }
+
+    @Override
+    public void pause() {
+        worldController.getTimeController().pause();
+    }
+
+    @Override
+    public void step() {
+        worldController.getTimeController().step();
+    }
+
+    @Override
+    public void play() {
+        worldController.getTimeController().play();
+    }
+}
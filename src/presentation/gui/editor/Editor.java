@@ -253,10 +253,14 @@ public class Editor extends JLayeredPane {
     }
 
     public void onSchematicUpdated() {
-        blockPanel.clearBuffer();
+        blockPanel.updateBuffer();
         repaint();
     }
 
+    public long getBufferedBytes() {
+        return blockPanel.getBufferedBytes();
+    }
+
     public JInternalFrame getDaddy() {
         return parent;
     }
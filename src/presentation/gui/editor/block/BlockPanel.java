@@ -12,6 +12,7 @@ import presentation.objects.ViewData;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * A panel that will draw the blocks of a world, used by Editor
@@ -21,6 +22,9 @@ public class BlockPanel extends EditorSubComponent {
     private BufferedImage[] layerBuffer;
     private final TileController tileController;
 
+    // The version of the blocks that the buffered layers show
+    private long bufferedVersion = -1;
+
     public BlockPanel(Editor editor) {
         super(editor);
 
@@ -87,6 +91,104 @@ public class BlockPanel extends EditorSubComponent {
         Arrays.fill(layerBuffer, null);
     }
 
+    /**
+     * How much memory the buffered layers take up, at 3 bytes a pixel.
+     */
+    public long getBufferedBytes() {
+
+        long bytes = 0;
+
+        // Layers can be drawn or dropped meanwhile, this is only a rough number for monitoring
+        for (BufferedImage bi : layerBuffer)
+            if (bi != null)
+                bytes += (long) bi.getWidth() * bi.getHeight() * 3;
+
+        return bytes;
+    }
+
+    /**
+     * Brings the buffered layers up to date. Only the tiles of blocks that changed and their neighbours are drawn
+     * again, those can look different because of them. If it isn't known what changed, the buffers are cleared.
+     */
+    public void updateBuffer() {
+
+        ViewData worldData = worldController.getWorldData();
+
+        long version = worldData.getVersion();
+        int[] changed = worldData.getChangesSince(bufferedVersion);
+        bufferedVersion = version;
+
+        if (changed == null) {
+            clearBuffer();
+            return;
+        }
+
+        int xSize = worldData.getXSize(), ySize = worldData.getYSize(), zSize = worldData.getZSize();
+        BitSet drawn = new BitSet();
+
+        for (int position : changed) {
+            int x = position % xSize;
+            int y = position / (xSize * zSize);
+            int z = position / xSize % zSize;
+
+            for (int dy = Math.max(y - 1, 0); dy <= Math.min(y + 1, ySize - 1); dy++)
+                for (int dz = Math.max(z - 1, 0); dz <= Math.min(z + 1, zSize - 1); dz++)
+                    for (int dx = Math.max(x - 1, 0); dx <= Math.min(x + 1, xSize - 1); dx++) {
+                        int index = (dy * zSize + dz) * xSize + dx;
+
+                        if (!drawn.get(index)) {
+                            drawn.set(index);
+                            redrawTile((short) dx, (short) dy, (short) dz);
+                        }
+                    }
+        }
+    }
+
+    /**
+     * Draws one tile again in the buffer of its layer, if that layer is buffered.
+     */
+    private void redrawTile(short x, short y, short z) {
+
+        int layer, tileX, tileY;
+
+        switch (orientation) {
+            case TOP:
+                layer = y;
+                tileX = x;
+                tileY = z;
+                break;
+
+            case FRONT:
+                layer = z;
+                tileX = x;
+                tileY = editorHeight - y - 1;
+                break;
+
+            case RIGHT:
+                layer = x;
+                tileX = editorWidth - z - 1;
+                tileY = editorHeight - y - 1;
+                break;
+
+            default:
+                return;
+        }
+
+        BufferedImage bi = layerBuffer[layer];
+
+        if (bi == null)
+            return;
+
+        Graphics2D g = bi.createGraphics();
+
+        // Like a freshly painted layer, where there's no tile it's black
+        g.setColor(Color.BLACK);
+        g.fillRect(tileX * Editor.SIZE + 1, tileY * Editor.SIZE + 1, Editor.SIZE, Editor.SIZE);
+        g.drawImage(getTile(x, y, z), tileX * Editor.SIZE + 1, tileY * Editor.SIZE + 1, null);
+
+        g.dispose();
+    }
+
     /**
      * Returns the tile image for the given coordinates
      * @param x
@@ -34,6 +34,15 @@ public class WorldMenu extends JMenu {
 		add(front);
 		add(right);
 		
+		add(new JSeparator());
+
+		JMenuItem fill		= new JMenuItem("Fill selection");
+		JMenuItem clear		= new JMenuItem("Clear selection");
+		fill				.setMnemonic('i');
+		clear				.setMnemonic('l');
+		add(fill);
+		add(clear);
+
 		add(new JSeparator());
 		
 		JMenuItem save		= new JMenuItem("Save", new ImageIcon("img/menu/save.png"));
@@ -61,6 +70,10 @@ public class WorldMenu extends JMenu {
 		
 		right.addActionListener(e -> controller.addNewPerspective(Orientation.RIGHT));
 		
+		fill.addActionListener(e -> controller.fillSelection(controller.getMainController().getBlock(), true));
+
+		clear.addActionListener(e -> controller.fillSelection((char) 0, true));
+
 		save.addActionListener(ae -> controller.save());
 		
 		saveAs.addActionListener(e -> controller.saveAs());
@@ -0,0 +1,198 @@
+package presentation.gui.time;
+
+import sim.objects.SchematicState;
+import utils.Tag;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sparse full copies of the world, kept for as long as the world is open. Any tick that was ever simulated can be got
+ * back to by loading the checkpoint before it and ticking forward from there, even when the time line dropped it long ago.
+ *
+ * Checkpoints are taken every so many ticks. When there are too many of them, every other one is dropped and the
+ * interval doubles, so a long recording doesn't keep adding copies. Checkpoints taken because the world was edited are
+ * pinned: ticking can't reproduce an edit, so those aren't thinned out.
+ *
+ * Pins still count towards the limits. When there are too many pins, or all checkpoints together take up more bytes than
+ * they may, the oldest checkpoints are dropped, pinned or not. Only the oldest one can go, because starting from an
+ * earlier checkpoint could mean ticking past an edit. The ticks before the new first checkpoint can't be got back to.
+ *
+ * Ticks don't have to come one by one, skipped idle ticks leave gaps. The first tick at or past a multiple of the
+ * interval takes its place then.
+ */
+public class CheckpointIndex {
+
+	private final int maxCheckpoints, maxPinned;
+	private final long budget;
+	private int interval;
+
+	private final TreeMap<Integer, Checkpoint> checkpoints;
+	private long bytes;
+
+	// The last tick that was offered or pinned
+	private int lastTick = Integer.MIN_VALUE;
+
+	/**
+	 * Without a limit on the pins or the bytes.
+	 * @param interval Every how many ticks a checkpoint is taken at first.
+	 * @param maxCheckpoints How many unpinned checkpoints there may be before the interval doubles.
+	 */
+	public CheckpointIndex(int interval, int maxCheckpoints) {
+		this(interval, maxCheckpoints, Integer.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param interval Every how many ticks a checkpoint is taken at first.
+	 * @param maxCheckpoints How many unpinned checkpoints there may be before the interval doubles.
+	 * @param maxPinned How many pinned checkpoints there may be before the oldest checkpoints are dropped.
+	 * @param budget How many bytes all checkpoints together may take up before the oldest are dropped.
+	 */
+	public CheckpointIndex(int interval, int maxCheckpoints, int maxPinned, long budget) {
+
+		this.interval = interval;
+		this.maxCheckpoints = maxCheckpoints;
+		this.maxPinned = maxPinned;
+		this.budget = budget;
+
+		checkpoints = new TreeMap<>();
+	}
+
+	public synchronized void clear() {
+		checkpoints.clear();
+		bytes = 0;
+		lastTick = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Keeps a copy of a state if a checkpoint is due at its tick.
+	 */
+	public synchronized void offer(int tick, SchematicState state) {
+
+		boolean due = Math.floorDiv(tick, interval) != Math.floorDiv(lastTick, interval);
+		lastTick = tick;
+
+		if (!due || checkpoints.containsKey(tick))
+			return;
+
+		put(tick, new Checkpoint(state.copy(), false));
+
+		if (countUnpinned() > maxCheckpoints)
+			thin();
+
+		enforceLimits();
+	}
+
+	/**
+	 * Keeps a copy of a state that can't be got to by ticking, like the first tick or one that was edited.
+	 */
+	public synchronized void pin(int tick, SchematicState state) {
+		put(tick, new Checkpoint(state.copy(), true));
+		lastTick = tick;
+
+		enforceLimits();
+	}
+
+	/**
+	 * Forgets every checkpoint after a tick, because that future is gone.
+	 */
+	public synchronized void truncate(int tick) {
+
+		Map<Integer, Checkpoint> future = checkpoints.tailMap(tick, false);
+
+		for (Checkpoint checkpoint : future.values())
+			bytes -= checkpoint.size;
+
+		future.clear();
+		lastTick = Math.min(lastTick, tick);
+	}
+
+	/**
+	 * The latest checkpoint at or before a tick, -1 if there is none.
+	 */
+	public synchronized int getTickAtOrBefore(int tick) {
+
+		Map.Entry<Integer, Checkpoint> entry = checkpoints.floorEntry(tick);
+		return entry == null ? -1 : entry.getKey();
+	}
+
+	public synchronized int getFirstTick() {
+		return checkpoints.isEmpty() ? -1 : checkpoints.firstKey();
+	}
+
+	public synchronized Tag get(int tick) {
+		return checkpoints.get(tick).state.toTag();
+	}
+
+	public synchronized long getByteSize() {
+		return bytes;
+	}
+
+	public synchronized int getPinnedCount() {
+		return checkpoints.size() - countUnpinned();
+	}
+
+	private void put(int tick, Checkpoint checkpoint) {
+
+		Checkpoint replaced = checkpoints.put(tick, checkpoint);
+
+		if (replaced != null)
+			bytes -= replaced.size;
+
+		bytes += checkpoint.size;
+	}
+
+	private int countUnpinned() {
+
+		int count = 0;
+		for (Checkpoint checkpoint : checkpoints.values())
+			if (!checkpoint.pinned)
+				count++;
+
+		return count;
+	}
+
+	/**
+	 * Drops the oldest checkpoints while there are too many pins or bytes, the last one is always kept.
+	 */
+	private void enforceLimits() {
+
+		while (checkpoints.size() > 1 && (bytes > budget || getPinnedCount() > maxPinned))
+			bytes -= checkpoints.pollFirstEntry().getValue().size;
+	}
+
+	private void thin() {
+
+		interval *= 2;
+
+		// Keeps the first one of every interval, which is the one on the multiple unless there was a gap
+		int lastInterval = Integer.MIN_VALUE;
+
+		Iterator<Map.Entry<Integer, Checkpoint>> i = checkpoints.entrySet().iterator();
+		while (i.hasNext()) {
+			Map.Entry<Integer, Checkpoint> entry = i.next();
+			int tickInterval = Math.floorDiv(entry.getKey(), interval);
+
+			if (!entry.getValue().pinned && tickInterval == lastInterval) {
+				bytes -= entry.getValue().size;
+				i.remove();
+			} else
+				lastInterval = tickInterval;
+		}
+	}
+
+	private static class Checkpoint {
+
+		private final SchematicState state;
+		private final boolean pinned;
+		private final long size;
+
+		Checkpoint(SchematicState state, boolean pinned) {
+			this.state = state;
+			this.pinned = pinned;
+
+			size = state.getByteSize();
+		}
+	}
+}
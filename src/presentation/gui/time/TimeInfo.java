@@ -5,4 +5,5 @@ public interface TimeInfo {
     public void setStep(int step);
     public void setBackEnabled(boolean backEnabled);
     public void setPaused(boolean paused);
+    public void setRange(int firstTick, int lastTick, long retainedBytes);
 }
@@ -1,90 +1,685 @@
 package presentation.gui.time;
 
-public class TimeLine<T> {
-	
-	private final Object[] items;
-	private int start, index, end;
-	
-	public TimeLine(int size) {
-		
-		items = new Object[size];
-	}
-	
-	public void init(T first) {
-		start = 0;
+import logging.Log;
+import sim.constants.Constants;
+import sim.objects.SchematicDelta;
+import sim.objects.SchematicState;
+import utils.Tag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Buffers the schematic of every tick. Instead of a full copy per tick, only every so many ticks a keyframe is kept,
+ * all other ticks are stored as the delta from the tick before. Deltas work both ways, so stepping just applies one
+ * delta to the state it's already at, seeking starts from the nearest keyframe.
+ *
+ * The amount of history is limited by a byte budget rather than a tick count. When over budget, the older half of the
+ * time line is thinned out to every 2nd, 4th, ... tick, and once that's as thin as allowed the oldest ticks are dropped.
+ *
+ * With a {@link TimeLineSpill} set, nothing is thinned or dropped, the oldest ticks are moved to disk instead. Positions
+ * then count the ticks on disk first, followed by the ones on the heap.
+ */
+public class TimeLine {
+
+	private final int keyframeInterval, maxThinning;
+
+	private long budget;
+	private boolean thinning;
+
+	private final ArrayList<Entry> entries;
+
+	// Position of the current tick, counting spilled ticks as well
+	private int index;
+
+	// Where ticks go once they're over budget, null to drop them
+	private TimeLineSpill spill;
+
+	// How to get from the last spilled tick to the first entry
+	private SchematicDelta spillDelta;
+
+	// Sparse copies that outlive the entries, null for none
+	private CheckpointIndex checkpoints;
+
+	// How long applying a delta takes on average, for estimating seeks
+	private long nanosPerDelta = Constants.TIMELINE_DELTA_COST;
+
+	// Sum of what every entry holds on to
+	private long retainedBytes;
+
+	// The state of the last entry, every new tick is diffed against this
+	private SchematicState head;
+
+	// A working copy that gets moved around while stepping and seeking, never shared with an entry
+	private SchematicState cursor;
+	private int cursorIndex;
+
+	/**
+	 * @param budget The amount of bytes the buffered ticks may take up.
+	 * @param keyframeInterval Every how many entries a full copy is kept.
+	 * @param maxThinning The largest gap in ticks that thinning may leave between two entries.
+	 * @param thinning Whether to thin out old ticks before dropping them.
+	 */
+	public TimeLine(long budget, int keyframeInterval, int maxThinning, boolean thinning) {
+
+		this.budget = budget;
+		this.keyframeInterval = keyframeInterval;
+		this.maxThinning = maxThinning;
+		this.thinning = thinning;
+
+		entries = new ArrayList<>();
+	}
+
+	public synchronized void init(Tag first, int tick) {
+		init(SchematicState.fromTag(first), tick);
+	}
+
+	/**
+	 * Like {@link #init(Tag, int)}, the state is kept as it is and must not be written to after this.
+	 */
+	public synchronized void init(SchematicState first, int tick) {
+
+		entries.clear();
+		index = 0;
+		cursor = null;
+		retainedBytes = 0;
+
+		if (spill != null)
+			spill.clear();
+		spillDelta = null;
+
+		head = first;
+		addEntry(new Entry(tick, null, head));
+
+		if (checkpoints != null) {
+			checkpoints.clear();
+			checkpoints.pin(tick, head);
+		}
+	}
+
+	public synchronized boolean atStart() {
+		return index == 0;
+	}
+
+	public synchronized boolean atEnd() {
+		return index >= spilled() + entries.size() - 1;
+	}
+
+	public synchronized Tag first() {
 		index = 0;
-		end = 0;
-		
-		items[0] = first;
-	}
-	
-	public boolean atStart() {
-		return index == start;
-	}
-	
-	public boolean atEnd() {
-		return index == end;
-	}
-	
-	@SuppressWarnings("unchecked")
-	public T first() {
-		return (T) items[index = start];
-	}
-	
-	@SuppressWarnings("unchecked")
-	public T prev() {
-		if (index == start)
+		return get();
+	}
+
+	public synchronized Tag prev() {
+		if (index == 0)
 			throw new ArrayIndexOutOfBoundsException("prev");
-		if (--index < 0)
-			index = items.length - 1;
-		return (T) items[index];		
-	}
-	
-	@SuppressWarnings("unchecked")
-	public T get() {
-		return (T) items[index];
-	}
-	
-	public void set(T tag) {
-		items[index] = tag;
-		end = index;
-	}
-	
-	@SuppressWarnings("unchecked")
-	public T next() {
-		if (index == end)
+		index--;
+		return get();
+	}
+
+	public synchronized Tag get() {
+		return getTag(index);
+	}
+
+	/**
+	 * Replaces the current tick, everything after it is discarded.
+	 */
+	public synchronized void set(Tag tag) {
+		set(tag, null);
+	}
+
+	/**
+	 * Like {@link #set(Tag)}, but only the given blocks and the ones the current tick changed are compared with the
+	 * tick before.
+	 * @param changedBlocks Sorted schematic indices of every block that may differ from the current tick, null to
+	 *                      compare them all.
+	 */
+	public synchronized void set(Tag tag, int[] changedBlocks) {
+		set(SchematicState.fromTag(tag), changedBlocks);
+	}
+
+	/**
+	 * Like {@link #set(Tag, int[])}, the state is kept as it is and must not be written to after this.
+	 */
+	public synchronized void set(SchematicState state, int[] changedBlocks) {
+
+		int position = index - spilled();
+
+		if (position < 0) {
+			// Everything on the heap is in the future of a spilled tick, so the spilled tick moves back to the heap
+			int tick = spill.getTick(index);
+			spillDelta = index == 0 ? null : getSpilled(index - 1).diff(state);
+			spill.truncate(index);
+
+			entries.clear();
+			retainedBytes = 0;
+			addEntry(new Entry(tick, null, state));
+
+		} else {
+			Entry old = entries.get(position);
+
+			if (position == 0) {
+				setEntry(0, new Entry(old.tick, null, state));
+
+				if (spilled() > 0)
+					spillDelta = getSpilled(spilled() - 1).diff(state);
+
+			} else {
+				SchematicState before = getState(position - 1);
+				SchematicDelta delta = changedBlocks == null || old.delta == null ? before.diff(state)
+						: before.diff(state, union(old.delta, changedBlocks));
+				setEntry(position, new Entry(old.tick, delta, old.keyframe != null ? state : null));
+			}
+
+			while (entries.size() > position + 1)
+				retainedBytes -= entries.remove(entries.size() - 1).size;
+		}
+
+		head = state;
+		cursor = null;
+
+		// There's no ticking past an edit, so it's pinned
+		if (checkpoints != null) {
+			checkpoints.truncate(getTick());
+			checkpoints.pin(getTick(), state);
+		}
+	}
+
+	public synchronized Tag next() {
+		if (atEnd())
 			throw new ArrayIndexOutOfBoundsException("next");
-		if (++index == items.length)
-			index = 0;
-		return (T) items[index];
-	}
-	
-	@SuppressWarnings("unchecked")
-	public T last() {
-		return (T) items[index = end];
-	}
-	
-	public void add(T tag) {
-		if (index == end)
-			if (++index == items.length)
-				index = 0;
-		
-		if (++end == items.length)
-			end = 0;
-		
-		items[end] = tag;
-		
-		if (end == start)
-			if (++start == items.length)
-				start = 0;
-	}
-
-    public T getRelative(int relativeIndex) {
-        int index = this.index + relativeIndex;
-        if (index < 0)
-            index += items.length;
-        else if (index >= items.length)
-            index -= items.length;
-        return (T) items[index];
-    }
+		index++;
+		return get();
+	}
+
+	public synchronized Tag last() {
+		index = spilled() + entries.size() - 1;
+		return get();
+	}
+
+	/**
+	 * Appends a new tick at the end, if the current position was the end, it moves along.
+	 */
+	public synchronized void add(Tag tag, int tick) {
+		add(tag, tick, null);
+	}
+
+	/**
+	 * Like {@link #add(Tag, int)}, but only the given blocks are compared with the tick before.
+	 * @param changedBlocks Sorted schematic indices of every block that may have changed, null to compare them all.
+	 */
+	public synchronized void add(Tag tag, int tick, int[] changedBlocks) {
+		add(SchematicState.fromTag(tag), tick, changedBlocks);
+	}
+
+	/**
+	 * Like {@link #add(Tag, int, int[])}, the state is kept as it is and must not be written to after this.
+	 */
+	public synchronized void add(SchematicState state, int tick, int[] changedBlocks) {
+
+		// Nothing to compare with if the first schematic couldn't be gotten
+		if (head == null) {
+			init(state, tick);
+			return;
+		}
+
+		boolean follow = atEnd();
+
+		SchematicDelta delta = changedBlocks == null ? head.diff(state) : head.diff(state, changedBlocks);
+
+		addEntry(new Entry(tick, delta, needsKeyframe() ? state : null));
+		head = state;
+
+		if (checkpoints != null)
+			checkpoints.offer(tick, state);
+
+		if (follow)
+			index++;
+
+		enforceBudget();
+	}
+
+	/**
+	 * The delta between the current tick and its neighbour, to step along with the time line without loading a whole
+	 * schematic. Apply it forward to go to the next tick, backward to go to the previous one.
+	 * @param forward Whether the neighbour is the next tick or the previous one.
+	 * @return null if there is no such delta, like past either end or right after a gap on disk.
+	 */
+	public synchronized SchematicDelta getStep(boolean forward) {
+
+		int position = forward ? index + 1 : index;
+
+		if (position == 0 || position >= getEntryCount())
+			return null;
+
+		if (position > spilled())
+			return entries.get(position - spilled()).delta;
+
+		if (position == spilled())
+			return spillDelta;
+
+		try {
+			return spill.getDelta(position);
+
+		} catch (IOException e) {
+			Log.w("Couldn't read a step back from disk: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the schematic of the latest buffered tick at or before the given one, without moving the current position.
+	 */
+	public synchronized Tag getAtTick(int tick) {
+		return getTag(findTick(tick));
+	}
+
+	/**
+	 * The latest buffered tick at or before the given one, -1 if the given tick is before all of them.
+	 */
+	public synchronized int getTickAtOrBefore(int tick) {
+		return tick < getFirstTick() ? -1 : getTick(findTick(tick));
+	}
+
+	/**
+	 * Estimates how long {@link #getAtTick(int)} would take, in nanoseconds.
+	 */
+	public synchronized long getSeekCost(int tick) {
+		return getDecodeCost(findTick(tick)) * nanosPerDelta;
+	}
+
+	/**
+	 * The tick the current position is at.
+	 */
+	public synchronized int getTick() {
+		return getTick(index);
+	}
+
+	public synchronized int getFirstTick() {
+		return getTick(0);
+	}
+
+	public synchronized int getLastTick() {
+		return entries.get(entries.size() - 1).tick;
+	}
+
+	public synchronized int getEntryCount() {
+		return spilled() + entries.size();
+	}
+
+	public synchronized long getRetainedBytes() {
+		return retainedBytes;
+	}
+
+	public synchronized void setBudget(long budget) {
+		this.budget = budget;
+		enforceBudget();
+	}
+
+	public synchronized void setThinning(boolean thinning) {
+		this.thinning = thinning;
+		enforceBudget();
+	}
+
+	/**
+	 * Sets where ticks go once they're over budget, null to drop them. Whatever the previous spill held is lost.
+	 */
+	public synchronized void setSpill(TimeLineSpill spill) {
+
+		if (this.spill != null) {
+			index = Math.max(0, index - this.spill.size());
+			this.spill.close();
+		}
+
+		this.spill = spill;
+		spillDelta = null;
+
+		enforceBudget();
+	}
+
+	/**
+	 * Sets where sparse copies are kept that outlive the time line itself, null for none. It's filled from the next
+	 * {@link #init(Tag, int)} on.
+	 */
+	public synchronized void setCheckpoints(CheckpointIndex checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
+	public synchronized CheckpointIndex getCheckpoints() {
+		return checkpoints;
+	}
+
+	/**
+	 * How much disk space the spilled ticks take up.
+	 */
+	public synchronized long getSpilledBytes() {
+		return spill == null ? 0 : spill.getDiskBytes();
+	}
+
+	private void enforceBudget() {
+
+		while (retainedBytes > budget && entries.size() > 1)
+			if (spill != null || !thinning || !thin())
+				evictFirst();
+	}
+
+	/**
+	 * Removes every other entry in the older half of the time line, as long as that doesn't leave gaps larger than
+	 * maxThinning ticks. The current position is never removed.
+	 * @return Whether anything could be removed.
+	 */
+	private boolean thin() {
+
+		boolean thinned = false;
+		int limit = entries.size() / 2;
+
+		for (int position = 1; position < limit; position++) {
+
+			if (position == index - spilled())
+				continue;
+
+			if (entries.get(position + 1).tick - entries.get(position - 1).tick > maxThinning)
+				continue;
+
+			removeEntry(position);
+			limit--;
+			thinned = true;
+		}
+
+		return thinned;
+	}
+
+	/**
+	 * Takes an entry out of the middle, the entry after it gets a delta that covers both.
+	 */
+	private void removeEntry(int position) {
+
+		Entry removed = entries.get(position);
+		Entry next = entries.get(position + 1);
+
+		SchematicState keyframe = next.keyframe;
+
+		// Moving a keyframe one entry on is a lot cheaper than losing it
+		if (keyframe == null && removed.keyframe != null) {
+			keyframe = removed.keyframe;
+			keyframe.apply(next.delta, true);
+		}
+
+		retainedBytes -= entries.remove(position).size;
+		setEntry(position, new Entry(next.tick, SchematicDelta.merge(removed.delta, next.delta), keyframe));
+
+		if (index - spilled() > position)
+			index--;
+
+		if (cursor != null && cursorIndex >= position)
+			if (cursorIndex == position)
+				cursor = null;
+			else
+				cursorIndex--;
+	}
+
+	/**
+	 * Spills or drops the oldest tick, the one after it becomes the new start and thus needs to be a keyframe.
+	 */
+	private void evictFirst() {
+
+		Entry first = entries.remove(0);
+		Entry second = entries.get(0);
+		retainedBytes -= first.size;
+
+		// Has to go out before the keyframe gets rolled forward below
+		boolean spilled = spill(first, second);
+
+		SchematicState keyframe = second.keyframe;
+
+		if (keyframe == null) {
+			// Nobody else holds on to the old keyframe, so it can be rolled forward instead of copied
+			keyframe = first.keyframe;
+			keyframe.apply(second.delta, true);
+		}
+
+		setEntry(0, new Entry(second.tick, null, keyframe));
+
+		if (!spilled && index > 0)
+			index--;
+
+		if (cursor != null && --cursorIndex < 0)
+			cursor = null;
+	}
+
+	private boolean spill(Entry first, Entry second) {
+
+		if (spill == null)
+			return false;
+
+		try {
+			spill.append(first.tick, first.keyframe, spillDelta);
+			spillDelta = second.delta;
+			return true;
+
+		} catch (IOException e) {
+			Log.e("Couldn't write the time line to disk, old ticks will be dropped instead: " + e.getMessage());
+
+			// What's on disk can't be followed up anymore, so it's of no use
+			index = Math.max(0, index - spill.size());
+			spill.close();
+			spill = null;
+			spillDelta = null;
+
+			return false;
+		}
+	}
+
+	private int spilled() {
+		return spill == null ? 0 : spill.size();
+	}
+
+	private Tag getTag(int position) {
+
+		if (getEntryCount() == 0)
+			return null;
+
+		int deltas = getDecodeCost(position);
+		long start = System.nanoTime();
+
+		SchematicState state = position < spilled() ? getSpilled(position) : getState(position - spilled());
+
+		if (deltas > 0)
+			nanosPerDelta = (nanosPerDelta * 7 + (System.nanoTime() - start) / deltas) / 8;
+
+		return state.toTag();
+	}
+
+	/**
+	 * The blocks a delta changed together with some more, sorted and without doubles.
+	 */
+	private static int[] union(SchematicDelta delta, int[] blocks) {
+
+		int[] union = new int[delta.getBlockCount() + blocks.length];
+		int count = 0, i = 0, j = 0;
+
+		while (i < delta.getBlockCount() || j < blocks.length) {
+			int next;
+
+			if (j == blocks.length || i < delta.getBlockCount() && delta.getBlockIndex(i) < blocks[j])
+				next = delta.getBlockIndex(i++);
+			else if (i == delta.getBlockCount() || blocks[j] < delta.getBlockIndex(i))
+				next = blocks[j++];
+			else {
+				next = blocks[j++];
+				i++;
+			}
+
+			union[count++] = next;
+		}
+
+		return Arrays.copyOf(union, count);
+	}
+
+	private int getTick(int position) {
+
+		if (getEntryCount() == 0)
+			return 0;
+
+		return position < spilled() ? spill.getTick(position) : entries.get(position - spilled()).tick;
+	}
+
+	/**
+	 * Position of the latest tick at or before the given one, spilled ticks included, or the first if there is none.
+	 */
+	private int findTick(int tick) {
+
+		if (spilled() > 0 && tick < entries.get(0).tick)
+			return spill.findPosition(tick);
+
+		return spilled() + findPosition(tick);
+	}
+
+	/**
+	 * Roughly how many deltas have to be applied to get to a position, following what {@link #getState(int)} would do.
+	 */
+	private int getDecodeCost(int position) {
+
+		if (position < spilled())
+			return spill.getDecodeCost(position);
+
+		position -= spilled();
+
+		if (position == entries.size() - 1 || entries.get(position).keyframe != null)
+			return 0;
+
+		int cost = entries.size() - 1 - position;
+
+		for (int i = position - 1; i >= 0 && position - i < cost; i--)
+			if (entries.get(i).keyframe != null) {
+				cost = position - i;
+				break;
+			}
+
+		for (int i = position + 1; i < entries.size() && i - position < cost; i++)
+			if (entries.get(i).keyframe != null) {
+				cost = i - position;
+				break;
+			}
+
+		if (cursor != null)
+			cost = Math.min(cost, Math.abs(cursorIndex - position));
+
+		return cost;
+	}
+
+	private SchematicState getSpilled(int position) {
+
+		try {
+			return spill.get(position);
+
+		} catch (IOException e) {
+			throw new IllegalStateException("Couldn't read tick " + spill.getTick(position) + " back from disk", e);
+		}
+	}
+
+	private void addEntry(Entry entry) {
+		entries.add(entry);
+		retainedBytes += entry.size;
+	}
+
+	private void setEntry(int position, Entry entry) {
+		retainedBytes += entry.size - entries.set(position, entry).size;
+	}
+
+	private boolean needsKeyframe() {
+
+		for (int i = entries.size() - 1; i > entries.size() - keyframeInterval; i--)
+			if (i < 0 || entries.get(i).keyframe != null)
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Binary search for the last entry on the heap at or before a tick, or the first entry if there is none.
+	 */
+	private int findPosition(int tick) {
+
+		int low = 0;
+		int high = entries.size() - 1;
+
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+
+			if (entries.get(middle).tick <= tick)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+
+		return low;
+	}
+
+	/**
+	 * Gets the state at a position on the heap, the result should not be changed by the caller.
+	 */
+	private SchematicState getState(int position) {
+
+		if (position == entries.size() - 1)
+			return head;
+
+		Entry entry = entries.get(position);
+		if (entry.keyframe != null)
+			return entry.keyframe;
+
+		// Find the closest place to start from: the cursor, the head or the nearest keyframe on either side
+		int from = entries.size() - 1;
+		SchematicState fromState = head;
+
+		for (int i = position - 1; i >= 0 && position - i < Math.abs(from - position); i--)
+			if (entries.get(i).keyframe != null) {
+				from = i;
+				fromState = entries.get(i).keyframe;
+				break;
+			}
+
+		for (int i = position + 1; i < entries.size() && i - position < Math.abs(from - position); i++)
+			if (entries.get(i).keyframe != null) {
+				from = i;
+				fromState = entries.get(i).keyframe;
+				break;
+			}
+
+		if (cursor == null || Math.abs(cursorIndex - position) > Math.abs(from - position)) {
+			cursor = fromState.copy();
+			cursorIndex = from;
+		}
+
+		while (cursorIndex < position)
+			cursor.apply(entries.get(++cursorIndex).delta, true);
+
+		while (cursorIndex > position)
+			cursor.apply(entries.get(cursorIndex--).delta, false);
+
+		return cursor;
+	}
+
+	private static class Entry {
+
+		private final int tick;
+
+		// How to get here from the previous entry, null for the first one
+		private final SchematicDelta delta;
+
+		// A full copy, always present on the first entry
+		private final SchematicState keyframe;
+
+		// What this entry holds on to, in bytes
+		private final long size;
+
+		Entry(int tick, SchematicDelta delta, SchematicState keyframe) {
+			this.tick = tick;
+			this.delta = delta;
+			this.keyframe = keyframe;
+
+			size = 32 + (delta == null ? 0 : delta.getByteSize()) + (keyframe == null ? 0 : keyframe.getByteSize());
+		}
+	}
 }
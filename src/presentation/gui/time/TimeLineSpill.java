@@ -0,0 +1,375 @@
+package presentation.gui.time;
+
+import sim.objects.SchematicDelta;
+import sim.objects.SchematicState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The disk tier behind the {@link TimeLine}. Ticks that fall off the start of the time line are appended to segment
+ * files instead of being lost, and read back through memory mapped regions of those files when scrubbing that far back.
+ *
+ * Just like on the heap, most ticks are only written as the delta from the tick before, with a full copy every so many
+ * ticks. An offset index is kept in memory, so any tick can be found without reading the files.
+ */
+public class TimeLineSpill {
+
+	private static final byte FLAG_DELTA = 1, FLAG_KEYFRAME = 2;
+
+	private final File directory;
+	private final long segmentSize;
+	private final int keyframeInterval;
+
+	private final List<Segment> segments;
+
+	// The offset index, one slot per spilled tick
+	private int[] ticks, segmentIds, lengths;
+	private long[] offsets;
+	private boolean[] keyframes, deltas;
+	private int size;
+
+	// Where the last keyframe went, to know when the next one is due
+	private int lastKeyframe;
+
+	// The last tick that was read back, so scrubbing only has to apply a delta or two
+	private SchematicState cursor;
+	private int cursorPosition;
+
+	/**
+	 * @param directory Where the segment files go, it's expected to be empty and is removed again on {@link #close()}.
+	 * @param segmentSize Roughly how big a segment file may get before the next one is started.
+	 * @param keyframeInterval Every how many ticks a full copy is written.
+	 */
+	public TimeLineSpill(File directory, long segmentSize, int keyframeInterval) {
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.keyframeInterval = keyframeInterval;
+
+		segments = new ArrayList<>();
+
+		ticks = new int[1024];
+		segmentIds = new int[ticks.length];
+		lengths = new int[ticks.length];
+		offsets = new long[ticks.length];
+		keyframes = new boolean[ticks.length];
+		deltas = new boolean[ticks.length];
+	}
+
+	/**
+	 * Writes a tick out after the ones that are already there.
+	 * @param state The state at that tick, only read.
+	 * @param delta How to get there from the previously appended tick, null if there's no such thing.
+	 */
+	public synchronized void append(int tick, SchematicState state, SchematicDelta delta) throws IOException {
+
+		boolean keyframe = delta == null || size - lastKeyframe >= keyframeInterval;
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+
+		out.writeByte((delta != null ? FLAG_DELTA : 0) | (keyframe ? FLAG_KEYFRAME : 0));
+
+		// The delta goes first, so stepping back over a keyframe doesn't have to read the whole thing
+		if (delta != null)
+			delta.write(out);
+
+		if (keyframe)
+			state.write(out);
+
+		out.flush();
+
+		Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+		if (segment == null || segment.length >= segmentSize)
+			segment = newSegment();
+
+		long offset = segment.length;
+		ByteBuffer buffer = ByteBuffer.wrap(bos.toByteArray());
+		while (buffer.hasRemaining())
+			segment.length += segment.channel.write(buffer, segment.length);
+
+		if (size == ticks.length)
+			grow();
+
+		ticks[size] = tick;
+		segmentIds[size] = segments.size() - 1;
+		offsets[size] = offset;
+		lengths[size] = bos.size();
+		keyframes[size] = keyframe;
+		deltas[size] = delta != null;
+
+		if (keyframe)
+			lastKeyframe = size;
+
+		size++;
+	}
+
+	/**
+	 * Reads a tick back. The result is shared with the next call, so it should be copied or turned into a tag rather
+	 * than changed or held on to.
+	 */
+	public synchronized SchematicState get(int position) throws IOException {
+
+		if (position < 0 || position >= size)
+			throw new ArrayIndexOutOfBoundsException(position);
+
+		int keyframe = position;
+		while (!keyframes[keyframe])
+			keyframe--;
+
+		// Only start over from the keyframe if the cursor is further away, or on the other side of a gap in the deltas
+		if (cursor == null || Math.abs(cursorPosition - position) > position - keyframe || !canStep(position)) {
+			cursor = readRecord(keyframe).state;
+			cursorPosition = keyframe;
+		}
+
+		while (cursorPosition < position)
+			cursor.apply(readRecord(++cursorPosition).delta, true);
+
+		while (cursorPosition > position)
+			cursor.apply(readRecord(cursorPosition--).delta, false);
+
+		return cursor;
+	}
+
+	/**
+	 * Roughly how many records {@link #get(int)} has to decode to get to a position.
+	 */
+	public synchronized int getDecodeCost(int position) {
+
+		int keyframe = position;
+		while (!keyframes[keyframe])
+			keyframe--;
+
+		int cost = position - keyframe + 1;
+
+		if (cursor != null && canStep(position))
+			cost = Math.min(cost, Math.abs(cursorPosition - position));
+
+		return cost;
+	}
+
+	/**
+	 * How to get to a position from the one before it, null if that's not known.
+	 */
+	public synchronized SchematicDelta getDelta(int position) throws IOException {
+		return deltas[position] ? readRecord(position).delta : null;
+	}
+
+	public synchronized int getTick(int position) {
+		return ticks[position];
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Binary search for the last spilled tick at or before a tick, or the first one if there is none.
+	 */
+	public synchronized int findPosition(int tick) {
+
+		int low = 0;
+		int high = size - 1;
+
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+
+			if (ticks[middle] <= tick)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+
+		return low;
+	}
+
+	/**
+	 * Forgets everything from a position on. The files aren't shrunk, new ticks just go after the forgotten ones.
+	 */
+	public synchronized void truncate(int position) {
+
+		size = position;
+
+		lastKeyframe = size;
+		for (int i = size - 1; i >= 0; i--)
+			if (keyframes[i]) {
+				lastKeyframe = i;
+				break;
+			}
+
+		if (cursorPosition >= size)
+			cursor = null;
+	}
+
+	/**
+	 * How much disk space the segment files take up, forgotten ticks included.
+	 */
+	public synchronized long getDiskBytes() {
+
+		long bytes = 0;
+		for (Segment segment : segments)
+			bytes += segment.length;
+
+		return bytes;
+	}
+
+	/**
+	 * Removes all segment files and starts over.
+	 */
+	public synchronized void clear() {
+
+		for (Segment segment : segments)
+			segment.close();
+
+		segments.clear();
+		size = 0;
+		lastKeyframe = 0;
+		cursor = null;
+	}
+
+	/**
+	 * Removes all segment files and the directory they were in.
+	 */
+	public synchronized void close() {
+		clear();
+
+		if (!directory.delete())
+			directory.deleteOnExit();
+	}
+
+	private boolean canStep(int position) {
+
+		// Stepping over a tick takes its delta, which isn't there right after a gap
+		for (int i = Math.min(cursorPosition, position) + 1; i <= Math.max(cursorPosition, position); i++)
+			if (!deltas[i])
+				return false;
+
+		return true;
+	}
+
+	private Record readRecord(int position) throws IOException {
+
+		DataInputStream in = new DataInputStream(new ByteBufferInputStream(map(position)));
+
+		byte flags = in.readByte();
+
+		SchematicDelta delta = (flags & FLAG_DELTA) != 0 ? SchematicDelta.read(in) : null;
+		SchematicState state = (flags & FLAG_KEYFRAME) != 0 ? SchematicState.read(in) : null;
+
+		return new Record(delta, state);
+	}
+
+	/**
+	 * Gets the bytes of a record, straight out of the mapped segment file.
+	 */
+	private ByteBuffer map(int position) throws IOException {
+
+		Segment segment = segments.get(segmentIds[position]);
+		long end = offsets[position] + lengths[position];
+
+		// The last segment keeps growing, so it's mapped again once a record falls outside of what's mapped
+		if (segment.map == null || segment.map.capacity() < end)
+			segment.map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.length);
+
+		ByteBuffer buffer = segment.map.duplicate();
+		buffer.limit((int) end);
+		buffer.position((int) offsets[position]);
+
+		return buffer;
+	}
+
+	private Segment newSegment() throws IOException {
+
+		File file = new File(directory, "segment" + segments.size() + ".bin");
+		file.deleteOnExit();
+
+		Segment segment = new Segment(file);
+		segments.add(segment);
+
+		return segment;
+	}
+
+	private void grow() {
+		ticks = Arrays.copyOf(ticks, size * 2);
+		segmentIds = Arrays.copyOf(segmentIds, size * 2);
+		lengths = Arrays.copyOf(lengths, size * 2);
+		offsets = Arrays.copyOf(offsets, size * 2);
+		keyframes = Arrays.copyOf(keyframes, size * 2);
+		deltas = Arrays.copyOf(deltas, size * 2);
+	}
+
+	private static class Record {
+
+		private final SchematicDelta delta;
+		private final SchematicState state;
+
+		Record(SchematicDelta delta, SchematicState state) {
+			this.delta = delta;
+			this.state = state;
+		}
+	}
+
+	private static class Segment {
+
+		private final File file;
+		private final RandomAccessFile raf;
+		private final FileChannel channel;
+
+		private long length;
+		private MappedByteBuffer map;
+
+		Segment(File file) throws IOException {
+			this.file = file;
+
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+		}
+
+		void close() {
+
+			map = null;
+
+			try {
+				raf.close();
+			} catch (IOException ignored) {
+			}
+
+			// A mapped file can't be deleted on every platform until the mapping is collected
+			if (!file.delete())
+				file.deleteOnExit();
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+
+			if (!buffer.hasRemaining())
+				return -1;
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+
+			return len;
+		}
+	}
+}
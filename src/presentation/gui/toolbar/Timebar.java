@@ -21,7 +21,7 @@ public class Timebar extends JToolBar implements WorldListener, TimeInfo {
 
     private JButton btnStart, btnStepBack, btnStepForward, btnEnd;
     private JToggleButton btnRushBack, btnPlayBack, btnPause, btnPlayForward, btnRushForward;
-    private JLabel lblStep;
+    private JLabel lblStep, lblRange;
 
     private boolean isPaused, isBack, locked;
 
@@ -63,6 +63,9 @@ public class Timebar extends JToolBar implements WorldListener, TimeInfo {
         lblStep = new JLabel("0", SwingConstants.CENTER);
         lblStep.setFont(new Font(null, Font.PLAIN, 18));
 
+        lblRange = new JLabel("", SwingConstants.CENTER);
+        lblRange.setFont(new Font(null, Font.PLAIN, 11));
+
         btnStart.setToolTipText("Jump to earliest state");
         btnRushBack.setToolTipText("Play backwards fast");
         btnPlayBack.setToolTipText("Play backwards at regular speed");
@@ -92,6 +95,7 @@ public class Timebar extends JToolBar implements WorldListener, TimeInfo {
         contentPanel.add(btnRushForward);
         contentPanel.add(btnEnd);
         contentPanel.add(lblStep);
+        contentPanel.add(lblRange);
 
         worldChooser.addActionListener(ae -> {
             WorldController worldController = (WorldController) worldChooser.getSelectedItem();
@@ -100,11 +104,14 @@ public class Timebar extends JToolBar implements WorldListener, TimeInfo {
                 setPaused(true);
                 setEnabled(false);
                 lblStep.setText("");
+                lblRange.setText("");
 
             } else {
                 setEnabled(true);
                 timeController = worldController.getTimeController();
                 setStep(timeController.getTickCount());
+                setRange(timeController.getTickStartRange(), timeController.getTickEndRange(),
+                        timeController.getRetainedBytes());
             }
         });
         btnStart.addActionListener(ae -> {
@@ -207,6 +214,13 @@ public class Timebar extends JToolBar implements WorldListener, TimeInfo {
         lblStep.setText(String.valueOf(step));
     }
 
+    @Override
+    public void setRange(int firstTick, int lastTick, long retainedBytes) {
+        lblRange.setText(firstTick + " - " + lastTick);
+        lblRange.setToolTipText(String.format("Ticks %d to %d are buffered, using %.1f MB", firstTick, lastTick,
+                retainedBytes / (1024d * 1024d)));
+    }
+
     @Override
     public void onWorldAdded(WorldController worldController) {
         worldChooser.addItem(worldController);
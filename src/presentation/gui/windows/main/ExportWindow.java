@@ -398,7 +398,7 @@ public class ExportWindow extends InternalWindow implements WorldListener, Runna
 
         TimeController timeController = worldController.getTimeController();
 
-        int min = timeController.getTickStartRange();
+        int min = timeController.getTickSeekRange();
         int max = timeController.getTickEndRange();
 
         singleTimeModel.setMinimum(min);
@@ -147,6 +147,40 @@ public class OptionsWindow extends InternalWindow {
                         }
                     },  BorderLayout.EAST);
 
+            JPanel pnlSimulation = new JPanel();
+            pnlSimulation.setLayout(new BoxLayout(pnlSimulation, BoxLayout.Y_AXIS));
+            tabs.add("Simulation", pnlSimulation);
+
+                JPanel pnlTimelineBudget = new JPanel(new BorderLayout(5, 5));
+                pnlSimulation.add(pnlTimelineBudget);
+                pnlTimelineBudget.add(new JLabel("Time line memory (MB)"));
+                JSpinner spinnerTimelineBudget = new JSpinner(new SpinnerNumberModel(
+                        prefs.getInt(Prefs.TIMELINE_BUDGET, sim.constants.Constants.TIMELINE_BUDGET), 1, 65536, 16)
+                );
+                spinnerTimelineBudget.addChangeListener(e -> {
+                    prefs.putInt(Prefs.TIMELINE_BUDGET, (Integer) spinnerTimelineBudget.getValue());
+                    optionsController.notifyListeners(Prefs.TIMELINE_BUDGET);
+                });
+                pnlTimelineBudget.add(spinnerTimelineBudget, BorderLayout.EAST);
+
+                pnlSimulation.add(Box.createVerticalStrut(5));
+
+                JCheckBox chkTimelineThinning = new JCheckBox("Thin out old ticks before dropping them",
+                        prefs.getBoolean(Prefs.TIMELINE_THINNING, sim.constants.Constants.TIMELINE_THINNING));
+                chkTimelineThinning.addActionListener(e -> {
+                    prefs.putBoolean(Prefs.TIMELINE_THINNING, chkTimelineThinning.isSelected());
+                    optionsController.notifyListeners(Prefs.TIMELINE_THINNING);
+                });
+                pnlSimulation.add(chkTimelineThinning);
+
+                JCheckBox chkTimelineSpill = new JCheckBox("Move old ticks to disk instead of dropping them",
+                        prefs.getBoolean(Prefs.TIMELINE_SPILL, sim.constants.Constants.TIMELINE_SPILL));
+                chkTimelineSpill.addActionListener(e -> {
+                    prefs.putBoolean(Prefs.TIMELINE_SPILL, chkTimelineSpill.isSelected());
+                    optionsController.notifyListeners(Prefs.TIMELINE_SPILL);
+                });
+                pnlSimulation.add(chkTimelineSpill);
+
             JPanel pnlFolders = new JPanel();
             tabs.add("Folders", pnlFolders);
 
@@ -0,0 +1,233 @@
+package presentation.gui.windows.world;
+
+import logging.Log;
+import presentation.controllers.WorldController;
+import presentation.main.Constants;
+import sim.objects.Histogram;
+import sim.objects.ProfilerWindow;
+import sim.objects.TickMetrics;
+import sim.objects.TickMetrics.Phase;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.io.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Shows how long ticks take in this world, and which part of them. Next to that, the sections of Minecraft's own
+ * profiler that took the most time lately. The numbers are asked from the simulation while the window is open, without
+ * waiting on it when it's busy with a long tick.
+ */
+public class MetricsWindow extends WorldWindow {
+
+	private static final String[] COLUMNS = {"Phase", "Count", "Mean (µs)", "p50 (µs)", "p90 (µs)", "p99 (µs)", "Max (µs)"};
+	private static final String[] SECTION_COLUMNS = {"Section", "µs per tick", "Share"};
+
+	private final MetricsModel model;
+	private final SectionModel sectionModel;
+	private final JLabel lblSummary;
+	private final Timer timer;
+
+	private TickMetrics metrics;
+	private List<ProfilerWindow.Section> sections = Collections.emptyList();
+	private int sectionTicks;
+
+	private Future<Snapshot> pending;
+
+	public MetricsWindow(JDesktopPane parent, WorldController controller) {
+		super(parent, controller, "Metrics", false);
+
+		setSize(new Dimension(550, 250));
+		setLocation(100, 100);
+		setLayout(new BorderLayout());
+
+		model = new MetricsModel();
+		sectionModel = new SectionModel();
+
+		JTabbedPane tabs = new JTabbedPane();
+		tabs.addTab("Phases", new JScrollPane(new JTable(model)));
+		tabs.addTab("Minecraft", new JScrollPane(new JTable(sectionModel)));
+		add(tabs, BorderLayout.CENTER);
+
+		JPanel pnlBottom = new JPanel(new BorderLayout(10, 10));
+			lblSummary = new JLabel(" ");
+			pnlBottom.add(lblSummary, BorderLayout.CENTER);
+
+			JPanel pnlButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+				JButton btnClear = new JButton("Clear");
+				btnClear.addActionListener(e -> controller.getSimController().clearMetrics());
+				pnlButtons.add(btnClear);
+
+				JButton btnExport = new JButton("Export CSV...");
+				btnExport.addActionListener(e -> export());
+				pnlButtons.add(btnExport);
+
+			pnlBottom.add(pnlButtons, BorderLayout.EAST);
+
+		add(pnlBottom, BorderLayout.SOUTH);
+
+		timer = new Timer(Constants.METRICS_REFRESH, e -> refresh());
+		timer.start();
+	}
+
+	private void refresh() {
+
+		if (!isVisible())
+			return;
+
+		if (pending != null) {
+
+			if (!pending.isDone())
+				return;
+
+			try {
+				Snapshot snapshot = pending.get();
+				metrics = snapshot.metrics;
+				sections = snapshot.sections;
+				sectionTicks = snapshot.sectionTicks;
+
+				model.fireTableDataChanged();
+				sectionModel.fireTableDataChanged();
+				updateSummary();
+
+			} catch (InterruptedException | ExecutionException e) {
+				Log.e("Could not get the tick metrics: " + e.getMessage());
+			}
+		}
+
+		pending = controller.getSimController().submit(simWorld -> new Snapshot(simWorld.getMetrics().copy(),
+				simWorld.getProfilerWindow().getHottest(Constants.PROFILER_HOTTEST), simWorld.getProfilerWindow().getTicks()));
+	}
+
+	private void updateSummary() {
+
+		Histogram tick = metrics.get(Phase.TICK);
+
+		if (tick.getCount() == 0) {
+			lblSummary.setText(" No ticks yet");
+			return;
+		}
+
+		lblSummary.setText(String.format(" Tick p50 %.2f ms, p99 %.2f ms, max %.2f ms, Minecraft over the last %d ticks",
+				tick.getPercentile(50) / 1e6, tick.getPercentile(99) / 1e6, tick.getMax() / 1e6, sectionTicks));
+	}
+
+	private void export() {
+
+		if (metrics == null)
+			return;
+
+		// What is shown is what's saved, even if the simulation has moved on since
+		TickMetrics exported = metrics;
+
+		JFileChooser chooser = new JFileChooser(new File(Constants.EXPORTDIR));
+		chooser.setSelectedFile(new File(Constants.EXPORTDIR, controller.getWorldData().getName() + ".csv"));
+
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+			return;
+
+		try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(chooser.getSelectedFile())))) {
+			exported.writeCsv(writer);
+
+		} catch (IOException e) {
+			Log.e("Could not export the tick metrics: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void dispose() {
+		timer.stop();
+		super.dispose();
+	}
+
+	/**
+	 * What is shown, all taken from the simulation at once.
+	 */
+	private static class Snapshot {
+
+		final TickMetrics metrics;
+		final List<ProfilerWindow.Section> sections;
+		final int sectionTicks;
+
+		Snapshot(TickMetrics metrics, List<ProfilerWindow.Section> sections, int sectionTicks) {
+			this.metrics = metrics;
+			this.sections = sections;
+			this.sectionTicks = sectionTicks;
+		}
+	}
+
+	private class MetricsModel extends AbstractTableModel {
+
+		@Override
+		public int getRowCount() {
+			return Phase.values().length;
+		}
+
+		@Override
+		public int getColumnCount() {
+			return COLUMNS.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return COLUMNS[column];
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+
+			Phase phase = Phase.values()[row];
+
+			if (column == 0)
+				return phase.getLabel();
+
+			if (metrics == null)
+				return "";
+
+			Histogram histogram = metrics.get(phase);
+
+			switch (column) {
+				case 1:		return histogram.getCount();
+				case 2:		return histogram.getMean() / 1000;
+				case 3:		return histogram.getPercentile(50) / 1000;
+				case 4:		return histogram.getPercentile(90) / 1000;
+				case 5:		return histogram.getPercentile(99) / 1000;
+				default:	return histogram.getMax() / 1000;
+			}
+		}
+	}
+
+	private class SectionModel extends AbstractTableModel {
+
+		@Override
+		public int getRowCount() {
+			return sections.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return SECTION_COLUMNS.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return SECTION_COLUMNS[column];
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+
+			ProfilerWindow.Section section = sections.get(row);
+
+			switch (column) {
+				case 0:		return section.name;
+				case 1:		return section.nanosPerTick / 1000;
+				default:	return String.format("%.1f%%", section.share * 100);
+			}
+		}
+	}
+}
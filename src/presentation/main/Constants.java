@@ -12,6 +12,16 @@ public class Constants {
 
     public final static int MAX_FPS = 17; // ms (~60 fps)
 
+    // How many updates of the blocks are remembered, to only draw what changed
+    public final static int VIEW_CHANGELOG = 64;
+
+    // How often an open metrics window asks the simulation for new numbers, in ms
+    public final static int METRICS_REFRESH = 500;
+
+    // How many of Minecraft's profiler sections are shown, and where worlds are found over JMX
+    public final static int PROFILER_HOTTEST = 10;
+    public final static String JMX_DOMAIN = "mcsim";
+
 	public final static String SCHEMATICSDIR = "schems";
 	public final static String EXPORTDIR = "export";
 
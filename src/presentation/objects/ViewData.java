@@ -1,5 +1,10 @@
 package presentation.objects;
 
+import presentation.main.Constants;
+import sim.objects.BlockChanges;
+
+import java.util.ArrayDeque;
+
 /**
  * Contains all data required for drawing
  */
@@ -11,6 +16,10 @@ public class ViewData {
 	private final String name;
 	private char[][][] blocks;
 	private Entity[] entities;
+
+	// What changed in the last few versions of the blocks, as schematic indices, null for everything
+	private long version;
+	private final ArrayDeque<int[]> changeLog;
 	
 	private final static Block AIRBLOCK = new Block((byte) 0);
 	
@@ -21,6 +30,8 @@ public class ViewData {
 		this.ySize = height;
 		this.zSize = length;
 
+		changeLog = new ArrayDeque<>();
+
 //		if (fillNew) {
 //			blocks = new Block[width][height][length];
 //
@@ -31,20 +42,37 @@ public class ViewData {
 //		}
 	}
 
-	public void setState(char[][][] blocks, Entity[] entities) {
+	public void setState(BlockChanges changes, Entity[] entities) {
+
+		if (changes != null)
+			applyChanges(changes);
 
-		setBlocks(blocks);
 		setEntities(entities);
 	}
 
-	void setBlocks(char[][][] blocks) {
-		this.blocks = blocks;
+	/**
+	 * Brings the blocks up to date with what changed in the simulation, see {@link BlockChanges}.
+	 */
+	public synchronized void applyChanges(BlockChanges changes) {
+
+		if (changes.isComplete() || blocks == null) {
+			blocks = changes.getBlocks();
+			logChanges(null);
+			return;
+		}
+
+		for (int i = 0; i < changes.getCount(); i++) {
+			int position = changes.getPosition(i);
+			blocks[position % xSize][position / (xSize * zSize)][position / xSize % zSize] = changes.getBlock(i);
+		}
+
+		logChanges(changes.getPositions());
 	}
 
-	void setEntities(Entity[] entities) {
+	public void setEntities(Entity[] entities) {
 		this.entities = entities;
 	}
-	
+
 	public char getBlock(int x, int y, int z) {
         if (isOutbounds(x, y, z))
 			return 0;
@@ -52,10 +80,71 @@ public class ViewData {
 		return blocks[x][y][z];
 	}
 
-    public void setBlock(int x, int y, int z, char block) {
+    public synchronized void setBlock(int x, int y, int z, char block) {
 
         blocks[x][y][z] = block;
+        logChanges(new int[]{(y * zSize + z) * xSize + x});
     }
+
+	/**
+	 * Counts up with every change to the blocks.
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * The positions of the blocks that changed after a version, so only those need to be drawn again. There can be
+	 * doubles in there.
+	 * @return null if that's too long ago or everything may have changed.
+	 */
+	public synchronized int[] getChangesSince(long since) {
+
+		long first = version - changeLog.size();
+
+		if (since < first)
+			return null;
+
+		int count = 0;
+		int skip = (int) (since - first);
+		int index = 0;
+
+		for (int[] changes : changeLog) {
+			if (index++ < skip)
+				continue;
+
+			if (changes == null)
+				return null;
+
+			count += changes.length;
+		}
+
+		int[] positions = new int[count];
+		count = 0;
+		index = 0;
+
+		for (int[] changes : changeLog) {
+			if (index++ < skip)
+				continue;
+
+			System.arraycopy(changes, 0, positions, count, changes.length);
+			count += changes.length;
+		}
+
+		return positions;
+	}
+
+	/**
+	 * @param positions null if everything may have changed.
+	 */
+	private void logChanges(int[] positions) {
+
+		version++;
+		changeLog.addLast(positions);
+
+		if (changeLog.size() > Constants.VIEW_CHANGELOG)
+			changeLog.removeFirst();
+	}
 	
 	boolean isOutbounds(int x, int y, int z) {
 		
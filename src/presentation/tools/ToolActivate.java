@@ -11,6 +11,9 @@ public class ToolActivate extends Tool {
 	private int dragButton;
 	private final MainController mainController;
 
+	// The world the drag started in, it's committed there even if another world gets selected
+	private WorldController editing;
+
 	public ToolActivate(MainController mainController) {
 		super(mainController, "Activate", "cursor.png", false);
 
@@ -24,23 +27,35 @@ public class ToolActivate extends Tool {
 	@Override
 	public void mousePressed(MouseEvent e) {
 		dragButton = e.getButton();
-        if (dragButton == MouseEvent.BUTTON1 || dragButton == MouseEvent.BUTTON3)
+        if (dragButton == MouseEvent.BUTTON1 || dragButton == MouseEvent.BUTTON3) {
+
+            // Everything activated while dragging is one edit
+            editing = getWorldController();
+            editing.beginEdit();
 		    activate();
+        }
 	}
 	
 	private void activate() {
 		Cord3S c = getSelectedCord3D();
 
 		WorldController worldController = mainController.getSelectedWorld();
+
+		worldController.beginEdit();
 		worldController.getSimController().activateBlock(c.x, c.y, c.z);
-		
-		worldController.getTimeController().updateCurrentSchematic();
+		worldController.commitEdit();
 
         worldController.getMainController().onSelectionUpdated(getWorldController(), getSelectedCord2D(), c, false);
 	}
 
 	@Override
 	public void mouseReleased(MouseEvent e) {
+
+		if (editing != null) {
+			editing.commitEdit();
+			editing = null;
+		}
+
 		dragButton = MouseEvent.NOBUTTON;
 	}
 
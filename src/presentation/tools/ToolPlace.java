@@ -15,6 +15,9 @@ public class ToolPlace extends Tool {
     private boolean dragging;
     private boolean doUpdate;
 
+    // The world the drag started in, it's committed there even if another world gets selected
+    private WorldController editing;
+
 	public ToolPlace(MainController mainController) {
 		super(mainController, "Place", "block.png", false);
         dragging = false;
@@ -45,6 +48,10 @@ public class ToolPlace extends Tool {
         doUpdate = !((MouseEvent.SHIFT_DOWN_MASK & modifiers) == MouseEvent.SHIFT_DOWN_MASK);
         dragging = true;
 
+        // The whole drag is one edit
+        editing = getWorldController();
+        editing.beginEdit();
+
 		setBlock();
 	}
 	
@@ -74,7 +81,13 @@ public class ToolPlace extends Tool {
 
 	@Override
 	public void mouseReleased(MouseEvent e) {
+
+        if (!dragging)
+            return;
+
         dragging = false;
+        editing.commitEdit();
+        editing = null;
 	}
 
 	@Override
@@ -46,27 +46,43 @@ public class ToolRotate extends Tool {
             return;
 
         byte startData = Block.getData(block);
-        byte data = startData;
-        Object sideBlock;
 
-        do {
-            data = blockLogic.rotate(data, forward);
+        // The sides are looked at in the tick that's shown, which the edit brings the simulation to
+        worldController.beginEdit();
 
-            if (blockLogic.getSide(data) == null)
-                break;
+        try {
+            // Looks at all the sides in one go on the simulation thread
+            Byte data = simController.batch(simWorld -> {
 
-            if (data == startData)
-                break;
+                byte rotated = startData;
+                Object sideBlock;
 
-            Cord3S sideCord = blockLogic.getSide(data).add(c);
+                do {
+                    rotated = blockLogic.rotate(rotated, forward);
 
-            sideBlock = simController.getBlockFromState(
-                    simController.getBlockState(sideCord.x, sideCord.y, sideCord.z));
+                    if (blockLogic.getSide(rotated) == null)
+                        break;
 
-        } while (!simController.isFullCube(sideBlock) || !simController.isOpaque(sideBlock));
+                    if (rotated == startData)
+                        break;
 
-        block = Block.getChar(Block.getId(block), data);
-        worldController.setBlock(c.x, c.y, c.z, block, true);
+                    Cord3S sideCord = blockLogic.getSide(rotated).add(c);
+
+                    sideBlock = simWorld.getBlockFromState(simWorld.getBlockState(sideCord.x, sideCord.y, sideCord.z));
+
+                } while (!simWorld.isFullCube(sideBlock) || !simWorld.isOpaque(sideBlock));
+
+                return rotated;
+            });
+
+            if (data == null)
+                return;
+
+            worldController.setBlock(c.x, c.y, c.z, Block.getChar(Block.getId(block), data), true);
+
+        } finally {
+            worldController.commitEdit();
+        }
     }
 	
 	private void rotate() {
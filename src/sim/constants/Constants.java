@@ -49,7 +49,9 @@ public class Constants {
 		{"getProperties", "Get all properties"}, {"getTileEntity"}, {"update", "Updates the JList"},
 		{"onUpdate", "Called to update the entity"}, {"clearMap"}, {"getNameForObject"},
 		{"getEntityString", "Returns the string that identifies"}, {"getEventID"}, {"getEventParameter"},
-		{"onBlockEventReceived"}, {"isOpaque"}, {"isFullCube"}, {"updateBlockTick"}, {"updateTick"}, {"randomTick"}};
+		{"onBlockEventReceived"}, {"isOpaque"}, {"isFullCube"}, {"updateBlockTick"}, {"updateTick"}, {"randomTick"},
+		{"notifyBlockOfStateChange"}, {"getLightValue"}, {"getLightOpacity"}, {"hasComparatorInputOverride"},
+		{"checkLight"}};
 
 	public final static String[][] REQUIREDFIELDS = {
 		{"provider"}, {"disableLevelSaving"}, {"pendingTickListEntriesTreeSet"}, {"pendingTickListEntriesHashSet"},
@@ -61,14 +63,16 @@ public class Constants {
 		{"addedTileEntityList"}, {"tileEntitiesToBeRemoved"}, {"x", "X coor"}, {"y", "Y coor"}, {"z", "Z coor"},
 		{"posX", "Entity"}, {"posY", "Entity"}, {"posZ", "Entity"}, {"width", "How wide"}, {"isDead"},
 		{"motionX", "Entity"}, {"motionY", "Entity"}, {"motionZ", "Entity"}, {"height", "How high"}, {"entityUniqueID"},
-        {"blockEventCacheIndex"}, {"blockMaterial"}, {"storageArrays"}};
+        {"blockEventCacheIndex"}, {"blockMaterial"}, {"storageArrays"}, {"tileEntityInvalid"}, {"chunkTileEntityMap"},
+        {"entityLists"}, {"tickEntryID"}};
 
 	public final static String[] REQUIREDCLASSES = {"World", "WorldServer", "WorldProvider", "Profiler", "WorldSettings",
 		"WorldSettings$GameType", "WorldInfo", "WorldType", "IChunkProvider", "Block", "Chunk",
 		"NBTTagCompound", "TileEntity", "IntHashMap", "Entity", "EntityList", "Bootstrap", "NBTTagList",
 		"NBTSizeTracker", "NextTickListEntry", "EntityPlayer", "EntityOtherPlayerMP", "ChunkPrimer", "BlockPos", "IBlockState", "Vec3i", "BlockPos$MutableBlockPos",
 		"EnumFacing", "PropertyDirection", "IProperty", "WorldBorder", "WorldServer$ServerBlockEventList",
-		"IUpdatePlayerListBox", "RegistryNamespaced", "BlockEventData", "Material", "ExtendedBlockStorage"};
+		"IUpdatePlayerListBox", "RegistryNamespaced", "BlockEventData", "Material", "ExtendedBlockStorage",
+		"ClassInheritanceMultiMap", "IWorldAccess"};
 
 	// Untranslated methods because there are multiple versions of its name
 	public final static String WORLD_GETBLOCKSTATE = "p";
@@ -100,5 +104,67 @@ public class Constants {
     public final static boolean MAPFEATURESENABLED = false;
     public final static boolean HARDCOREENABLED = false;
     public final static int WORLDPROVIDER = 0;
-    public static final int TIMELINE_LENGTH = 100;
+
+    // How many world sizes to keep chunks around for
+    public final static int CHUNKPOOL_SIZES = 2;
+
+    // Time line, the budget is in MB and can be changed in the options
+    public static final int TIMELINE_BUDGET = 256;
+    public static final boolean TIMELINE_THINNING = true;
+    public static final int TIMELINE_MAX_THINNING = 16;
+    public static final int TIMELINE_KEYFRAME_INTERVAL = 20;
+
+    // Spilling the time line to disk, the segment size is in MB
+    public static final boolean TIMELINE_SPILL = false;
+    public static final int TIMELINE_SEGMENT_SIZE = 64;
+    public static final String TIMELINE_SPILL_PREFIX = "mcsim-timeline";
+
+    // Checkpoints to tick forward from when seeking past what the time line still has
+    public static final int TIMELINE_CHECKPOINT_INTERVAL = 100;
+    public static final int TIMELINE_MAX_CHECKPOINTS = 64;
+
+    // Edits are pinned as checkpoints, past this many or this many MB for all checkpoints the oldest ones are dropped
+    public static final int TIMELINE_MAX_PINNED = 64;
+    public static final int TIMELINE_CHECKPOINT_BUDGET = 128;
+
+    // First guesses for the seek cost model in nanoseconds, until there are real timings
+    public static final long TIMELINE_TICK_COST = 2000000;
+    public static final long TIMELINE_DELTA_COST = 50000;
+
+    // How many ticks may be simulated ahead of what is shown when playing forward
+    public static final int LOOKAHEAD_FRAMES = 8;
+
+    // How long every tick is shown when playing, in ms, at least a frame of the editor's max fps
+    public static final int PLAY_TICK_DELAY = 100;
+
+    // Rushing and batch runs skip ticks in which nothing would happen, at most this many at once when nothing is scheduled
+    public static final boolean SKIP_IDLE = true;
+    public static final int SKIP_IDLE_MAX = 1200;
+
+    // Running schematics without the GUI, a schematic is idle once this many ticks in a row changed nothing
+    public static final String SCHEMATICEXTENSION = ".schematic";
+    public static final String BATCH_METRICSEXTENSION = ".csv";
+    public static final String BATCH_PHASESEXTENSION = ".phases.csv";
+    public static final int BATCH_TICKS = 1000;
+    public static final int BATCH_IDLE_TICKS = 2;
+
+    // How often the simulation thread is checked on and after how many ms a command counts as slow
+    public static final int SIM_WATCHDOG_INTERVAL = 1000;
+    public static final int SIM_SLOW_COMMAND = 5000;
+
+    // How many ticks with block changes Minecraft's change reports are checked against a full copy before they're trusted
+    public static final int WORLDACCESS_VERIFY_TICKS = 20;
+
+    // How many blocks are checked after every tick once those reports are trusted, in turn
+    public static final int WORLDACCESS_CHECK_BLOCKS = 8192;
+
+    // Every how many ticks Minecraft's profiler is read and reset, and over how many ticks its sections are summed up
+    public static final int PROFILER_SAMPLE_TICKS = 1;
+    public static final int PROFILER_WINDOW = 200;
+
+    // How many block bytes are read off a schematic stream at once when loading it
+    public static final int SCHEMATIC_STREAM_BUFFER = 8192;
+
+    // Every how many schematics all of their blocks are read from the world again, not just the sections that changed
+    public static final int SCHEMATIC_REFRESH_INTERVAL = 100;
 }
\ No newline at end of file
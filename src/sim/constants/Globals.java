@@ -13,14 +13,25 @@ public class Globals {
 		return getMinecraftFolder(null);
 	}
 
-	private static String getMinecraftFolder(JFrame parent) {
+	/**
+	 * Looks for the .minecraft folder in the usual places, without asking.
+	 * @return null if it's in none of them.
+	 */
+	public static String findMinecraftFolder() {
 		// Dumb windows attempt
 		String minecraftFolder = System.getenv("APPDATA") + sim.constants.Constants.MINECRAFTFOLDER;
 		
 		if (!new File(minecraftFolder).exists())
 			minecraftFolder = "minecraft";
 
-		if (!new File(minecraftFolder).exists()) {
+		return new File(minecraftFolder).exists() ? minecraftFolder : null;
+	}
+
+	private static String getMinecraftFolder(JFrame parent) {
+
+		String minecraftFolder = findMinecraftFolder();
+
+		if (minecraftFolder == null) {
 			
 			MinecraftFolderChooser minecraftDialog = new MinecraftFolderChooser();
 			int result = minecraftDialog.showDialog(parent, "Select");
@@ -10,4 +10,7 @@ public class Prefs {
     public static final String EDITOR_COLOR_ENTITYSPEED = "editor-color-entityspeed";
     public static final String EDITOR_COLOR_SELECTIONBORDER = "editor-color-selectionborder";
     public static final String EDITOR_COLOR_SELECTIONINTERIOR = "editor-color-selectioninterior";
+    public static final String TIMELINE_BUDGET = "timeline-budget";
+    public static final String TIMELINE_THINNING = "timeline-thinning";
+    public static final String TIMELINE_SPILL = "timeline-spill";
 }
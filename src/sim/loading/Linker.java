@@ -5,7 +5,11 @@ import sim.constants.Constants;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 
@@ -18,6 +22,8 @@ public class Linker {
 	
 	// All buffered class objects
 	private HashMap<String, Class<?>> classes;
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
 	
 	/**
 	 * Deobfuscating is a 2 step process, so the intermediate is temporarily buffered
@@ -84,4 +90,63 @@ public class Linker {
 		f.setAccessible(true);
 		return f;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Gets the requested method as a handle, for calls that happen every tick. Going through a handle skips the access
+	 * checks, boxing and argument arrays of {@link Method#invoke}. The handles are kept in instance fields, so the JIT
+	 * doesn't take them for constants and won't inline through them, that would take a static final field.
+	 *
+	 * The handle's type is erased: every Minecraft class is an Object, primitives are left as they are, and an instance
+	 * method takes its instance first. Call it with invokeExact, casting the arguments and the result to exactly that.
+	 */
+	public MethodHandle handle(String name, Class<?> clazz, Class<?>... parameterTypes) throws NoSuchMethodException, SecurityException, IllegalAccessException {
+		return handle(method(name, clazz, parameterTypes));
+	}
+
+	/**
+	 * Gets a handle for a method that was found by hand, like {@link #handle(String, Class, Class[])}.
+	 */
+	public static MethodHandle handle(Method method) throws IllegalAccessException {
+		method.setAccessible(true);
+
+		MethodHandle handle = LOOKUP.unreflect(method);
+		return handle.asType(handle.type().erase());
+	}
+
+	/**
+	 * Gets a handle for a constructor, like {@link #handle(String, Class, Class[])}. It returns an Object.
+	 */
+	public static MethodHandle handle(Constructor<?> constructor) throws IllegalAccessException {
+		constructor.setAccessible(true);
+
+		MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+		return handle.asType(handle.type().erase());
+	}
+
+	/**
+	 * Gets a handle that reads the requested field, like {@link #handle(String, Class, Class[])}. It takes the instance
+	 * as an Object and returns an Object or the primitive.
+	 */
+	public MethodHandle getter(String name, Class<?> clazz) throws NoSuchFieldException, SecurityException, IllegalAccessException {
+
+		MethodHandle handle = LOOKUP.unreflectGetter(field(name, clazz));
+		return handle.asType(handle.type().erase());
+	}
+
+	/**
+	 * Gets a handle that writes the requested field, like {@link #getter(String, Class)}. It takes the instance and the
+	 * value, final fields included.
+	 */
+	public MethodHandle setter(String name, Class<?> clazz) throws NoSuchFieldException, SecurityException, IllegalAccessException {
+
+		MethodHandle handle = LOOKUP.unreflectSetter(field(name, clazz));
+		return handle.asType(handle.type().erase());
+	}
+
+	/**
+	 * Makes what a handle threw look like what {@link Method#invoke} would have thrown, so it's handled the same.
+	 */
+	public static InvocationTargetException wrap(Throwable throwable) {
+		return new InvocationTargetException(throwable);
+	}
+}
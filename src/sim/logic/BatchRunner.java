@@ -0,0 +1,181 @@
+package sim.logic;
+
+import logging.Log;
+import sim.constants.Constants;
+import sim.objects.SchematicDelta;
+import sim.objects.SchematicState;
+import sim.objects.TickMetrics;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Runs schematics without any of the GUI: load, tick, save. All schematics go through the same Simulator, so loading
+ * Minecraft only has to happen once for a whole folder of them.
+ *
+ * Next to the resulting schematic, a csv file is written with a line per tick: how long it took, how many blocks
+ * changed (-1 if that couldn't be told) and how many tile ticks and entities there were after it. Ticks in which
+ * nothing would happen are skipped unless told otherwise, those don't get a line but are counted in the log. Another
+ * csv file has the latencies of every phase of a tick, see {@link TickMetrics#writeCsv(PrintWriter)}.
+ */
+public class BatchRunner {
+
+	private final SimWorld simWorld;
+
+	private boolean skipIdle = Constants.SKIP_IDLE;
+
+	public BatchRunner(Simulator simulator) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+		simWorld = simulator.createWorld();
+	}
+
+	/**
+	 * Whether ticks in which nothing would happen are skipped, see {@link SimWorld#skipIdleTicks(int)}. They still count
+	 * towards the amount of ticks to run.
+	 */
+	public void setSkipIdle(boolean skipIdle) {
+		this.skipIdle = skipIdle;
+	}
+
+	/**
+	 * Runs every schematic in a folder, the results go into another folder by the same names.
+	 * @return How many schematics could be run.
+	 */
+	public int runDirectory(File directory, File outputDirectory, int ticks, boolean untilIdle) {
+
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(Constants.SCHEMATICEXTENSION));
+
+		if (files == null) {
+			Log.e("Not a folder: " + directory);
+			return 0;
+		}
+
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			Log.e("Could not create the output folder: " + outputDirectory);
+			return 0;
+		}
+
+		int done = 0;
+
+		for (File file : files) {
+
+			File output = new File(outputDirectory, file.getName());
+			File metrics = new File(outputDirectory, file.getName() + Constants.BATCH_METRICSEXTENSION);
+
+			try {
+				int ran = run(file, output, metrics, ticks, untilIdle);
+				Log.i("Ran " + file.getName() + " for " + ran + " ticks");
+				done++;
+
+			} catch (IOException | NoSuchAlgorithmException | IllegalAccessException | IllegalArgumentException
+					| InvocationTargetException | InstantiationException e) {
+				Log.e("Could not run " + file.getName() + ": " + e);
+
+			} catch (RuntimeException e) {
+				// Minecraft choking on one schematic shouldn't stop the rest
+				Log.e("Running " + file.getName() + " failed: " + e);
+				e.printStackTrace();
+			}
+		}
+
+		return done;
+	}
+
+	/**
+	 * Loads a schematic in a fresh world, ticks it and saves the result.
+	 * @param ticks How many ticks to run at most.
+	 * @param untilIdle Whether to stop early once nothing changes anymore.
+	 * @return How many ticks were run.
+	 */
+	public int run(File schematic, File output, File metrics, int ticks, boolean untilIdle) throws IOException, NoSuchAlgorithmException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		simWorld.createInstance();
+
+		try (InputStream input = new FileInputStream(schematic)) {
+			simWorld.setSchematic(input);
+		}
+
+		SchematicState state = SchematicState.fromTag(simWorld.getSchematic());
+		simWorld.getMetrics().clear();
+
+		int idleTicks = 0;
+		int tick = 0, ticked = 0;
+		long totalNanos = 0;
+
+		try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(metrics)))) {
+
+			writer.println("tick,nanos,changedBlocks,tileTicks,entities");
+
+			while (tick < ticks && (!untilIdle || idleTicks < Constants.BATCH_IDLE_TICKS)) {
+
+				// With nothing scheduled at all, this skips to the end
+				if (skipIdle) {
+					tick += simWorld.skipIdleTicks(ticks - tick);
+
+					if (tick == ticks)
+						break;
+				}
+
+				long start = System.nanoTime();
+				simWorld.tickWorld();
+				long nanos = System.nanoTime() - start;
+				totalNanos += nanos;
+
+				tick++;
+				ticked++;
+
+				int pending = simWorld.getPendingTickCount();
+				int entities = simWorld.getEntityCount();
+				int[] tickChanges = simWorld.getTickChanges();
+				int changed;
+				boolean idle;
+
+				if (tickChanges != null) {
+					// Minecraft's own report, the whole schematic only has to be compared when it can't be trusted
+					changed = tickChanges.length;
+					idle = changed == 0 && pending == 0 && entities == 0 && simWorld.getTickableTileEntityCount() == 0;
+					state = null;
+
+				} else {
+					SchematicState next = SchematicState.fromTag(simWorld.getSchematic());
+
+					// Minecraft was just caught missing a change, there's no tick before this one to compare with
+					if (state == null) {
+						changed = -1;
+						idle = false;
+
+					} else {
+						SchematicDelta delta = state.diff(next);
+						changed = delta.getBlockCount();
+						idle = delta.isEmpty();
+					}
+
+					state = next;
+				}
+
+				idleTicks = idle ? idleTicks + 1 : 0;
+
+				writer.println(tick + "," + nanos + "," + changed + "," + pending + "," + entities);
+			}
+		}
+
+		if (totalNanos > 0)
+			Log.i(schematic.getName() + ": " + ticked * 1000000000L / totalNanos + " ticks per second, p50 "
+					+ simWorld.getMetrics().get(TickMetrics.Phase.TICK).getPercentile(50) / 1000 + " µs, p99 "
+					+ simWorld.getMetrics().get(TickMetrics.Phase.TICK).getPercentile(99) / 1000 + " µs, "
+					+ (tick - ticked) + " idle ticks skipped");
+		else if (tick > 0)
+			// Nothing was ever scheduled, the whole run was skipped
+			Log.i(schematic.getName() + ": idle, all " + tick + " ticks skipped");
+
+		try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(output.getPath() + Constants.BATCH_PHASESEXTENSION)))) {
+			simWorld.getMetrics().writeCsv(writer);
+		}
+
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+			simWorld.getSchematic(out);
+		}
+
+		return tick;
+	}
+}
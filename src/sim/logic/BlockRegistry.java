@@ -0,0 +1,162 @@
+package sim.logic;
+
+import logging.Log;
+import presentation.objects.Block;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * A mirror of Minecraft's block registry, read once after the blocks are registered. Going between the packed block
+ * chars (id << 4 | meta) that the rest of the simulator uses and Minecraft's blocks and block states is then an array
+ * or identity map lookup instead of a reflective call.
+ *
+ * Block states are singletons in Minecraft, so they can be looked up by identity. Anything that isn't in the mirror,
+ * like a block that was added later, is left to {@link RBlock} to do reflectively.
+ */
+class BlockRegistry {
+
+	public static final int FLAG_OPAQUE = 1, FLAG_FULLCUBE = 2, FLAG_TILEENTITY = 4, FLAG_COMPARATOR = 8;
+
+	// By packed block char
+	private final Object[] states;
+	private final byte[] flags;
+
+	// By id
+	private final Object[] blocks;
+	private final String[] names;
+	private final byte[] lightValues, lightOpacities;
+
+	// The other way around, a state maps to the packed char of its own meta, which isn't always the one it came from
+	private final IdentityHashMap<Object, Character> chars;
+	private final IdentityHashMap<Object, Integer> ids;
+	private final HashMap<String, Object> blocksByName;
+
+	public BlockRegistry(RBlock rBlock) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+
+		states = new Object[4096];
+		flags = new byte[4096];
+		blocks = new Object[256];
+		names = new String[256];
+		lightValues = new byte[256];
+		lightOpacities = new byte[256];
+
+		chars = new IdentityHashMap<>();
+		ids = new IdentityHashMap<>();
+		blocksByName = new HashMap<>();
+
+		for (int id = 0; id < blocks.length; id++) {
+
+			Object block = rBlock.getBlockById((byte) id);
+
+			// Ids that aren't registered give air
+			if (rBlock.getIdFromBlock(block) != id)
+				continue;
+
+			String name = rBlock.getInternalBlockName(block);
+
+			blocks[id] = block;
+			names[id] = name;
+			ids.put(block, id);
+			blocksByName.put(name, block);
+
+			lightValues[id] = (byte) rBlock.getLightValue(block);
+			lightOpacities[id] = (byte) rBlock.getLightOpacity(block);
+
+			int blockFlags = (rBlock.isOpaque(block) ? FLAG_OPAQUE : 0)
+					| (rBlock.isFullCube(block) ? FLAG_FULLCUBE : 0)
+					| (rBlock.hasTileEntity(block) ? FLAG_TILEENTITY : 0)
+					| (rBlock.hasComparatorInputOverride(block) ? FLAG_COMPARATOR : 0);
+
+			for (int meta = 0; meta < 16; meta++) {
+
+				char c = Block.getChar((byte) id, (byte) meta);
+				flags[c] = (byte) blockFlags;
+
+				Object state;
+
+				try {
+					state = rBlock.getStateFromMeta(block, (byte) meta);
+				} catch (InvocationTargetException e) {
+					// Some blocks don't take every meta
+					continue;
+				}
+
+				states[c] = state;
+
+				if (!chars.containsKey(state))
+					chars.put(state, Block.getChar((byte) id, (byte) rBlock.getMetaFromState(block, state)));
+			}
+		}
+
+		Log.i("Mirrored " + ids.size() + " blocks and " + chars.size() + " block states");
+	}
+
+	/**
+	 * @return null if that id and meta aren't known.
+	 */
+	public Object getState(char block) {
+		return states[block];
+	}
+
+	/**
+	 * @return -1 if the state isn't known.
+	 */
+	public int getChar(Object state) {
+
+		Character c = chars.get(state);
+		return c == null ? -1 : c;
+	}
+
+	/**
+	 * @return null if no block has that id.
+	 */
+	public Object getBlock(int id) {
+		return blocks[id];
+	}
+
+	/**
+	 * @return -1 if the block isn't known.
+	 */
+	public int getId(Object block) {
+
+		Integer id = ids.get(block);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @return null if the block isn't known.
+	 */
+	public String getName(Object block) {
+
+		Integer id = ids.get(block);
+		return id == null ? null : names[id];
+	}
+
+	/**
+	 * Looks up a block by its full internal name, like "minecraft:stone".
+	 * @return null if there's no such block.
+	 */
+	public Object getBlock(String name) {
+		return blocksByName.get(name);
+	}
+
+	/**
+	 * Whether a block has a flag, any of its metas will do.
+	 */
+	public boolean hasFlag(int id, int flag) {
+		return (flags[id << 4] & flag) != 0;
+	}
+
+	public int getLightValue(int id) {
+		return lightValues[id];
+	}
+
+	/**
+	 * Goes up to 255, which doesn't fit in a byte.
+	 */
+	public int getLightOpacity(int id) {
+		return lightOpacities[id] & 0xFF;
+	}
+}
@@ -0,0 +1,47 @@
+package sim.logic;
+
+import sim.constants.Constants;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the chunks of a world around by the world's size, so setting a schematic of the same size again can reuse
+ * the chunks and their sections instead of allocating new ones. Chunks hold on to their world, so a pool belongs to
+ * a single SimWorld.
+ */
+class ChunkPool {
+
+	// The chunks of a world as [x >> 4][z >> 4], by "xSize,ySize,zSize", the least recently used size goes first
+	private final LinkedHashMap<String, Object[][]> grids;
+
+	public ChunkPool() {
+
+		grids = new LinkedHashMap<String, Object[][]>(4, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Object[][]> eldest) {
+				return size() > Constants.CHUNKPOOL_SIZES;
+			}
+		};
+	}
+
+	/**
+	 * Gets the chunks for a world of the given size, the ones that were never made are null.
+	 */
+	public Object[][] get(int xSize, int ySize, int zSize) {
+
+		String key = xSize + "," + ySize + "," + zSize;
+		Object[][] grid = grids.get(key);
+
+		if (grid == null) {
+			grid = new Object[(xSize + 15) >> 4][(zSize + 15) >> 4];
+			grids.put(key, grid);
+		}
+
+		return grid;
+	}
+
+	public void clear() {
+		grids.clear();
+	}
+}
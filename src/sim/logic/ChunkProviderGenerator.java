@@ -0,0 +1,378 @@
+package sim.logic;
+
+import logging.Log;
+import sim.exceptions.UnimplementedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Writes a real class that implements Minecraft's IChunkProvider, instead of putting a Proxy in front of
+ * {@link RChunkProvider}. Every method of the generated class calls straight into a {@link ChunkSource} with the
+ * arguments as they are, so there's no boxing, no Object[] and no looking at the Method on every call, and the JIT can
+ * inline the chunk lookups into World.getBlockState.
+ *
+ * The methods are told apart by their signatures, just like {@link RChunkProvider#invoke} does, as their names are
+ * obfuscated. The class is written by hand, it's all straight line code so it needs no stack map frames. The methods
+ * that aren't needed throw an {@link UnimplementedException}, like RChunkProvider's do.
+ */
+class ChunkProviderGenerator {
+
+	private static final String CLASSNAME = "sim/logic/generated/ChunkProvider";
+	private static final String SOURCE = ChunkSource.class.getName().replace('.', '/');
+	private static final String UNIMPLEMENTED = UnimplementedException.class.getName().replace('.', '/');
+
+	private static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+	private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ILOAD_1 = 0x1b, ILOAD_2 = 0x1c, ICONST_0 = 0x03,
+			GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKESPECIAL = 0xb7, INVOKEINTERFACE = 0xb9, CHECKCAST = 0xc0,
+			NEW = 0xbb, DUP = 0x59, LDC_W = 0x13, ATHROW = 0xbf, ARETURN = 0xb0, IRETURN = 0xac, RETURN = 0xb1;
+
+	private final ConstantPool pool = new ConstantPool();
+
+	/**
+	 * Generates the class and gets its constructor, which takes a {@link ChunkSource}.
+	 */
+	public static Constructor<?> generate(Class<?> chunkProviderInterface) throws NoSuchMethodException {
+
+		byte[] bytes = new ChunkProviderGenerator().write(chunkProviderInterface);
+
+		Class<?> clazz = new GeneratedClassLoader(chunkProviderInterface.getClassLoader())
+				.define(CLASSNAME.replace('/', '.'), bytes);
+
+		Log.i("Generated a chunk provider of " + bytes.length + " bytes");
+
+		return clazz.getConstructor(ChunkSource.class);
+	}
+
+	private byte[] write(Class<?> chunkProviderInterface) {
+
+		int thisClass = pool.classRef(CLASSNAME);
+		int superClass = pool.classRef("java/lang/Object");
+		int interfaceClass = pool.classRef(internalName(chunkProviderInterface));
+
+		int fieldName = pool.utf8("source");
+		int fieldType = pool.utf8("L" + SOURCE + ";");
+		int source = pool.fieldRef(CLASSNAME, "source", "L" + SOURCE + ";");
+
+		List<byte[]> methods = new ArrayList<>();
+
+		// public ChunkProvider(ChunkSource source) { super(); this.source = source; }
+		methods.add(method("<init>", "(L" + SOURCE + ";)V", 2, new Code()
+				.op(ALOAD_0).op(INVOKESPECIAL).u2(pool.methodRef("java/lang/Object", "<init>", "()V"))
+				.op(ALOAD_0).op(ALOAD_1).op(PUTFIELD).u2(source)
+				.op(RETURN)));
+
+		for (Method method : chunkProviderInterface.getMethods())
+			if (!Modifier.isStatic(method.getModifiers()) && !method.isDefault())
+				methods.add(method(method.getName(), descriptor(method), slots(method), body(method, source)));
+
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(52);
+
+			// Everything is in the pool by now
+			pool.write(out);
+
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+
+			out.writeShort(1);
+			out.writeShort(interfaceClass);
+
+			out.writeShort(1);
+			out.writeShort(ACC_PRIVATE | ACC_FINAL);
+			out.writeShort(fieldName);
+			out.writeShort(fieldType);
+			out.writeShort(0);
+
+			out.writeShort(methods.size());
+			for (byte[] method : methods)
+				out.write(method);
+
+			out.writeShort(0);
+
+			return bos.toByteArray();
+
+		} catch (IOException e) {
+			throw new IllegalStateException("Writing to memory failed", e);
+		}
+	}
+
+	/**
+	 * The code for one of IChunkProvider's methods, see {@link RChunkProvider#invoke} for which one is which.
+	 */
+	private Code body(Method method, int source) {
+
+		Class<?>[] paramTypes = method.getParameterTypes();
+		Class<?> returnType = method.getReturnType();
+		boolean twoInts = paramTypes.length == 2 && paramTypes[0] == int.class && paramTypes[1] == int.class;
+
+		Code code = new Code();
+
+		if (returnType == void.class)
+			return code.op(RETURN);
+
+		if (returnType == boolean.class) {
+
+			if (twoInts)
+				return code.op(ALOAD_0).op(GETFIELD).u2(source).op(ILOAD_1).op(ILOAD_2)
+						.invokeInterface(pool.interfaceMethodRef(SOURCE, "chunkExists", "(II)Z"), 3).op(IRETURN);
+
+			if (paramTypes.length == 2)
+				return unsupported(code, method);
+
+			return code.op(ICONST_0).op(IRETURN);
+		}
+
+		if (returnType == int.class)
+			return code.op(ALOAD_0).op(GETFIELD).u2(source)
+					.invokeInterface(pool.interfaceMethodRef(SOURCE, "getLoadedChunkCount", "()I"), 1).op(IRETURN);
+
+		if (returnType == String.class)
+			return code.op(ALOAD_0).op(GETFIELD).u2(source)
+					.invokeInterface(pool.interfaceMethodRef(SOURCE, "makeString", "()Ljava/lang/String;"), 1).op(ARETURN);
+
+		if (returnType.isPrimitive())
+			return unsupported(code, method);
+
+		if (twoInts)
+			return code.op(ALOAD_0).op(GETFIELD).u2(source).op(ILOAD_1).op(ILOAD_2)
+					.invokeInterface(pool.interfaceMethodRef(SOURCE, "getChunk", "(II)Ljava/lang/Object;"), 3)
+					.op(CHECKCAST).u2(pool.classRef(internalName(returnType))).op(ARETURN);
+
+		if (paramTypes.length == 1 && !paramTypes[0].isPrimitive())
+			return code.op(ALOAD_0).op(GETFIELD).u2(source).op(ALOAD_1)
+					.invokeInterface(pool.interfaceMethodRef(SOURCE, "getChunk", "(Ljava/lang/Object;)Ljava/lang/Object;"), 2)
+					.op(CHECKCAST).u2(pool.classRef(internalName(returnType))).op(ARETURN);
+
+		return unsupported(code, method);
+	}
+
+	private Code unsupported(Code code, Method method) {
+
+		// A checked exception the interface doesn't declare, which the JVM doesn't mind, it reaches the caller as it is
+		return code.op(NEW).u2(pool.classRef(UNIMPLEMENTED)).op(DUP)
+				.op(LDC_W).u2(pool.string("Not implemented in the chunk provider: " + method))
+				.op(INVOKESPECIAL).u2(pool.methodRef(UNIMPLEMENTED, "<init>", "(Ljava/lang/String;)V"))
+				.op(ATHROW);
+	}
+
+	private byte[] method(String name, String descriptor, int maxLocals, Code code) {
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+
+		try {
+			out.writeShort(ACC_PUBLIC);
+			out.writeShort(pool.utf8(name));
+			out.writeShort(pool.utf8(descriptor));
+
+			// Just the Code attribute
+			out.writeShort(1);
+			out.writeShort(pool.utf8("Code"));
+			out.writeInt(12 + code.size());
+
+			// Nothing needs more than the source, three arguments and an exception on the stack
+			out.writeShort(4);
+			out.writeShort(maxLocals);
+			out.writeInt(code.size());
+			code.writeTo(out);
+
+			// No exception table or attributes
+			out.writeShort(0);
+			out.writeShort(0);
+
+		} catch (IOException e) {
+			throw new IllegalStateException("Writing to memory failed", e);
+		}
+
+		return bos.toByteArray();
+	}
+
+	private static int slots(Method method) {
+
+		int slots = 1;
+		for (Class<?> type : method.getParameterTypes())
+			slots += type == long.class || type == double.class ? 2 : 1;
+
+		return slots;
+	}
+
+	private static String descriptor(Method method) {
+
+		StringBuilder sb = new StringBuilder("(");
+		for (Class<?> type : method.getParameterTypes())
+			sb.append(descriptor(type));
+
+		return sb.append(')').append(descriptor(method.getReturnType())).toString();
+	}
+
+	private static String descriptor(Class<?> type) {
+
+		if (type.isArray())
+			return internalName(type);
+
+		if (type == void.class)		return "V";
+		if (type == boolean.class)	return "Z";
+		if (type == byte.class)		return "B";
+		if (type == char.class)		return "C";
+		if (type == short.class)	return "S";
+		if (type == int.class)		return "I";
+		if (type == long.class)		return "J";
+		if (type == float.class)	return "F";
+		if (type == double.class)	return "D";
+
+		return "L" + internalName(type) + ";";
+	}
+
+	/**
+	 * The name as it goes in a class file, arrays are named by their descriptor.
+	 */
+	private static String internalName(Class<?> type) {
+		return type.getName().replace('.', '/');
+	}
+
+	/**
+	 * The bytecode of a method
+	 */
+	private static class Code {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		Code op(int op) {
+			bytes.write(op);
+			return this;
+		}
+
+		Code u2(int value) {
+			bytes.write(value >> 8);
+			bytes.write(value);
+			return this;
+		}
+
+		Code invokeInterface(int method, int argumentSlots) {
+			return op(INVOKEINTERFACE).u2(method).op(argumentSlots).op(0);
+		}
+
+		int size() {
+			return bytes.size();
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			bytes.writeTo(out);
+		}
+	}
+
+	/**
+	 * The constant pool, every entry is only added once
+	 */
+	private static class ConstantPool {
+
+		private static final int UTF8 = 1, CLASS = 7, STRING = 8, FIELDREF = 9, METHODREF = 10,
+				INTERFACEMETHODREF = 11, NAMEANDTYPE = 12;
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final HashMap<String, Integer> indices = new HashMap<>();
+		private int count = 1;
+
+		int utf8(String value) {
+			return add("utf8 " + value, UTF8, () -> out.writeUTF(value));
+		}
+
+		int classRef(String name) {
+			int nameIndex = utf8(name);
+			return add("class " + name, CLASS, () -> out.writeShort(nameIndex));
+		}
+
+		int string(String value) {
+			int valueIndex = utf8(value);
+			return add("string " + value, STRING, () -> out.writeShort(valueIndex));
+		}
+
+		int fieldRef(String owner, String name, String descriptor) {
+			return memberRef(FIELDREF, owner, name, descriptor);
+		}
+
+		int methodRef(String owner, String name, String descriptor) {
+			return memberRef(METHODREF, owner, name, descriptor);
+		}
+
+		int interfaceMethodRef(String owner, String name, String descriptor) {
+			return memberRef(INTERFACEMETHODREF, owner, name, descriptor);
+		}
+
+		private int memberRef(int tag, String owner, String name, String descriptor) {
+
+			int ownerIndex = classRef(owner);
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+
+			int nameAndType = add("nameandtype " + name + " " + descriptor, NAMEANDTYPE, () -> {
+				out.writeShort(nameIndex);
+				out.writeShort(descriptorIndex);
+			});
+
+			return add(tag + " " + owner + "." + name + descriptor, tag, () -> {
+				out.writeShort(ownerIndex);
+				out.writeShort(nameAndType);
+			});
+		}
+
+		private int add(String key, int tag, Entry entry) {
+
+			Integer index = indices.get(key);
+			if (index != null)
+				return index;
+
+			try {
+				out.writeByte(tag);
+				entry.write();
+			} catch (IOException e) {
+				throw new IllegalStateException("Writing to memory failed", e);
+			}
+
+			indices.put(key, count);
+			return count++;
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeShort(count);
+			bytes.writeTo(out);
+		}
+
+		private interface Entry {
+			void write() throws IOException;
+		}
+	}
+
+	/**
+	 * Sees Minecraft's classes through its parent, and ours through that one's parent.
+	 *
+	 * Not a hidden class from MethodHandles.Lookup: that needs Java 15 where this targets 8, and a hidden class resolves
+	 * through the loader of the class that defines it, which can't see Minecraft's own URLClassLoader.
+	 */
+	private static class GeneratedClassLoader extends ClassLoader {
+
+		GeneratedClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
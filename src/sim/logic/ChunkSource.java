@@ -0,0 +1,18 @@
+package sim.logic;
+
+/**
+ * What the generated chunk provider calls into. It lives in its own class loader, so this has to be public.
+ * @see ChunkProviderGenerator
+ */
+public interface ChunkSource {
+
+	Object getChunk(int x, int z);
+
+	Object getChunk(Object blockPos);
+
+	boolean chunkExists(int x, int z);
+
+	int getLoadedChunkCount();
+
+	String makeString();
+}
@@ -6,10 +6,10 @@ import sim.constants.Constants;
 import sim.loading.Linker;
 import sim.objects.WorldInstance;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
@@ -20,10 +20,14 @@ import java.util.Random;
 class RBlock {
 
     private Method m_getBlockById, m_getIdFromBlock, m_hasTileEntity, m_onBlockActivated,
-		m_getStateFromMeta, m_getMetaFromState, m_getBlock, m_getBlockFromName, m_getValue, m_getProperties,
-		m_getNameForObject, m_onBlockEventReceived, m_isOpaque ,m_isFullCube, m_updateTick, m_randomTick;
+		m_getStateFromMeta, m_getMetaFromState, m_getBlockFromName, m_getValue, m_getProperties,
+		m_getNameForObject, m_isOpaque ,m_isFullCube, m_updateTick, m_randomTick, m_getLightValue, m_getLightOpacity,
+		m_hasComparatorInputOverride;
 	private Field f_unlocalizedName, f_blockRegistry, f_blockMaterial;
 
+	// These are called for every block event and every block that's looked at
+	private MethodHandle h_getBlock, h_onBlockEventReceived;
+
 	private final RBlockPos rBlockPos;
 
 	// TODO fix this
@@ -31,12 +35,15 @@ class RBlock {
 
 	private Object blockRegistry;
 	
-	 // A buffer for all blocks that were once obtained
-	private final HashMap<Integer, Object> bufferedBlocks;
+	 // A buffer for all blocks that were once obtained, by id
+	private final Object[] bufferedBlocks;
+
+	// Set once the blocks are registered, until then everything is looked up reflectively
+	private BlockRegistry registry;
 	
 	public RBlock(Linker linker, RBlockPos rBlockPos) throws NoSuchMethodException, SecurityException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchFieldException {
 		
-		bufferedBlocks = new HashMap<>();
+		bufferedBlocks = new Object[256];
 		this.rBlockPos = rBlockPos;
 		
 		prepareBlock(linker);
@@ -68,9 +75,12 @@ class RBlock {
 		m_getValue                      = linker.method("getValue", IBlockState, IProperty);
 		m_hasTileEntity                 = linker.method("hasTileEntity", Block);
 		m_getProperties                 = linker.method("getProperties", IBlockState);
-		m_onBlockEventReceived          = linker.method("onBlockEventReceived", Block, World, BlockPos, IBlockState, int.class, int.class);
+		h_onBlockEventReceived          = linker.handle("onBlockEventReceived", Block, World, BlockPos, IBlockState, int.class, int.class);
         m_isOpaque                      = linker.method("isOpaque", Material);
         m_isFullCube                    = linker.method("isFullCube", Block);
+        m_getLightValue                 = linker.method("getLightValue", Block);
+        m_getLightOpacity               = linker.method("getLightOpacity", Block);
+        m_hasComparatorInputOverride    = linker.method("hasComparatorInputOverride", Block);
         m_updateTick                    = linker.method("updateTick", Block, World, BlockPos, IBlockState, Random.class);
         m_randomTick                    = linker.method("randomTick", Block, World, BlockPos, IBlockState, Random.class);
 		m_onBlockActivated              = linker.method("onBlockActivated", Block, linker.getClass("World"),
@@ -84,16 +94,23 @@ class RBlock {
         f_blockMaterial = linker.field("blockMaterial", Block);
 
 		// TODO can't use linker yet
-		m_getBlock = IBlockState.getDeclaredMethod(Constants.IBLOCKSTATE_GETBLOCK);
+		h_getBlock = Linker.handle(IBlockState.getDeclaredMethod(Constants.IBLOCKSTATE_GETBLOCK));
 
 		f_unlocalizedName = Block.getDeclaredField(Constants.BLOCK_UNLOCALIZEDNAME);
 		f_unlocalizedName.setAccessible(true);
 
 	}
 	
+	void setRegistry(BlockRegistry registry) {
+		this.registry = registry;
+	}
+
 	public Object getBlockFromName(String name) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-		// TODO buffer with name as well
+		Object block = registry == null ? null : registry.getBlock(name);
+
+		if (block != null)
+			return block;
 
         return m_getBlockFromName.invoke(null, name);
 	}
@@ -114,6 +131,11 @@ class RBlock {
 	 */
 	public String getInternalBlockName(Object block) throws InvocationTargetException, IllegalAccessException {
 
+		String name = registry == null ? null : registry.getName(block);
+
+		if (name != null)
+			return name;
+
         return m_getNameForObject.invoke(f_blockRegistry.get(block), block).toString();
 	}
 
@@ -121,19 +143,11 @@ class RBlock {
 		
 		int id = Block.compansateForJavasLackOfUnsignedBytes(byteId);
 		
-		Object block;
-		
-		if (bufferedBlocks.containsKey(id))
-			
-			block = bufferedBlocks.get(id);
+		Object block = bufferedBlocks[id];
 		
-		else {
-			
+		if (block == null) {
 			block = m_getBlockById.invoke(null, id);
-			bufferedBlocks.put(id, block);
-			
-			if (bufferedBlocks.size() > 256)
-				throw new IllegalStateException("Too many buffered blocks, how is this possible? xD");
+			bufferedBlocks[id] = block;
 		}
 		
 		return block;		
@@ -141,6 +155,15 @@ class RBlock {
 	
 	public Object getStateFromMeta(Object block, byte data) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
+		int id = registry == null ? -1 : registry.getId(block);
+
+		if (id >= 0) {
+			Object state = registry.getState(Block.getChar((byte) id, data));
+
+			if (state != null)
+				return state;
+		}
+
         return m_getStateFromMeta.invoke(block, (int) data);
 	}
 
@@ -160,37 +183,102 @@ class RBlock {
 	 */
 	public boolean hasTileEntity(Object block) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
+		int id = registry == null ? -1 : registry.getId(block);
+
+		if (id >= 0)
+			return registry.hasFlag(id, BlockRegistry.FLAG_TILEENTITY);
+
         return (boolean) m_hasTileEntity.invoke(block);
 	}
 	
 	public int getIdFromBlock(Object block) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
+		int id = registry == null ? -1 : registry.getId(block);
+
+		if (id >= 0)
+			return id;
+
         return (int) m_getIdFromBlock.invoke(null, block);
 	}
 	
 	public int getMetaFromState(Object block, Object blockState) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
+		int c = registry == null ? -1 : registry.getChar(blockState);
+
+		if (c >= 0)
+			return Block.getData((char) c);
+
         return (int) m_getMetaFromState.invoke(block, blockState);
 	}
 
 	public Object getBlockFromState(Object state) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-        return m_getBlock.invoke(state);
+		try {
+			return (Object) h_getBlock.invokeExact(state);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
 	}
 
 	public boolean onBlockEventReceived(Object block, Object world, Object blockPos, Object blockState, int eventId, int eventParameter) throws InvocationTargetException, IllegalAccessException {
 
-		return (boolean) m_onBlockEventReceived.invoke(block, world, blockPos, blockState, eventId,  eventParameter);
+		try {
+			return (boolean) h_onBlockEventReceived.invokeExact(block, world, blockPos, blockState, eventId, eventParameter);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
 	}
 
     public boolean isOpaque(Object block) throws InvocationTargetException, IllegalAccessException {
+
+		int id = registry == null ? -1 : registry.getId(block);
+
+		if (id >= 0)
+			return registry.hasFlag(id, BlockRegistry.FLAG_OPAQUE);
+
         return (boolean) m_isOpaque.invoke(f_blockMaterial.get(block));
     }
 
     public boolean isFullCube(Object block) throws InvocationTargetException, IllegalAccessException {
+
+		int id = registry == null ? -1 : registry.getId(block);
+
+		if (id >= 0)
+			return registry.hasFlag(id, BlockRegistry.FLAG_FULLCUBE);
+
         return (boolean) m_isFullCube.invoke(block);
     }
 
+	public boolean hasComparatorInputOverride(Object block) throws InvocationTargetException, IllegalAccessException {
+
+		int id = registry == null ? -1 : registry.getId(block);
+
+		if (id >= 0)
+			return registry.hasFlag(id, BlockRegistry.FLAG_COMPARATOR);
+
+		return (boolean) m_hasComparatorInputOverride.invoke(block);
+	}
+
+	public int getLightValue(Object block) throws InvocationTargetException, IllegalAccessException {
+
+		int id = registry == null ? -1 : registry.getId(block);
+
+		if (id >= 0)
+			return registry.getLightValue(id);
+
+		return (int) m_getLightValue.invoke(block);
+	}
+
+	public int getLightOpacity(Object block) throws InvocationTargetException, IllegalAccessException {
+
+		int id = registry == null ? -1 : registry.getId(block);
+
+		if (id >= 0)
+			return registry.getLightOpacity(id);
+
+		return (int) m_getLightOpacity.invoke(block);
+	}
+
 	public Object getPropertyFacing(Object blockState) throws InvocationTargetException, IllegalAccessException {
 
 		System.out.println("RBlock DEBUG");
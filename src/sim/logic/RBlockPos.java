@@ -3,49 +3,108 @@ package sim.logic;
 import logging.Log;
 import sim.loading.Linker;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 
 class RBlockPos {
 
-    private Field f_x, f_y, f_z;
-	private Constructor<?> c_MutableBlockPos;
+    private MethodHandle g_x, g_y, g_z, s_x, s_y, s_z;
+	private MethodHandle c_BlockPos, c_MutableBlockPos;
+	private Class<?> blockPosClass;
 
-	public RBlockPos(Linker linker) throws NoSuchMethodException, SecurityException, NoSuchFieldException {
+	// One position per thread that is moved around instead of making a new one for every look at a block
+	private final ThreadLocal<Object> sharedPos;
+
+	public RBlockPos(Linker linker) throws NoSuchMethodException, SecurityException, NoSuchFieldException, IllegalAccessException {
 		
 		prepareBlockPos(linker);
+
+		sharedPos = ThreadLocal.withInitial(() -> {
+			try {
+				return (Object) c_BlockPos.invokeExact(0, 0, 0);
+			} catch (Throwable t) {
+				throw new IllegalStateException("Could not create a BlockPos", t);
+			}
+		});
 		
 		Log.i("Preparing BlockPos");
 	}
 	
-	private void prepareBlockPos(Linker linker) throws NoSuchMethodException, SecurityException, NoSuchFieldException {
+	private void prepareBlockPos(Linker linker) throws NoSuchMethodException, SecurityException, NoSuchFieldException, IllegalAccessException {
 
         Class<?> vec3i = linker.getClass("Vec3i");
+        Class<?> blockPos = linker.getClass("BlockPos");
+        blockPosClass = blockPos;
         Class<?> mutableBlockPos = linker.getClass("BlockPos$MutableBlockPos");
 		
-		f_x = linker.field("x", vec3i);
-		f_y = linker.field("y", vec3i);
-		f_z = linker.field("z", vec3i);
-		
-		c_MutableBlockPos = mutableBlockPos.getDeclaredConstructor(int.class, int.class, int.class);
-		c_MutableBlockPos.setAccessible(true);
+		g_x = linker.getter("x", vec3i);
+		g_y = linker.getter("y", vec3i);
+		g_z = linker.getter("z", vec3i);
+
+		s_x = linker.setter("x", vec3i);
+		s_y = linker.setter("y", vec3i);
+		s_z = linker.setter("z", vec3i);
+
+		c_BlockPos = Linker.handle(blockPos.getDeclaredConstructor(int.class, int.class, int.class));
+		c_MutableBlockPos = Linker.handle(mutableBlockPos.getDeclaredConstructor(int.class, int.class, int.class));
 	}
 	
 	public Object createInstance(int x, int y, int z) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-		
-		return c_MutableBlockPos.newInstance(x, y, z);
+
+		try {
+			return (Object) c_MutableBlockPos.invokeExact(x, y, z);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
+	}
+
+	/**
+	 * A position that is reused by every call on this thread, so it must only be handed to things that don't hold on to
+	 * it, like reading a block. Anything that may schedule a tick or place a tile entity needs {@link #createInstance}.
+	 *
+	 * It's a plain BlockPos whose final coordinates are overwritten. MutableBlockPos has its own coordinates that Vec3i
+	 * doesn't know about, so that one can't be moved this way.
+	 */
+	public Object getShared(int x, int y, int z) throws InvocationTargetException {
+
+		Object pos = sharedPos.get();
+
+		try {
+			s_x.invokeExact(pos, x);
+			s_y.invokeExact(pos, y);
+			s_z.invokeExact(pos, z);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
+
+		return pos;
 	}
 	
-	public int getX(Object instance) throws IllegalAccessException, IllegalArgumentException {
-		return f_x.getInt(instance);
+	public Class<?> getBlockPosClass() {
+		return blockPosClass;
+	}
+
+	public int getX(Object instance) throws InvocationTargetException {
+		try {
+			return (int) g_x.invokeExact(instance);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
 	}
 	
-	public int getY(Object instance) throws IllegalAccessException, IllegalArgumentException {
-		return f_y.getInt(instance);
+	public int getY(Object instance) throws InvocationTargetException {
+		try {
+			return (int) g_y.invokeExact(instance);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
 	}
 	
-	public int getZ(Object instance) throws IllegalAccessException, IllegalArgumentException {
-		return f_z.getInt(instance);
+	public int getZ(Object instance) throws InvocationTargetException {
+		try {
+			return (int) g_z.invokeExact(instance);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
 	}
 }
@@ -9,16 +9,19 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
 
 /**
  * This class is an intermediate between the Simulator's high level logic and all of Chunk's reflection
  */
 class RChunk {
 
-    private Constructor<?> c_chunk, c_extendedBlockStorage;
+    private Constructor<?> c_chunk, c_extendedBlockStorage, c_entityList;
 	private Method m_genHeightMap, m_addTileEntity, m_onChunkLoad;
 	private RChunkPrimer rChunkPrimer;
-    private Field f_storageArrays, f_data;
+    private Field f_storageArrays, f_data, f_chunkTileEntityMap, f_entityLists;
+    private Class<?> Entity;
 	
 	public RChunk(Linker linker, RChunkPrimer rChunkPrimer) throws NoSuchMethodException, SecurityException, IllegalArgumentException, NoSuchFieldException {
 		
@@ -38,15 +41,20 @@ class RChunk {
 		Class<?> TileEntity = linker.getClass("TileEntity");
 		Class<?> ChunkPrimer = linker.getClass("ChunkPrimer");
         Class<?> ExtendedBlockStorage = linker.getClass("ExtendedBlockStorage");
+        Class<?> ClassInheritanceMultiMap = linker.getClass("ClassInheritanceMultiMap");
+        Entity = linker.getClass("Entity");
 		
 		c_chunk = Chunk.getDeclaredConstructor(World, ChunkPrimer, int.class, int.class);
         c_extendedBlockStorage = ExtendedBlockStorage.getDeclaredConstructor(int.class, boolean.class);
+        c_entityList = ClassInheritanceMultiMap.getDeclaredConstructor(Class.class);
 
 		m_genHeightMap = linker.method("generateSkylightMap", Chunk);
 		m_addTileEntity = linker.method("addTileEntity", Chunk, TileEntity);
 		m_onChunkLoad = linker.method("onChunkLoad", Chunk);
 
         f_storageArrays = linker.field("storageArrays", Chunk);
+        f_chunkTileEntityMap = linker.field("chunkTileEntityMap", Chunk);
+        f_entityLists = linker.field("entityLists", Chunk);
 
         f_data = ExtendedBlockStorage.getDeclaredField(Constants.EXTENDEDBLOCKSTORAGE_DATA);
         f_data.setAccessible(true);
@@ -84,6 +92,32 @@ class RChunk {
 		return chunk;
 	}
 
+    /**
+     * Empties a chunk so it can be reused, as if it was just made by {@link #generateEmptyChunk(Object, int, int)}.
+     * Sections are kept, their blocks are cleared.
+     */
+    public void reset(Object chunk) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        for (Object blockStorage : getStorageArray(chunk))
+            if (blockStorage != null)
+                Arrays.fill((char[]) f_data.get(blockStorage), (char) 0);
+
+        ((Map<?, ?>) f_chunkTileEntityMap.get(chunk)).clear();
+
+        Object[] entityLists = (Object[]) f_entityLists.get(chunk);
+        for (int i = 0; i < entityLists.length; i++)
+            entityLists[i] = c_entityList.newInstance(Entity);
+
+        m_genHeightMap.invoke(chunk);
+    }
+
+    /**
+     * Works out the height map and sky light of a chunk again, after its blocks were written straight into it.
+     */
+    public void generateSkylightMap(Object chunk) throws IllegalAccessException, InvocationTargetException {
+        m_genHeightMap.invoke(chunk);
+    }
+
     public Object[] getStorageArray(Object chunk) throws IllegalAccessException {
         return (Object[]) f_storageArrays.get(chunk);
     }
@@ -3,95 +3,131 @@ package sim.logic;
 import logging.Log;
 import sim.constants.Constants;
 import sim.exceptions.UnimplementedException;
-import sim.objects.ChunkCord;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is basically our input into the world. World will get blocks from here.
+ *
+ * Minecraft asks for a chunk on every block access, so chunks are kept in a dense grid by their chunk coordinates.
+ * Normally Minecraft calls in through a generated class, see {@link ChunkProviderGenerator}. When that can't be made,
+ * it goes through a Proxy instead, and what to do for each of its methods is only worked out the first time it's called.
  */
-class RChunkProvider implements InvocationHandler {
+class RChunkProvider implements InvocationHandler, ChunkSource {
 	
-	// Buffers all loaded chunks
-	private final HashMap<ChunkCord, Object> chunks;
+	// Buffers all loaded chunks as [x][z], the world starts at chunk 0, 0
+	private Object[][] chunks;
+	private int chunkCount;
 	public Object emptyChunk;
 
 	private final RBlockPos rBlockPos;
 
+	// What to do for each method of IChunkProvider
+	private final ConcurrentHashMap<Method, Handler> handlers;
+
 	public RChunkProvider(RBlockPos rBlockPos) {
 		
-		chunks = new HashMap<>();
+		chunks = new Object[0][0];
+		handlers = new ConcurrentHashMap<>();
 		this.rBlockPos = rBlockPos;
 	}
 
 	public void addChunk(Object chunk, int x, int z) throws IllegalArgumentException {
 
-        ChunkCord cord = new ChunkCord(x, z);
+		if (x < 0 || z < 0)
+			throw new IllegalArgumentException("Chunks start at 0, 0, got " + x + ", " + z);
 		
 		if (Constants.DEBUG_CHUNKPROVIDER)
-			System.out.println("Adding chunk " + cord);
+			System.out.println("Adding chunk (" + x + ", " + z + ")");
+
+		if (x >= chunks.length || z >= (chunks.length == 0 ? 0 : chunks[0].length))
+			grow(x + 1, z + 1);
+
+		if (chunks[x][z] == null)
+			chunkCount++;
 		
-		chunks.put(cord, chunk);
+		chunks[x][z] = chunk;
 	}
 	
 	public void clear() {
 		
 		if (Constants.DEBUG_CHUNKPROVIDER)
 			System.out.println("Clearing");
-		
-		chunks.clear();
-	}
-	
-	boolean chunkExists(int x, int z) {
 
-		ChunkCord cord = new ChunkCord(x, z);
-		
-		return chunkExists(cord);
+		for (Object[] column : chunks)
+			Arrays.fill(column, null);
+
+		chunkCount = 0;
 	}
 	
-	boolean chunkExists(ChunkCord cord) {
+	@Override
+	public boolean chunkExists(int x, int z) {
 		
-		boolean exists = chunks.containsKey(cord);
+		boolean exists = getLoadedChunk(x, z) != null;
 		
 		if (Constants.DEBUG_CHUNKPROVIDER)
-			System.out.println(cord + " exists: " + exists);
+			System.out.println("(" + x + ", " + z + ") exists: " + exists);
 		
 		return exists;
 	}
 
+	@Override
 	public Object getChunk(int x, int z) {
-
-		// TODO wtf was I thinking, use a long key for the hashmap!!
-		ChunkCord cord = new ChunkCord(x, z);
 		
 		if (Constants.DEBUG_CHUNKPROVIDER)
-			System.out.println("Getting chunk " + cord);
+			System.out.println("Getting chunk (" + x + ", " + z + ")");
+
+		Object chunk = getLoadedChunk(x, z);
 		
-		if (!chunkExists(cord)) {
-			return emptyChunk;
-		}
+		return chunk == null ? emptyChunk : chunk;
+	}
+
+	private Object getLoadedChunk(int x, int z) {
+
+		// A copy, the grid could be swapped out while growing
+		Object[][] chunks = this.chunks;
+
+		if (x < 0 || z < 0 || x >= chunks.length || z >= chunks[x].length)
+			return null;
+
+		return chunks[x][z];
+	}
+
+	private void grow(int xSize, int zSize) {
+
+		xSize = Math.max(xSize, chunks.length);
+		zSize = Math.max(zSize, chunks.length == 0 ? 0 : chunks[0].length);
+
+		Object[][] grown = new Object[xSize][];
 
-        return chunks.get(cord);
+		for (int x = 0; x < xSize; x++)
+			grown[x] = x < chunks.length ? Arrays.copyOf(chunks[x], zSize) : new Object[zSize];
+
+		chunks = grown;
 	}
 
-	Object getChunk(Object blockPos) {
+	@Override
+	public Object getChunk(Object blockPos) {
 
 		try {
-			int x = rBlockPos.getX(blockPos) << 4;
-			int z = rBlockPos.getZ(blockPos) << 4;
+			int x = rBlockPos.getX(blockPos) >> 4;
+			int z = rBlockPos.getZ(blockPos) >> 4;
 
 			return getChunk(x, z);
 
-		} catch (IllegalAccessException e) {
+		} catch (InvocationTargetException e) {
 
 			Log.e("Failed to provide chunk for " + blockPos);
 			return null;
 		}
 	}
 
-	String makeString() {
+	@Override
+	public String makeString() {
 		
 		if (Constants.DEBUG_CHUNKPROVIDER)
 			System.out.println("Getting chunk provider string");
@@ -99,9 +135,10 @@ class RChunkProvider implements InvocationHandler {
 		return Constants.CHUNKPROVIDERSTRING;
 	}
 
-	int getLoadedChunkCount() {
+	@Override
+	public int getLoadedChunkCount() {
 		
-		int count = chunks.size();
+		int count = chunkCount;
 		
 		if (Constants.DEBUG_CHUNKPROVIDER)
 			System.out.println("Getting size: " + count);
@@ -114,17 +151,29 @@ class RChunkProvider implements InvocationHandler {
 		this.emptyChunk = emptyChunk;
 	}
 
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		
+		if (Constants.DEBUG_CHUNKPROVIDER)
+			System.out.println("Invoked: " + method.toString());
+
+		Handler handler = handlers.get(method);
+
+		if (handler == null) {
+			handler = resolve(method);
+			handlers.put(method, handler);
+		}
+
+		return handler.handle(args);
+	}
+
 	/**
 	 * There is no way to tell the called Method by its single letter name due to perforations of other methods.
 	 * So we're comparing return types and parameters, this however is bound to break, so
 	 * TODO Extract class names together with method names and then properly reverse translate
 	 * (there's commented code for that in Constants) 
 	 */
-	@Override
-	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-		
-		if (Constants.DEBUG_CHUNKPROVIDER)
-			System.out.println("Invoked: " + method.toString());
+	private Handler resolve(Method method) {
 		
 		Class<?>[] paramTypes = method.getParameterTypes();
 		int paramSize = paramTypes.length;
@@ -135,32 +184,35 @@ class RChunkProvider implements InvocationHandler {
 			// void recreateStructures(Chunk p_180514_1_, int p_180514_2_, int p_180514_3_)
 			// void populate(IChunkProvider var1, int var2, int var3);
 			// void saveExtraData();
+			return args -> null;
 			
 		} else if (returnType == boolean.class) {
 			
 			// boolean chunkExists(int var1, int var2);
 			if (paramSize == 2)
 				if (paramTypes[0] == int.class && paramTypes[1] == int.class)
-					return chunkExists((int) args[0], (int) args[1]);
+					return args -> chunkExists((int) args[0], (int) args[1]);
 			
 			// boolean func_177460_a(IChunkProvider p_177460_1_, Chunk p_177460_2_, int p_177460_3_, int p_177460_4_)
 			// boolean saveChunks(boolean var1, IProgressUpdate var2);
 				else
-					throw new UnimplementedException("boolean saveChunks(boolean var1, IProgressUpdate var2)");
+					return args -> {
+						throw new UnimplementedException("boolean saveChunks(boolean var1, IProgressUpdate var2)");
+					};
 			
 			// boolean unloadQueuedChunks();		There is no way to distingish this from canSave, should throw NotImpExcptn instead
 			// boolean canSave();
-			return false;
+			return args -> false;
 			
 		} else if (returnType == int.class) {
 			
 			// int getLoadedChunkCount();
-			return getLoadedChunkCount();
+			return args -> getLoadedChunkCount();
 			
 		} else if (returnType == String.class) {
 			
 			// String makeString();
-			return makeString();
+			return args -> makeString();
 			
 		} else {
 			
@@ -168,16 +220,23 @@ class RChunkProvider implements InvocationHandler {
 			// Chunk loadChunk(int var1, int var2);
 			if (paramSize == 2)
 				if (paramTypes[0] == int.class && paramTypes[1] == int.class)
-					return getChunk((int) args[0], (int) args[1]);
+					return args -> getChunk((int) args[0], (int) args[1]);
 
 			if (paramSize == 1)
-				return getChunk(args[0]);
+				return args -> getChunk(args[0]);
 			
 			// BlockPos func_180513_a(World worldIn, String p_180513_2_, BlockPos p_180513_3_)
-			throw new UnimplementedException("METHBOD: " + method + "\nList getPossibleCreatures(EnumCreatureType var1, int var2, int var3, int var4)\n" +
-					"ChunkPosition func_147416_a(World var1, String var2, int var3, int var4, int var5)");
+			return args -> {
+				throw new UnimplementedException("METHBOD: " + method + "\nList getPossibleCreatures(EnumCreatureType var1, int var2, int var3, int var4)\n" +
+						"ChunkPosition func_147416_a(World var1, String var2, int var3, int var4, int var5)");
+			};
 		}
+	}
 
-		throw new IllegalStateException("Should have thrown a NotImplementedException, but that obviously didn't happen... :/");
+	/**
+	 * What a call to one of the proxy's methods does
+	 */
+	private interface Handler {
+		Object handle(Object[] args) throws Throwable;
 	}
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package sim.logic;
 import logging.Log;
 import sim.loading.Linker;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -10,8 +11,12 @@ import java.util.UUID;
 
 class REntity {
 
-    private Method m_writeToNBT, m_createEntityFromNBT, m_getEntityString, m_onUpdate;
-	private Field f_posX, f_posY, f_posZ, f_motionX, f_motionY, f_motionZ, f_width, f_height, f_isDead, f_entityUniqueID;
+    private Method m_writeToNBT, m_createEntityFromNBT, m_getEntityString;
+	private Field f_width, f_height, f_isDead, f_entityUniqueID;
+
+	// Every entity goes through these every tick
+	private MethodHandle h_onUpdate;
+	private MethodHandle g_posX, g_posY, g_posZ, g_motionX, g_motionY, g_motionZ, g_isDead;
 
 	private RNBTTags rNBTTags;
 	
@@ -24,19 +29,20 @@ class REntity {
 		Log.i("Preparing entities");		
 	}
 	
-	private void prepareEntity(Linker linker) throws NoSuchMethodException, SecurityException, NoSuchFieldException {
+	private void prepareEntity(Linker linker) throws NoSuchMethodException, SecurityException, NoSuchFieldException, IllegalAccessException {
 
         Class<?> entity = linker.getClass("Entity");
         Class<?> entityList = linker.getClass("EntityList");
 		Class<?> NBTTagCompound = linker.getClass("NBTTagCompound");
 		Class<?> World          = linker.getClass("World");
 
-		f_posX		        = linker.field("posX", entity);
-		f_posY		        = linker.field("posY", entity);
-		f_posZ		        = linker.field("posZ", entity);
-		f_motionX	        = linker.field("motionX", entity);
-		f_motionY	        = linker.field("motionY", entity);
-		f_motionZ	        = linker.field("motionZ", entity);
+		g_posX		        = linker.getter("posX", entity);
+		g_posY		        = linker.getter("posY", entity);
+		g_posZ		        = linker.getter("posZ", entity);
+		g_motionX	        = linker.getter("motionX", entity);
+		g_motionY	        = linker.getter("motionY", entity);
+		g_motionZ	        = linker.getter("motionZ", entity);
+		g_isDead	        = linker.getter("isDead", entity);
 		f_width		        = linker.field("width", entity);
 		f_height	        = linker.field("height", entity);
 		f_isDead	        = linker.field("isDead", entity);
@@ -45,7 +51,7 @@ class REntity {
 		m_writeToNBT            = linker.method("writeToNBT", entity, NBTTagCompound);
 		m_createEntityFromNBT   = linker.method("createEntityFromNBT", entityList, NBTTagCompound, World);
 		m_getEntityString       = linker.method("getEntityString", entity);
-		m_onUpdate              = linker.method("onUpdate", entity);
+		h_onUpdate              = linker.handle("onUpdate", entity);
 	}
 	
 	public Object createEntityFromNBT(Object nbtTagCompound, Object world) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
@@ -64,31 +70,35 @@ class REntity {
 
 	public void update(Object entity) throws InvocationTargetException, IllegalAccessException {
 
-		m_onUpdate.invoke(entity);
+		try {
+			h_onUpdate.invokeExact(entity);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
 	}
 
-	public double getX(Object entity) throws IllegalAccessException {
-		return f_posX.getDouble(entity);
+	public double getX(Object entity) throws InvocationTargetException {
+		return getDouble(g_posX, entity);
 	}
 
-	public double getY(Object entity) throws IllegalAccessException {
-		return f_posY.getDouble(entity);
+	public double getY(Object entity) throws InvocationTargetException {
+		return getDouble(g_posY, entity);
 	}
 
-	public double getZ(Object entity) throws IllegalAccessException {
-		return f_posZ.getDouble(entity);
+	public double getZ(Object entity) throws InvocationTargetException {
+		return getDouble(g_posZ, entity);
 	}
 
-	public double getMotionX(Object entity) throws IllegalAccessException {
-		return f_motionX.getDouble(entity);
+	public double getMotionX(Object entity) throws InvocationTargetException {
+		return getDouble(g_motionX, entity);
 	}
 
-	public double getMotionY(Object entity) throws IllegalAccessException {
-		return f_motionY.getDouble(entity);
+	public double getMotionY(Object entity) throws InvocationTargetException {
+		return getDouble(g_motionY, entity);
 	}
 
-	public double getMotionZ(Object entity) throws IllegalAccessException {
-		return f_motionZ.getDouble(entity);
+	public double getMotionZ(Object entity) throws InvocationTargetException {
+		return getDouble(g_motionZ, entity);
 	}
 
 	public float getWidth(Object entity) throws IllegalAccessException {
@@ -103,11 +113,27 @@ class REntity {
 		return (String) m_getEntityString.invoke(entity);
 	}
 
-	public boolean isDead(Object entity) throws IllegalAccessException {
-		return f_isDead.getBoolean(entity);
+	public boolean isDead(Object entity) throws InvocationTargetException {
+		try {
+			return (boolean) g_isDead.invokeExact(entity);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
+	}
+
+	public void setDead(Object entity) throws IllegalAccessException {
+		f_isDead.setBoolean(entity, true);
 	}
 
     public UUID getUUID(Object entity) throws IllegalAccessException {
         return (UUID) f_entityUniqueID.get(entity);
     }
+
+	private static double getDouble(MethodHandle getter, Object entity) throws InvocationTargetException {
+		try {
+			return (double) getter.invokeExact(entity);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
+	}
 }
@@ -4,24 +4,31 @@ import logging.Log;
 import sim.constants.Constants;
 import sim.loading.Linker;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 
 class RNextTickListEntry {
 
-    private Field f_blockPos, f_scheduledTime, f_priority, f_block;
+    private Field f_blockPos, f_scheduledTime, f_priority, f_block, f_tickEntryID;
+    private MethodHandle c_nextTickListEntry;
 	
-	public RNextTickListEntry(Linker linker) throws NoSuchFieldException, SecurityException {
+	public RNextTickListEntry(Linker linker) throws NoSuchFieldException, SecurityException, NoSuchMethodException, IllegalAccessException {
 		
 		prepareNextTickListEntry(linker);
 		
 		Log.i("Preparing Ticks");
 	}
 	
-	void prepareNextTickListEntry(Linker linker) throws NoSuchFieldException, SecurityException {
+	void prepareNextTickListEntry(Linker linker) throws NoSuchFieldException, SecurityException, NoSuchMethodException, IllegalAccessException {
 
         Class<?> nextTickListEntry = linker.getClass("NextTickListEntry");
 		
 		f_scheduledTime = linker.field("scheduledTime", nextTickListEntry);
+		f_tickEntryID = linker.field("tickEntryID", nextTickListEntry);
+
+		c_nextTickListEntry = Linker.handle(nextTickListEntry.getDeclaredConstructor(linker.getClass("BlockPos"),
+				linker.getClass("Block")));
 		
 		f_block = nextTickListEntry.getDeclaredField(Constants.NEXTTICKLISTENTRY_BLOCK);
 		f_block.setAccessible(true);
@@ -30,6 +37,28 @@ class RNextTickListEntry {
 		f_blockPos.setAccessible(true);
 		
 		f_priority = nextTickListEntry.getDeclaredField(Constants.NEXTTICKLISTENTRY_PRIORITY);
+		f_priority.setAccessible(true);
+	}
+
+	/**
+	 * Makes an entry like the one that was once scheduled, id and all. Entries that are due at the same time and with
+	 * the same priority run in the order of their ids, so a new id would put it behind the others.
+	 */
+	public Object createInstance(Object blockPos, Object block, long scheduledTime, int priority, long tickEntryID) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+
+		Object entry;
+
+		try {
+			entry = (Object) c_nextTickListEntry.invokeExact(blockPos, block);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
+
+		f_scheduledTime.setLong(entry, scheduledTime);
+		f_priority.setInt(entry, priority);
+		f_tickEntryID.setLong(entry, tickEntryID);
+
+		return entry;
 	}
 	
 	public Object getBlockPos(Object instance) throws IllegalArgumentException, IllegalAccessException {
@@ -47,4 +76,8 @@ class RNextTickListEntry {
 	public Object getBlock(Object instance) throws IllegalArgumentException, IllegalAccessException {
 		return f_block.get(instance);
 	}
+
+	public long getTickEntryID(Object instance) throws IllegalArgumentException, IllegalAccessException {
+		return f_tickEntryID.getLong(instance);
+	}
 }
@@ -9,12 +9,14 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 
 class RProfiler {
 
     private Object profiler;
-	private Field f_profilingMap;
+	private Class<?> Profiler;
+	private Field f_profilingMap, f_profilingEnabled;
 	private Method m_startSection, m_stopSection;
 
 	private static RProfiler instance;
@@ -30,15 +32,40 @@ class RProfiler {
 	
 	private void prepareProfiler(Linker linker) throws NoSuchFieldException, SecurityException, InstantiationException, IllegalAccessException, NoSuchMethodException {
 
-        Class<?> profiler1 = linker.getClass("Profiler");
-		profiler = profiler1.newInstance();
-		f_profilingMap = linker.field("profilingMap", profiler1);
+        Profiler = linker.getClass("Profiler");
+		f_profilingMap = linker.field("profilingMap", Profiler);
+		f_profilingEnabled = linker.field("profilingEnabled", Profiler);
+
+		profiler = createInstance();
 		
-		Field f_profilingEnabled = linker.field("profilingEnabled", profiler1);
+		m_startSection = linker.method("startSection", Profiler, String.class);
+		m_stopSection = linker.method("endSection", Profiler);
+	}
+
+	/**
+	 * A profiler of its own for a world, it isn't thread safe and every world ticks on its own thread.
+	 */
+	public Object createInstance() throws InstantiationException, IllegalAccessException {
+
+		Object profiler = Profiler.newInstance();
 		f_profilingEnabled.setBoolean(profiler, true);
-		
-		m_startSection = linker.method("startSection", profiler1, String.class);
-		m_stopSection = linker.method("endSection", profiler1);
+
+		return profiler;
+	}
+
+	/**
+	 * What every section took since the last time this was called, in ns. The profiler starts counting from 0 again.
+	 * Only to be called between ticks, when no section is open.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Long> drain(Object profiler) throws IllegalAccessException {
+
+		Map<String, Long> profilingMap = (Map<String, Long>) f_profilingMap.get(profiler);
+
+		HashMap<String, Long> sections = new HashMap<>(profilingMap);
+		profilingMap.clear();
+
+		return sections;
 	}
 	
 	public void testProfiler(String msg) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
@@ -4,12 +4,14 @@ import logging.Log;
 import sim.constants.Constants;
 import sim.loading.Linker;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 class RTileEntity {
 
     private Method m_createAndLoadEntity, m_writeToNBT;
+	private Field f_tileEntityInvalid;
 
 
 	public RTileEntity(Linker linker) throws NoSuchMethodException, SecurityException, InstantiationException, IllegalAccessException, NoSuchFieldException {
@@ -19,13 +21,15 @@ class RTileEntity {
 		Log.i("Preparing tile entities");
 	}
 
-	private void prepareTileEntity(Linker linker) throws NoSuchMethodException, SecurityException {
+	private void prepareTileEntity(Linker linker) throws NoSuchMethodException, SecurityException, NoSuchFieldException {
 
         Class<?> tileEntity = linker.getClass("TileEntity");
 		Class<?> NBTTagCompound = linker.getClass("NBTTagCompound");
 
 		m_createAndLoadEntity = linker.method("createAndLoadEntity", tileEntity, NBTTagCompound);
 		m_writeToNBT = tileEntity.getMethod(Constants.TILEENTITY_READFROMNBT, NBTTagCompound);
+
+		f_tileEntityInvalid = linker.field("tileEntityInvalid", tileEntity);
 	}
 
 	public Object createTileEntityFromNBT(Object nbtTagCompound) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
@@ -38,4 +42,11 @@ class RTileEntity {
 		m_writeToNBT.invoke(tileEntity, mcTag);
 
 	}
+
+	/**
+	 * Makes the chunk let go of a tile entity the next time it's asked for it
+	 */
+	public void invalidate(Object tileEntity) throws IllegalAccessException {
+		f_tileEntityInvalid.setBoolean(tileEntity, true);
+	}
 }
\ No newline at end of file
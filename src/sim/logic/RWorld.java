@@ -6,8 +6,10 @@ import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
 import sim.constants.Constants;
 import sim.loading.Linker;
+import sim.objects.TickMetrics;
 import sim.objects.WorldInstance;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.*;
 import java.util.*;
 
@@ -16,12 +18,14 @@ import java.util.*;
  */
 class RWorld {
 	
-	private Class<?> WorldServer, IChunkProvider, GameType, IntHashMap, ServerBlockEventList;
+	private Class<?> WorldServer, IChunkProvider, GameType, IntHashMap, ServerBlockEventList, IWorldAccess;
 
-	private Method m_tickUpdates, m_setWorldTime, m_getWorldTime, m_getProviderForDimension,
-			m_spawnEntityInWorld, m_addTickEntry, m_getBlockState, m_setBlockState,
-			m_incrementTotalWorldTime, m_getTileEntity, m_update, m_getEventID,
-			m_getEventParameter, m_getEventPos;
+	private Method m_setWorldTime, m_getWorldTime, m_getProviderForDimension,
+			m_spawnEntityInWorld, m_addTickEntry, m_incrementTotalWorldTime, m_getTileEntity;
+
+	// The ones that are called every tick, or for every block, tile entity or block event in it
+	private MethodHandle h_tickUpdates, h_getBlockState, h_setBlockState, h_update, h_getEventID, h_getEventParameter,
+			h_getEventPos, h_notifyBlockOfStateChange, h_checkLight;
 
 	private Field f_provider, f_levelSaving, f_theProfiler, f_pendingTickListEntriesTreeSet, f_chunkProvider,
 			f_isRemote, f_worldAccesses, f_loadedEntityList, f_unloadedEntityList, f_playerEntities, f_weatherEffects,
@@ -29,6 +33,9 @@ class RWorld {
 			f_worldInfo, f_worldBorder, f_lightUpdateBlockList, f_tickableTileEntities, f_loadedTileEntityList,
 			f_addedTileEntityList, f_tileEntitiesToBeRemoved, f_serverBlockEvents, f_blockEventCacheIndex;
 
+	// The generated IChunkProvider, null if it couldn't be made and a Proxy is used instead
+	private Constructor<?> c_chunkProvider;
+
 	private Constructor<?> c_worldType, c_worldSettings, c_worldInfo, c_entityOtherPlayerMP, c_worldBorder,
 			c_serverBlockEvents, c_gameProfile;
 
@@ -52,7 +59,7 @@ class RWorld {
 	/**
 	 * Loads up all nessecary things for world to run properly, including the chunkprovider, which we're interfacing
 	 */
-    void prepareWorld(Linker linker) throws NoSuchMethodException, SecurityException, IllegalArgumentException, NoSuchFieldException {
+    void prepareWorld(Linker linker) throws NoSuchMethodException, SecurityException, IllegalArgumentException, NoSuchFieldException, IllegalAccessException {
 		
 		WorldServer							= linker.getClass("WorldServer");
         Class<?> World                      = WorldServer.getSuperclass();
@@ -62,6 +69,7 @@ class RWorld {
         Class<?> WorldInfo                  = linker.getClass("WorldInfo");
         Class<?> WorldBorder                = linker.getClass("WorldBorder");
 		IChunkProvider						= linker.getClass("IChunkProvider");
+		IWorldAccess						= linker.getClass("IWorldAccess");
 		IntHashMap							= linker.getClass("IntHashMap");
         Class<?> BlockPos                   = linker.getClass("BlockPos");
 		ServerBlockEventList				= linker.getClass("WorldServer$ServerBlockEventList");
@@ -122,7 +130,7 @@ class RWorld {
         c_entityOtherPlayerMP				= EntityOtherPlayerMP.getDeclaredConstructor(World, GameProfile);
 
 		m_getProviderForDimension			= linker.method("getProviderForDimension", WorldProvider, int.class);
-        m_tickUpdates						= linker.method("tickUpdates", WorldServer, boolean.class);
+        h_tickUpdates						= linker.handle("tickUpdates", WorldServer, boolean.class);
 		
 		m_setWorldTime 						= linker.method("setWorldTime", World, long.class );
 		m_incrementTotalWorldTime			= linker.method("incrementTotalWorldTime", WorldInfo, long.class);
@@ -130,22 +138,31 @@ class RWorld {
 		m_getWorldTime						= linker.method("getTotalWorldTime", World);
 		m_spawnEntityInWorld				= linker.method("spawnEntityInWorld", World, linker.getClass("Entity"));
 		m_getTileEntity						= linker.method("getTileEntity", World, BlockPos);
-		m_update							= linker.method("update", IUpdatePlayerListBox);
+		h_update							= linker.handle("update", IUpdatePlayerListBox);
 
-		m_getEventID						= linker.method("getEventID", BlockEventData);
-		m_getEventParameter					= linker.method("getEventParameter", BlockEventData);
+		h_getEventID						= linker.handle("getEventID", BlockEventData);
+		h_getEventParameter					= linker.handle("getEventParameter", BlockEventData);
         m_addTickEntry                      = linker.method("updateBlockTick", World, BlockPos, Block, int.class, int.class);
+		h_notifyBlockOfStateChange			= linker.handle("notifyBlockOfStateChange", World, BlockPos, Block);
+		h_checkLight						= linker.handle("checkLight", World, BlockPos);
 
         // TODO can't use linker yet for these
-		m_getBlockState						= World.getDeclaredMethod(Constants.WORLD_GETBLOCKSTATE, BlockPos);
-		m_setBlockState						= World.getDeclaredMethod(Constants.WORLD_SETBLOCKSTATE, BlockPos, IBlockState, int.class);
-		m_getEventPos						= BlockEventData.getDeclaredMethod(Constants.BLOCKEVENTDATA_GETBLOCKPOS);
+		h_getBlockState						= Linker.handle(World.getDeclaredMethod(Constants.WORLD_GETBLOCKSTATE, BlockPos));
+		h_setBlockState						= Linker.handle(World.getDeclaredMethod(Constants.WORLD_SETBLOCKSTATE, BlockPos, IBlockState, int.class));
+		h_getEventPos						= Linker.handle(BlockEventData.getDeclaredMethod(Constants.BLOCKEVENTDATA_GETBLOCKPOS));
 
 		f_theProfiler						= World.getField(Constants.WORLD_THEPROFILER);
 		f_theProfiler						.setAccessible(true);
 
 		f_serverBlockEvents					= WorldServer.getDeclaredField(Constants.WORLDSERVER_SERVERBLOCKEVENTLIST);
 		f_serverBlockEvents					.setAccessible(true);
+
+		try {
+			c_chunkProvider					= ChunkProviderGenerator.generate(IChunkProvider);
+
+		} catch (NoSuchMethodException | LinkageError e) {
+			Log.w("Could not generate a chunk provider, using a proxy instead: " + e);
+		}
 	}
 
 	/**
@@ -159,13 +176,14 @@ class RWorld {
 	 * @param _hardcoreEnabled true/false.
 	 * @param rChunk we need this to generate an empty chunk.
 	 * @param rChunkProvider so we can set its emty chunk with a reference to this world.
-	 * @param rProfiler for referencing MC's own profiler for a goldmine of information.
+	 * @param profiler MC's own profiler for a goldmine of information, one per world.
+	 * @param rWorldAccess gets told which blocks change.
 	 * @return A WorldInstance object with all things loaded in it.
 	 */
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public WorldInstance createInstance(int _worldTypeId, String _worldType, String _gameType, long _seed, int _worldProvider,
                                         boolean _mapFeaturesEnabled, boolean _hardcoreEnabled, RChunk rChunk, RChunkProvider rChunkProvider,
-                                        RProfiler rProfiler)
+                                        Object profiler, RWorldAccess rWorldAccess)
 			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
 
 		Objenesis objenesis = new ObjenesisStd(false); // <3 I LOVE YOU OBJENESIS <3
@@ -176,7 +194,7 @@ class RWorld {
 		
 		f_levelSaving.setBoolean(worldServer, true);
 		
-		f_theProfiler.set(worldServer, rProfiler.getInstance());
+		f_theProfiler.set(worldServer, profiler);
 		
 		TreeSet<Object> pendingTickListEntriesTreeSet = new TreeSet<>();
 		HashSet<Object> pendingTickListEntriesHashSet = new HashSet<>();
@@ -195,8 +213,8 @@ class RWorld {
 
 		f_worldBorder.set(worldServer, c_worldBorder.newInstance());
 
-		Object chunkProvider = Proxy.newProxyInstance(IChunkProvider.getClassLoader(),
-				new Class[]{IChunkProvider}, rChunkProvider);		
+		Object chunkProvider = c_chunkProvider != null ? c_chunkProvider.newInstance(rChunkProvider) :
+				Proxy.newProxyInstance(IChunkProvider.getClassLoader(), new Class[]{IChunkProvider}, rChunkProvider);
 		
 		f_chunkProvider.set(worldServer, chunkProvider);
 		
@@ -214,7 +232,10 @@ class RWorld {
 		Object entitiesById = IntHashMap.newInstance();
 		HashMap entitiesByUuid = new HashMap();
 		
-		f_worldAccesses.set(worldServer, new ArrayList<>()); // No one's listening, go home worldAccesses
+		// Only we are listening, for which blocks changed
+		ArrayList<Object> worldAccesses = new ArrayList<>();
+		worldAccesses.add(Proxy.newProxyInstance(IWorldAccess.getClassLoader(), new Class[]{IWorldAccess}, rWorldAccess));
+		f_worldAccesses.set(worldServer, worldAccesses);
 		f_loadedEntityList.set(worldServer, loadedEntities);
 		f_entitiesById.set(worldServer, entitiesById);
 		f_entitiesByUuid.set(worldServer, entitiesByUuid);
@@ -253,8 +274,9 @@ class RWorld {
 	
 	/**
 	 * This invokes the relevant function once
+	 * @param metrics Gets how long each phase took.
 	 */
-	public boolean tick(WorldInstance world, long advanceTicks) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+	public boolean tick(WorldInstance world, long advanceTicks, TickMetrics metrics) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
 
 		if (Constants.DEBUG_WORLD)
 			System.out.println("Ticking " + world.getPendingTickListEntries().size() + " pending updates...");
@@ -262,18 +284,48 @@ class RWorld {
 		advanceTicks(world, advanceTicks);
 
 		// The order of these is cast in stone
+		long time = System.nanoTime();
         boolean moreUpdatesExist = tickUpdates(world);
+		time = metrics.lap(TickMetrics.Phase.TICK_UPDATES, time);
         tickBlockEvents(world);
+		time = metrics.lap(TickMetrics.Phase.BLOCK_EVENTS, time);
         tickEntities(world);
+		time = metrics.lap(TickMetrics.Phase.ENTITIES, time);
         tickTileEntities(world);
+		metrics.lap(TickMetrics.Phase.TILE_ENTITIES, time);
 
 		world.setDoTimeUpdate(true);
 
 		return moreUpdatesExist;
 	}
 
+	/**
+	 * Whether a tick would only look at the tile ticks: no block events, no entities and nothing tickable among the
+	 * tile entities. Whether any tile ticks are due is up to the caller.
+	 */
+	public boolean isIdle(WorldInstance world) throws IllegalAccessException {
+
+		if (!world.getLoadedEntities().isEmpty() || !world.getTickableTileEntities().isEmpty())
+			return false;
+
+		if (!((List<?>) f_pendingTickListEntriesThisTick.get(world.getWorld())).isEmpty())
+			return false;
+
+		Object blockEvents = f_serverBlockEvents.get(world.getWorld());
+
+		for (int i = 0; i < Array.getLength(blockEvents); i++)
+			if (!((List<?>) Array.get(blockEvents, i)).isEmpty())
+				return false;
+
+		return true;
+	}
+
     boolean tickUpdates(WorldInstance world) throws InvocationTargetException, IllegalAccessException {
-        return (boolean) m_tickUpdates.invoke(world.getWorld(), false);
+        try {
+            return (boolean) h_tickUpdates.invokeExact(world.getWorld(), false);
+        } catch (Throwable t) {
+            throw Linker.wrap(t);
+        }
     }
 
 	void tickTileEntities(WorldInstance world) throws InvocationTargetException, IllegalAccessException {
@@ -281,7 +333,13 @@ class RWorld {
 		// TODO I would prefer using an iterator, but it throws a ConcurrentModificationException
 		Object[] tileEntities = world.getTickableTileEntities().toArray();
 
-        for (Object tileEntity : tileEntities) m_update.invoke(tileEntity);
+        try {
+            for (Object tileEntity : tileEntities)
+                h_update.invokeExact(tileEntity);
+
+        } catch (Throwable t) {
+            throw Linker.wrap(t);
+        }
 	}
 
 	void tickEntities(WorldInstance world) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
@@ -325,19 +383,22 @@ class RWorld {
 
             for (Object blockEventData : blockEventDataObjects) {
 
-                int eventId = (int) m_getEventID.invoke(blockEventData);
-                int eventParameter = (int) m_getEventParameter.invoke(blockEventData);
-                Object blockPos = m_getEventPos.invoke(blockEventData);
+                int eventId, eventParameter;
+                Object blockPos;
 
-                Object blockState = getBlockState(world, rBlockPos.getX(blockPos), rBlockPos.getY(blockPos), rBlockPos.getZ(blockPos));
-                Object block = rBlock.getBlockFromState(blockState);
+                try {
+                    eventId = (int) h_getEventID.invokeExact(blockEventData);
+                    eventParameter = (int) h_getEventParameter.invokeExact(blockEventData);
+                    blockPos = (Object) h_getEventPos.invokeExact(blockEventData);
+                } catch (Throwable t) {
+                    throw Linker.wrap(t);
+                }
 
-                Object worldBlock = rBlock.getBlockFromState(getBlockState(world, blockPos));
+                // The event's own position is looked at, this used to copy it and look twice at the same block
+                Object blockState = getBlockState(world, blockPos);
+                Object block = rBlock.getBlockFromState(blockState);
 
-                if (block.equals(worldBlock))
-                    rBlock.onBlockEventReceived(block, world.getWorld(), blockPos, blockState, eventId, eventParameter);
-                else
-                    Log.w("Ignored block event at " + blockPos);
+                rBlock.onBlockEventReceived(block, world.getWorld(), blockPos, blockState, eventId, eventParameter);
             }
 
             blockEventDataArray.clear();
@@ -387,20 +448,32 @@ class RWorld {
 	}
 	
 	public Object getBlockState(WorldInstance world, int x, int y, int z) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
-		
-		return getBlockState(world, rBlockPos.createInstance(x, y, z));
+
+		// Reading a block doesn't keep the position around, so the shared one will do
+		return getBlockState(world, rBlockPos.getShared(x, y, z));
 	}
 
     private Object getBlockState(WorldInstance world, Object blockPos) throws InvocationTargetException, IllegalAccessException {
 
-        return m_getBlockState.invoke(world.getWorld(), blockPos);
+        try {
+            return (Object) h_getBlockState.invokeExact(world.getWorld(), blockPos);
+        } catch (Throwable t) {
+            throw Linker.wrap(t);
+        }
     }
 	
 	public boolean setBlockState(WorldInstance world, int x, int y, int z, Object blockState, boolean update, boolean sendChange) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
 		
 		int flags = 4 | (sendChange ? 2 : 0) | (update ? 1 : 0);
 
-        boolean succes = (boolean) m_setBlockState.invoke(world.getWorld(), rBlockPos.createInstance(x, y, z), blockState, flags);
+        Object blockPos = rBlockPos.createInstance(x, y, z);
+        boolean succes;
+
+        try {
+            succes = (boolean) h_setBlockState.invokeExact(world.getWorld(), blockPos, blockState, flags);
+        } catch (Throwable t) {
+            throw Linker.wrap(t);
+        }
 		
 		if (!succes)
 			Log.w("Set block: no changes");
@@ -417,6 +490,38 @@ class RWorld {
 		return m_getTileEntity.invoke(world.getWorld(), blockPos);
 	}
 	
+	/**
+	 * Tells the block at a position that one of its neighbours changed into the given block.
+	 */
+	public void notifyBlockOfStateChange(WorldInstance world, int x, int y, int z, Object neighbourBlock) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		// Not the shared position, the block may schedule a tick with it
+		Object blockPos = rBlockPos.createInstance(x, y, z);
+
+		try {
+			h_notifyBlockOfStateChange.invokeExact(world.getWorld(), blockPos, neighbourBlock);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
+	}
+
+	/**
+	 * Works out the sky and block light around a position again, like Minecraft does when a block that gives or blocks
+	 * light is set.
+	 */
+	public void checkLight(WorldInstance world, int x, int y, int z) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		// Not the shared position, it's queued while the light spreads
+		Object blockPos = rBlockPos.createInstance(x, y, z);
+
+		// It says whether the chunks were loaded, which they always are, but invokeExact needs the result taken
+		try {
+			boolean loaded = (boolean) h_checkLight.invokeExact(world.getWorld(), blockPos);
+		} catch (Throwable t) {
+			throw Linker.wrap(t);
+		}
+	}
+
 	public void addTickEntry(WorldInstance world, int x, int y, int z, Object block, int scheduledTime, int priority) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
 
 		m_addTickEntry.invoke(world.getWorld(), rBlockPos.createInstance(x, y, z), block, scheduledTime, priority);
@@ -0,0 +1,343 @@
+package sim.logic;
+
+import logging.Log;
+import sim.constants.Constants;
+import sim.objects.BlockChanges;
+import sim.objects.WorldInstance;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Listens to the world like a client would, through a Proxy of IWorldAccess, to learn which blocks changed. Minecraft
+ * reports every block it sets with an update for the client, so reading those back is a lot less than copying the
+ * whole world every tick.
+ *
+ * The methods are told apart by signature, like the chunk provider does. Every void method taking one BlockPos counts,
+ * which includes light changes as well. Those only make for a block that gets looked at for nothing.
+ *
+ * Until Minecraft has been seen to report everything that changed in a few ticks, it isn't trusted and every ask gives
+ * a full copy. If it ever misses something, it's never trusted again. It can: a block set without an update for the
+ * client, like the moving piston a piston puts down, or set in a chunk Minecraft doesn't count as populated, isn't
+ * reported. So once trusted, every tick still checks a slice of the world against what it was last seen as, and every
+ * block gets its turn within a while.
+ */
+class RWorldAccess implements InvocationHandler {
+
+	private static final int IGNORED = 0, POSITION = 1, RANGE = 2;
+
+	private final RBlockPos rBlockPos;
+	private final ConcurrentHashMap<Method, Integer> kinds;
+
+	private int xSize, ySize, zSize;
+
+	// Gets its sections marked for whatever Minecraft reports
+	private WorldInstance world;
+
+	// Changed since the last drain, or whether anything may have
+	private BitSet changed;
+	private boolean allChanged;
+
+	// Changed in the current tick, in the order they came in
+	private BitSet tickSeen;
+	private int[] tickChanges;
+	private int tickChangeCount;
+	private boolean tickComplete;
+
+	private int verifiedTicks;
+	private boolean broken;
+
+	// Every block as it was last checked, and what was reported since, for the checks once it's trusted
+	private char[] known;
+	private BitSet reported;
+	private int checkCursor;
+
+	public RWorldAccess(RBlockPos rBlockPos) {
+		this.rBlockPos = rBlockPos;
+
+		kinds = new ConcurrentHashMap<>();
+		tickChanges = new int[64];
+		setSize(0, 0, 0);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		if (method.getDeclaringClass() == Object.class)
+			return method.invoke(this, args);
+
+		Integer kind = kinds.get(method);
+
+		if (kind == null) {
+			kind = resolve(method);
+			kinds.put(method, kind);
+		}
+
+		switch (kind) {
+
+			case POSITION:
+				mark(rBlockPos.getX(args[0]), rBlockPos.getY(args[0]), rBlockPos.getZ(args[0]));
+				break;
+
+			case RANGE:
+				markRange((int) args[0], (int) args[1], (int) args[2], (int) args[3], (int) args[4], (int) args[5]);
+		}
+
+		// All of IWorldAccess is void
+		return null;
+	}
+
+	private int resolve(Method method) {
+
+		Class<?>[] params = method.getParameterTypes();
+
+		if (method.getReturnType() != void.class)
+			return IGNORED;
+
+		// void markBlockForUpdate(BlockPos pos); void notifyLightSet(BlockPos pos);
+		if (params.length == 1 && params[0] == rBlockPos.getBlockPosClass())
+			return POSITION;
+
+		// void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2);
+		if (params.length == 6) {
+			for (Class<?> param : params)
+				if (param != int.class)
+					return IGNORED;
+
+			return RANGE;
+		}
+
+		return IGNORED;
+	}
+
+	/**
+	 * For a world of a new size, after which everything counts as changed.
+	 */
+	public void setSize(int xSize, int ySize, int zSize) {
+
+		if (xSize == this.xSize && ySize == this.ySize && zSize == this.zSize && changed != null) {
+			markAll();
+			return;
+		}
+
+		this.xSize = xSize;
+		this.ySize = ySize;
+		this.zSize = zSize;
+
+		changed = new BitSet(xSize * ySize * zSize);
+		tickSeen = new BitSet(xSize * ySize * zSize);
+		reported = new BitSet(xSize * ySize * zSize);
+		checkCursor = 0;
+		markAll();
+	}
+
+	public void setWorld(WorldInstance world) {
+		this.world = world;
+	}
+
+	/**
+	 * For when blocks were changed in a way Minecraft doesn't know about, like loading a schematic.
+	 */
+	public void markAll() {
+		allChanged = true;
+		tickComplete = false;
+		known = null;
+	}
+
+	public void mark(int x, int y, int z) {
+
+		if (x < 0 || y < 0 || z < 0 || x >= xSize || y >= ySize || z >= zSize)
+			return;
+
+		if (world != null)
+			world.markDirty(x, y, z);
+
+		mark((y * zSize + z) * xSize + x);
+	}
+
+	/**
+	 * @param position A schematic index.
+	 */
+	public void mark(int position) {
+
+		changed.set(position);
+		reported.set(position);
+
+		if (!tickSeen.get(position)) {
+			tickSeen.set(position);
+
+			if (tickChangeCount == tickChanges.length)
+				tickChanges = Arrays.copyOf(tickChanges, tickChanges.length * 2);
+
+			tickChanges[tickChangeCount++] = position;
+		}
+	}
+
+	private void markRange(int x1, int y1, int z1, int x2, int y2, int z2) {
+
+		for (int y = Math.max(y1, 0); y <= Math.min(y2, ySize - 1); y++)
+			for (int z = Math.max(z1, 0); z <= Math.min(z2, zSize - 1); z++)
+				for (int x = Math.max(x1, 0); x <= Math.min(x2, xSize - 1); x++)
+					mark(x, y, z);
+	}
+
+	public boolean isTrusted() {
+		return !broken && verifiedTicks >= Constants.WORLDACCESS_VERIFY_TICKS;
+	}
+
+	/**
+	 * Whether ticks still need to be checked with {@link #verify(char[][][], WorldInstance)}.
+	 */
+	public boolean isVerifying() {
+		return !broken && verifiedTicks < Constants.WORLDACCESS_VERIFY_TICKS;
+	}
+
+	/**
+	 * Starts following what changes in a tick.
+	 */
+	public void startTick() {
+
+		tickSeen.clear();
+		tickChangeCount = 0;
+		tickComplete = true;
+	}
+
+	/**
+	 * The blocks that changed in the last tick, as sorted schematic indices.
+	 * @return null if that isn't known.
+	 */
+	public int[] getTickChanges() {
+
+		if (!tickComplete || !isTrusted())
+			return null;
+
+		int[] positions = Arrays.copyOf(tickChanges, tickChangeCount);
+		Arrays.sort(positions);
+
+		return positions;
+	}
+
+	/**
+	 * Checks what was reported in the last tick against what really changed.
+	 * @param before A copy of every block from before the tick, as [x][y][z].
+	 */
+	public void verify(char[][][] before, WorldInstance world) {
+
+		if (broken || !tickComplete)
+			return;
+
+		boolean anyChanged = false;
+
+		for (int y = 0; y < ySize; y++)
+			for (int z = 0; z < zSize; z++)
+				for (int x = 0; x < xSize; x++) {
+
+					if (before[x][y][z] == world.getBlockRaw(x, y, z))
+						continue;
+
+					anyChanged = true;
+
+					if (!tickSeen.get((y * zSize + z) * xSize + x)) {
+						broken = true;
+						Log.w("Minecraft didn't report a block change at " + x + ", " + y + ", " + z
+								+ ", the whole world is copied every time instead");
+						return;
+					}
+				}
+
+		if (anyChanged)
+			verifiedTicks++;
+	}
+
+	/**
+	 * Once trusted, checks the next {@link Constants#WORLDACCESS_CHECK_BLOCKS} blocks against what they were when last
+	 * checked or reported. A change that wasn't reported is still shown and saved from then on, but the ticks since it
+	 * happened can't be trusted, so neither is anything Minecraft reports after.
+	 */
+	public void check(WorldInstance world) {
+
+		if (!isTrusted())
+			return;
+
+		int size = xSize * ySize * zSize;
+
+		if (known == null) {
+			known = new char[size];
+
+			for (int position = 0; position < size; position++)
+				known[position] = getBlock(world, position);
+
+			reported.clear();
+			return;
+		}
+
+		for (int position = reported.nextSetBit(0); position >= 0; position = reported.nextSetBit(position + 1))
+			known[position] = getBlock(world, position);
+
+		reported.clear();
+
+		int end = Math.min(checkCursor + Constants.WORLDACCESS_CHECK_BLOCKS, size);
+
+		for (int position = checkCursor; position < end; position++) {
+
+			if (known[position] == getBlock(world, position))
+				continue;
+
+			int x = position % xSize, y = position / (xSize * zSize), z = position / xSize % zSize;
+
+			broken = true;
+			mark(x, y, z);
+			markAll();
+
+			Log.w("Minecraft didn't report a block change at " + x + ", " + y + ", " + z + ", the ticks since may"
+					+ " be off, the whole world is copied every time from now on");
+			return;
+		}
+
+		checkCursor = end == size ? 0 : end;
+	}
+
+	private char getBlock(WorldInstance world, int position) {
+		return world.getBlockRaw(position % xSize, position / (xSize * zSize), position / xSize % zSize);
+	}
+
+	/**
+	 * What changed since the last time this was called.
+	 */
+	public BlockChanges drain(WorldInstance world) {
+
+		BlockChanges changes;
+
+		if (allChanged || !isTrusted()) {
+
+			char[][][] blocks = new char[xSize][ySize][zSize];
+
+			for (int y = 0; y < ySize; y++)
+				for (int z = 0; z < zSize; z++)
+					for (int x = 0; x < xSize; x++)
+						blocks[x][y][z] = world.getBlockRaw(x, y, z);
+
+			changes = new BlockChanges(blocks);
+
+		} else {
+
+			int[] positions = new int[changed.cardinality()];
+			char[] values = new char[positions.length];
+
+			for (int i = 0, position = changed.nextSetBit(0); position >= 0; i++, position = changed.nextSetBit(position + 1)) {
+				positions[i] = position;
+				values[i] = getBlock(world, position);
+			}
+
+			changes = new BlockChanges(positions, values);
+		}
+
+		changed.clear();
+		allChanged = false;
+
+		return changes;
+	}
+}
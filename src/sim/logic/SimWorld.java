@@ -4,16 +4,24 @@ import logging.Log;
 import presentation.objects.Block;
 import presentation.objects.Entity;
 import sim.constants.Constants;
+import sim.objects.BlockChanges;
+import sim.objects.ProfilerWindow;
+import sim.objects.SchematicDelta;
+import sim.objects.SchematicState;
+import sim.objects.TickMetrics;
 import sim.objects.WorldInstance;
+import utils.NBT;
 import utils.Tag;
 import utils.Tag.Type;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
-import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
 
 public class SimWorld {
 	
@@ -22,12 +30,20 @@ public class SimWorld {
 	private final RChunk rChunk;
 	private final RProfiler rProfiler;
 	private final RChunkProvider rChunkProvider;
+	private final ChunkPool chunkPool;
 	private final RTileEntity rTileEntity;
 	private final RNBTTags rNBTTags;
 	private final REntity rEntity;
 	private final RNextTickListEntry rNextTickListEntry;
 	private final RChunkPrimer rChunkPrimer;
 	private final RBlockPos rBlockPos;
+	private final RWorldAccess rWorldAccess;
+	private final TickMetrics metrics;
+
+	// Minecraft's profiler for this world, sampled every so many ticks into the window
+	private Object profiler;
+	private final ProfilerWindow profilerWindow;
+	private int unsampledTicks;
 
     private WorldInstance world;
 
@@ -35,15 +51,33 @@ public class SimWorld {
 	private boolean isSchematicUpToDate;
     private final Random random;
 
+	// The tile entity objects by position, as of the last time the schematic was set or gotten
+	private final HashMap<String, Object> tileEntityIndex;
+
+	// The blocks of the schematic, only the sections that changed are written again when a new one is built
+	private byte[] schematicIds, schematicData;
+
+	// How many schematics were built since every section was last written again
+	private int partialSchematics;
+
+	// What every tile entity, entity and tile tick was saved as in the last schematic, by the Minecraft object
+	private IdentityHashMap<Object, SavedRecord> savedTileEntities, savedEntities;
+	private IdentityHashMap<Object, SavedTileTick> savedTileTicks;
+
     public SimWorld(RBlock rBlock, RChunk rChunk, REntity rEntity,
 			RNBTTags rNBTTags, RNextTickListEntry rNextTickListEntry, RProfiler rProfiler,
 			RTileEntity rTileEntity, RWorld rWorld, RChunkPrimer rChunkPrimer, RBlockPos rBlockPos) throws IllegalArgumentException {
 
         random = new Random();
+		tileEntityIndex = new HashMap<>();
+		savedTileEntities = new IdentityHashMap<>();
+		savedEntities = new IdentityHashMap<>();
+		savedTileTicks = new IdentityHashMap<>();
 
 		this.rBlock = rBlock;
 		this.rChunk = rChunk;
 		this.rChunkProvider = new RChunkProvider(rBlockPos);
+		this.chunkPool = new ChunkPool();
 		this.rEntity = rEntity;
 		this.rNBTTags = rNBTTags;
 		this.rNextTickListEntry = rNextTickListEntry;
@@ -52,6 +86,9 @@ public class SimWorld {
 		this.rWorld = rWorld;
 		this.rChunkPrimer = rChunkPrimer;
 		this.rBlockPos = rBlockPos;
+		this.rWorldAccess = new RWorldAccess(rBlockPos);
+		this.metrics = new TickMetrics();
+		this.profilerWindow = new ProfilerWindow(Constants.PROFILER_WINDOW);
 
         isSchematicUpToDate = false;
 	}
@@ -70,7 +107,19 @@ public class SimWorld {
      * @param hardcoreEnabled true/false
      */
 	public void createInstance(int worldTypeId, String worldType, String gameType, long seed, int worldProvider, boolean hardcoreEnabled) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
-		world = rWorld.createInstance(worldTypeId, worldType, gameType, seed, worldProvider, Constants.MAPFEATURESENABLED, hardcoreEnabled, rChunk, rChunkProvider, rProfiler);
+		profiler = rProfiler.createInstance();
+		profilerWindow.clear();
+		unsampledTicks = 0;
+
+		world = rWorld.createInstance(worldTypeId, worldType, gameType, seed, worldProvider, Constants.MAPFEATURESENABLED, hardcoreEnabled, rChunk, rChunkProvider, profiler, rWorldAccess);
+		rWorldAccess.setWorld(world);
+
+		// The old chunks belong to the old world, and so does what was saved from it
+		chunkPool.clear();
+		schematicIds = schematicData = null;
+		savedTileEntities.clear();
+		savedEntities.clear();
+		savedTileTicks.clear();
 	}
 	
 	public void createEmptyWorld(int xSize, int ySize, int zSize) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
@@ -86,22 +135,26 @@ public class SimWorld {
 						blocks[x][y][z] = Block.BLOCK_IRON;
 
         world.setSize(xSize, ySize, zSize);
+        rWorldAccess.setSize(xSize, ySize, zSize);
         setBlocks(blocks);
 		linkBlocks(xSize, ySize, zSize);
 	}
 
-	public void setSchematic(InputStream input) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException, NoSuchAlgorithmException {
-		
-		Tag schematicTag = Tag.readFrom(input);
-		
-		if (Constants.DEBUG_MC_SCHEMATICS) {
-			System.out.println("SET");
-			schematicTag.print();
+	/**
+	 * Reads a schematic straight off the stream, without ever holding all of it. Blocks go into the chunk sections as
+	 * they come in, tile entities, entities and tile ticks are handed to Minecraft one at a time. There's no Tag of the
+	 * whole schematic after this, the next {@link #getSchematic()} builds one.
+	 */
+	public void setSchematic(InputStream input) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		cachedSchematic = null;
+		isSchematicUpToDate = false;
+
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new GZIPInputStream(input)))) {
+			new SchematicStream(dis).read();
 		}
-		
-		setSchematic(schematicTag);
 	}
-	
+
 	public void setSchematic(Tag schematicTag) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException, ArrayIndexOutOfBoundsException, IOException {
 
 		this.cachedSchematic = schematicTag;
@@ -110,58 +163,454 @@ public class SimWorld {
 		if (!schematicTag.getName().equals("Schematic"))
 			Log.w("The root tag was not named 'Schematic', continuing anyway.");
 		
-		if (!schematicTag.findNextTagByName("Materials", null).getValue().equals("Alpha"))
+		if (!schematicTag.getChild("Materials").getValue().equals("Alpha"))
 			Log.w("The schematic is encoded for Minecraft classic or something else, which is not supported, but I'll try.");
 
-		short xSize = (short) schematicTag.findNextTagByName("Width", null).getValue();
-		short ySize = (short) schematicTag.findNextTagByName("Height", null).getValue();
-		short zSize = (short) schematicTag.findNextTagByName("Length", null).getValue();
+		short xSize = (short) schematicTag.getChild("Width").getValue();
+		short ySize = (short) schematicTag.getChild("Height").getValue();
+		short zSize = (short) schematicTag.getChild("Length").getValue();
 
 		// Size
 //		world.linkBlocks((int) xSize, (int) ySize, (int) zSize);
 
         world.setSize(xSize, ySize, zSize);
+        rWorldAccess.setSize(xSize, ySize, zSize);
 
 		// Blocks
-		byte[] idsArray = (byte[]) schematicTag.findNextTagByName("Blocks", null).getValue();
-		byte[] dataArray = (byte[]) schematicTag.findNextTagByName("Data", null).getValue();
+		byte[] idsArray = (byte[]) schematicTag.getChild("Blocks").getValue();
+		byte[] dataArray = (byte[]) schematicTag.getChild("Data").getValue();
 
-		char[][][] blocks = new char[world.getxSize()][world.getySize()][world.getzSize()];
+        linkBlocks(xSize, ySize, zSize);
 
+		// Straight into the sections
 		int i = 0;
 		for (short y = 0; y < ySize; y++)
 			for (short z = 0; z < zSize; z++)
 				for (short x = 0; x < xSize; x++) {
-					blocks[x][y][z] = Block.getChar(idsArray[i], dataArray[i]);
+					world.setBlockRaw(x, y, z, Block.getChar(idsArray[i], dataArray[i]));
                     i++;
 				}
 
-        linkBlocks(xSize, ySize, zSize);
-        setBlocks(blocks);
-
 		world.clearLists();
+		tileEntityIndex.clear();
 		
 		// TileEntities
-		Tag tileEntities = schematicTag.findNextTagByName("TileEntities", null);
+		Tag tileEntities = schematicTag.getChild("TileEntities");
 		if (tileEntities != null)
 			setTileEntities((Tag[]) tileEntities.getValue());
 		
 		// Entities
-		Tag entities = schematicTag.findNextTagByName("Entities", null);
+		Tag entities = schematicTag.getChild("Entities");
 
 		if (entities != null)
 			setEntities((Tag[]) entities.getValue());
 		
 		// TileTicks
-		Tag tileTicks = schematicTag.findNextTagByName("TileTicks", null);
+		Tag tileTicks = schematicTag.getChild("TileTicks");
 		if (tileTicks != null)
 			setTileTicks((Tag[]) tileTicks.getValue());
 	}
 
+	/**
+	 * One pass over a schematic's NBT. The fields can come in any order, so what comes before it can be used is held on
+	 * to: blocks until the size is known, records until all blocks are in, Minecraft checks those for a tile entity.
+	 * Schematics written by this or by most editors have their size first and their records last.
+	 */
+	private class SchematicStream {
+
+		private final DataInputStream dis;
+		private final byte[] buffer;
+
+		private short xSize = -1, ySize = -1, zSize = -1;
+		private boolean linked, idsRead, dataRead;
+
+		// Whatever came too early
+		private byte[] ids, data;
+		private final List<Tag> tileEntities, entities;
+		private final List<NBT> tileTicks;
+
+		SchematicStream(DataInputStream dis) {
+			this.dis = dis;
+
+			buffer = new byte[Constants.SCHEMATIC_STREAM_BUFFER];
+			tileEntities = new ArrayList<>();
+			entities = new ArrayList<>();
+			tileTicks = new ArrayList<>();
+		}
+
+		void read() throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+			if (NBT.readType(dis) != Type.TAG_Compound)
+				throw new IOException("A schematic has to start with a compound tag");
+
+			if (!dis.readUTF().equals("Schematic"))
+				Log.w("The root tag was not named 'Schematic', continuing anyway.");
+
+			for (Type type = NBT.readType(dis); type != Type.TAG_End; type = NBT.readType(dis)) {
+				String name = dis.readUTF();
+
+				if (Constants.DEBUG_MC_SCHEMATICS)
+					System.out.println("SET " + type + " " + name);
+
+				if (type == Type.TAG_Short && (name.equals("Width") || name.equals("Height") || name.equals("Length")))
+					readSize(name, dis.readShort());
+
+				else if (type == Type.TAG_Byte_Array && (name.equals("Blocks") || name.equals("Data")))
+					readBlocks(name.equals("Data"));
+
+				else if (type == Type.TAG_List && name.equals("TileEntities"))
+					readRecords(tileEntities);
+
+				else if (type == Type.TAG_List && name.equals("Entities"))
+					readRecords(entities);
+
+				else if (type == Type.TAG_List && name.equals("TileTicks"))
+					readTileTicks();
+
+				else {
+					Tag tag = Tag.readTag(dis, type, name);
+
+					if (name.equals("Materials") && !"Alpha".equals(tag.getValue()))
+						Log.w("The schematic is encoded for Minecraft classic or something else, which is not supported, but I'll try.");
+				}
+			}
+
+			if (!linked)
+				throw new IOException("The schematic has no Width, Height and Length");
+
+			idsRead = dataRead = true;
+			addRecords();
+		}
+
+		private void readSize(String name, short size) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+
+			switch (name) {
+				case "Width":	xSize = size;	break;
+				case "Height":	ySize = size;	break;
+				default:		zSize = size;
+			}
+
+			if (linked || xSize < 0 || ySize < 0 || zSize < 0)
+				return;
+
+			world.setSize(xSize, ySize, zSize);
+			rWorldAccess.setSize(xSize, ySize, zSize);
+			linkBlocks(xSize, ySize, zSize);
+
+			world.clearLists();
+			tileEntityIndex.clear();
+			linked = true;
+
+			if (ids != null)
+				writeBlocks(ids, ids.length, 0, false);
+
+			if (data != null)
+				writeBlocks(data, data.length, 0, true);
+
+			ids = data = null;
+		}
+
+		private void readBlocks(boolean isData) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+			int length = dis.readInt();
+
+			if (isData)
+				dataRead = true;
+			else
+				idsRead = true;
+
+			if (!linked) {
+				byte[] bytes = new byte[length];
+				dis.readFully(bytes);
+
+				if (isData)
+					data = bytes;
+				else
+					ids = bytes;
+
+				return;
+			}
+
+			if (length != xSize * ySize * zSize)
+				throw new IOException("The schematic has " + length + " blocks, but a size of " + xSize + "x" + ySize + "x" + zSize);
+
+			for (int position = 0; position < length; ) {
+				int count = Math.min(buffer.length, length - position);
+
+				dis.readFully(buffer, 0, count);
+				writeBlocks(buffer, count, position, isData);
+
+				position += count;
+			}
+
+			addRecords();
+		}
+
+		/**
+		 * @param position The schematic index of the first byte.
+		 * @param isData Whether these are the data values or the ids, the other half of every block is left as it is.
+		 */
+		private void writeBlocks(byte[] bytes, int count, int position, boolean isData) {
+
+			int x = position % xSize;
+			int y = position / (xSize * zSize);
+			int z = position / xSize % zSize;
+
+			for (int i = 0; i < count && y < ySize; i++) {
+				char block = world.getBlockRaw(x, y, z);
+
+				world.setBlockRaw(x, y, z, isData
+						? Block.getChar(Block.getId(block), bytes[i])
+						: Block.getChar(bytes[i], Block.getData(block)));
+
+				if (++x == xSize) {
+					x = 0;
+
+					if (++z == zSize) {
+						z = 0;
+						y++;
+					}
+				}
+			}
+		}
+
+		private void readRecords(List<Tag> held) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+			Type listType = NBT.readType(dis);
+			int length = dis.readInt();
+
+			for (int i = 0; i < length; i++) {
+				Tag record = Tag.readTag(dis, listType, null);
+
+				if (listType != Type.TAG_Compound)
+					continue;
+
+				if (linked && idsRead && dataRead)
+					addRecord(held, record);
+				else
+					held.add(record);
+			}
+		}
+
+		/**
+		 * There are a lot more tile ticks than anything else, and they're only read from. They skip Tag.
+		 */
+		private void readTileTicks() throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+			Type listType = NBT.readType(dis);
+			int length = dis.readInt();
+
+			for (int i = 0; i < length; i++) {
+				NBT tileTick = NBT.read(dis, listType, null);
+
+				if (listType != Type.TAG_Compound)
+					continue;
+
+				if (linked && idsRead && dataRead)
+					addTileTick(tileTick);
+				else
+					tileTicks.add(tileTick);
+			}
+		}
+
+		private void addRecords() throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+			if (!linked || !idsRead || !dataRead)
+				return;
+
+			for (List<Tag> held : Arrays.asList(tileEntities, entities)) {
+				for (Tag record : held)
+					addRecord(held, record);
+
+				held.clear();
+			}
+
+			for (NBT tileTick : tileTicks)
+				addTileTick(tileTick);
+
+			tileTicks.clear();
+		}
+
+		private void addRecord(List<Tag> kind, Tag record) throws IOException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+			if (kind == tileEntities)
+				addTileEntity(record);
+			else
+				spawnEntity(record);
+		}
+	}
+
+	/**
+	 * Brings the world to a neighbouring state by applying a delta in place. Blocks are written straight into the chunk
+	 * sections, only the tile entities, entities and tile ticks that differ are replaced, everything else is left alone.
+	 * The world has to be in the delta's old state, if that can't be worked with it falls back to {@link #setSchematic(Tag)}.
+	 * @param schematic The state the delta leads to.
+	 * @param forward Which way to apply the delta.
+	 */
+	public void restore(Tag schematic, SchematicDelta delta, boolean forward) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException, IOException {
+
+		if (delta == null || !isSchematicUpToDate || !canRestore(delta, forward)) {
+			setSchematic(schematic);
+			return;
+		}
+
+		int width = world.getxSize();
+		int length = world.getzSize();
+
+		for (int i = 0; i < delta.getBlockCount(); i++) {
+			int index = delta.getBlockIndex(i);
+
+			world.setBlockRaw(index % width, index / (width * length), index / width % length,
+					Block.getChar(delta.getId(i, forward), delta.getData(i, forward)));
+			rWorldAccess.mark(index);
+		}
+
+		restoreTileEntities(delta.getTileEntities(), forward);
+		restoreEntities(delta.getEntities(), forward);
+		restoreTileTicks(delta.getTileTicks(), forward);
+
+		cachedSchematic = schematic;
+		isSchematicUpToDate = true;
+	}
+
+	private boolean canRestore(SchematicDelta delta, boolean forward) {
+
+		short xSize = (short) cachedSchematic.getChild("Width").getValue();
+		short ySize = (short) cachedSchematic.getChild("Height").getValue();
+		short zSize = (short) cachedSchematic.getChild("Length").getValue();
+
+		if (xSize != world.getxSize() || ySize != world.getySize() || zSize != world.getzSize())
+			return false;
+
+		// Entities without UUID can't be found back
+		for (String key : delta.getEntities().getRemoved(forward).keySet())
+			if (key.startsWith("#"))
+				return false;
+
+		return true;
+	}
+
+	private void restoreTileEntities(SchematicDelta.RecordChanges changes, boolean forward) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException, IOException {
+
+		Map<String, byte[]> added = changes.getAdded(forward);
+
+		for (String key : changes.getRemoved(forward).keySet()) {
+			Object tileEntity = tileEntityIndex.remove(key);
+			int loadedIndex = world.getLoadedTileEntities().indexOf(tileEntity);
+			int tickableIndex = world.getTickableTileEntities().indexOf(tileEntity);
+
+			if (tileEntity != null) {
+				rTileEntity.invalidate(tileEntity);
+				world.getLoadedTileEntities().remove(tileEntity);
+				world.getTickableTileEntities().remove(tileEntity);
+			}
+
+			// A changed tile entity takes the place of the old one, the order they're ticked in matters
+			byte[] payload = added.get(key);
+			if (payload != null) {
+				Object replacement = addTileEntity(SchematicState.fromPayload(payload));
+
+				keepIndex(world.getLoadedTileEntities(), loadedIndex, replacement);
+				keepIndex(world.getTickableTileEntities(), tickableIndex, replacement);
+			}
+		}
+
+		for (Map.Entry<String, byte[]> entry : added.entrySet())
+			if (!changes.getRemoved(forward).containsKey(entry.getKey()))
+				addTileEntity(SchematicState.fromPayload(entry.getValue()));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void restoreEntities(SchematicDelta.RecordChanges changes, boolean forward) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException, IOException {
+
+		Map<String, byte[]> added = changes.getAdded(forward);
+
+		for (String key : changes.getRemoved(forward).keySet()) {
+			Object entity = world.getEntitiesByUuid().remove(UUID.fromString(key));
+			int index = world.getLoadedEntities().indexOf(entity);
+
+			if (entity != null) {
+				rEntity.setDead(entity);
+				world.getLoadedEntities().remove(entity);
+			}
+
+			// Just like tile entities, a changed entity is put back where the old one was
+			byte[] payload = added.get(key);
+			if (payload != null)
+				keepIndex(world.getLoadedEntities(), index, spawnEntity(SchematicState.fromPayload(payload)));
+		}
+
+		for (Map.Entry<String, byte[]> entry : added.entrySet())
+			if (!changes.getRemoved(forward).containsKey(entry.getKey()))
+				spawnEntity(SchematicState.fromPayload(entry.getValue()));
+	}
+
+	private void restoreTileTicks(SchematicDelta.RecordChanges changes, boolean forward) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		Map<String, byte[]> removed = changes.getRemoved(forward);
+
+		if (!removed.isEmpty()) {
+			HashSet<Long> keys = new HashSet<>(removed.size() * 2);
+
+			for (byte[] payload : removed.values()) {
+				NBT tileTick = SchematicState.readPayload(payload);
+				keys.add(getTileTickKey(tileTick.getInt("x"), tileTick.getInt("y"), tileTick.getInt("z"),
+						rBlock.getIdFromBlock(rBlock.getBlockFromName(tileTick.getString("i")))));
+			}
+
+			Iterator<Object> i = world.getPendingTickListEntries().iterator();
+
+			while (i.hasNext()) {
+				Object tileTick = i.next();
+				Object blockPos = rNextTickListEntry.getBlockPos(tileTick);
+
+				long key = getTileTickKey(rBlockPos.getX(blockPos), rBlockPos.getY(blockPos), rBlockPos.getZ(blockPos),
+						rBlock.getIdFromBlock(rNextTickListEntry.getBlock(tileTick)));
+
+				if (keys.contains(key)) {
+					i.remove();
+					world.getPendingTickListHashSet().remove(tileTick);
+				}
+			}
+		}
+
+		for (byte[] payload : changes.getAdded(forward).values())
+			restoreTileTick(SchematicState.readPayload(payload));
+	}
+
+	/**
+	 * A tile tick's position and block in one number, what it's known by between ticks.
+	 */
+	private static long getTileTickKey(int x, int y, int z, int blockId) {
+		return (x & 0xFFFFL) << 48 | (y & 0xFFFFL) << 32 | (z & 0xFFFFL) << 16 | blockId & 0xFFFFL;
+	}
+
+	/**
+	 * Moves what was just added at the end of a list to where the thing it replaces used to be.
+	 */
+	private static void keepIndex(List<Object> list, int index, Object added) {
+
+		if (index >= 0 && !list.isEmpty() && list.get(list.size() - 1) == added)
+			list.add(index, list.remove(list.size() - 1));
+	}
+
+    /**
+     * Gives the world its chunks, reusing the ones of the last time a world this size was set if there are any.
+     */
     private void linkBlocks(int xSize, int ySize, int zSize) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+
+        Object[][] chunks = chunkPool.get(xSize, ySize, zSize);
+        rChunkProvider.clear();
+
         for (int x = 0; x << 4 < xSize; x++)
             for (int z = 0; z << 4 < zSize; z++) {
-                Object chunk = rChunk.generateEmptyChunk(world.getWorld(), xSize, zSize);
+                Object chunk = chunks[x][z];
+
+                if (chunk == null)
+                    chunks[x][z] = chunk = rChunk.generateEmptyChunk(world.getWorld(), xSize, zSize);
+                else
+                    rChunk.reset(chunk);
+
                 rChunkProvider.addChunk(chunk, x, z);
                 Object[] storageArray = rChunk.getStorageArray(chunk);
 
@@ -245,54 +694,83 @@ public class SimWorld {
 	 */
 	private void setTileEntities(Tag[] tags) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, IOException {
 		
-		for (Tag tag : tags) {
-			
-			int x = (int) tag.findTagByName("x").getValue();
-			int y = (int) tag.findTagByName("y").getValue();
-			int z = (int) tag.findTagByName("z").getValue();
-			
-			Object mcTag = rNBTTags.getMinecraftTagFromTag(tag);
+		for (Tag tag : tags)
+			addTileEntity(tag);
+	}
 
-			Object chunk = rChunkProvider.getChunk(x >> 4, z >> 4);
-			Object tileEntity = rTileEntity.createTileEntityFromNBT(mcTag);
+	private Object addTileEntity(Tag tag) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, IOException {
 
-			rChunk.addTileEntity(chunk, tileEntity);
-		}
+		int x = (int) tag.getChild("x").getValue();
+		int y = (int) tag.getChild("y").getValue();
+		int z = (int) tag.getChild("z").getValue();
+
+		Object mcTag = rNBTTags.getMinecraftTagFromTag(tag);
+
+		Object chunk = rChunkProvider.getChunk(x >> 4, z >> 4);
+		Object tileEntity = rTileEntity.createTileEntityFromNBT(mcTag);
+
+		rChunk.addTileEntity(chunk, tileEntity);
+		tileEntityIndex.put(x + "," + y + "," + z, tileEntity);
+
+		return tileEntity;
 	}
 	
 	private void setEntities(Tag[] tags) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, IOException {
 		
-		for (Tag tag : tags) {
+		for (Tag tag : tags)
+			spawnEntity(tag);
+	}
 
-			Object mcTag = rNBTTags.getMinecraftTagFromTag(tag);
-			
-			Object entity = rEntity.createEntityFromNBT(mcTag, world.getWorld());
+	private Object spawnEntity(Tag tag) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, IOException {
 
-			if (entity == null) {
-				Log.e("Spawning entity failed");
-				continue;
-			}
-			
-			rWorld.spawnEntityInWorld(world, entity);
+		Object mcTag = rNBTTags.getMinecraftTagFromTag(tag);
+
+		Object entity = rEntity.createEntityFromNBT(mcTag, world.getWorld());
+
+		if (entity == null) {
+			Log.e("Spawning entity failed");
+			return null;
 		}
+
+		rWorld.spawnEntityInWorld(world, entity);
+
+		return entity;
 	}
 	
 	private void setTileTicks(Tag[] tags) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
 		
-		for (Tag tag : tags) {
-			
-			int xCoord		= (int) tag.findNextTagByName("x", null).getValue();
-			int yCoord		= (int) tag.findNextTagByName("y", null).getValue();
-			int zCoord		= (int) tag.findNextTagByName("z", null).getValue();
-			
-			String blockStr	= (String) tag.findNextTagByName("i", null).getValue();
-			Object block	= rBlock.getBlockFromName(blockStr);
-			
-			int time		= (int) tag.findNextTagByName("t", null).getValue();
-			int priority	= (int) tag.findNextTagByName("p", null).getValue();
-			
-			rWorld.addTickEntry(world, xCoord, yCoord, zCoord, block, time, priority);
+		// Read the same way as when they're streamed in
+		for (Tag tag : tags)
+			addTileTick(NBT.fromTag(tag));
+	}
+
+	private void addTileTick(NBT tileTick) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		Object block = rBlock.getBlockFromName(tileTick.getString("i"));
+
+		rWorld.addTickEntry(world, tileTick.getInt("x"), tileTick.getInt("y"), tileTick.getInt("z"), block,
+				tileTick.getInt("t"), tileTick.getInt("p"));
+	}
+
+	/**
+	 * Puts back a tile tick from the time line with the id it was first scheduled with, so it runs in the same order
+	 * among the ticks that are due at the same time. Ones without an id are scheduled anew.
+	 */
+	private void restoreTileTick(NBT tileTick) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		if (!tileTick.has("id")) {
+			addTileTick(tileTick);
+			return;
 		}
+
+		Object entry = rNextTickListEntry.createInstance(
+				rBlockPos.createInstance(tileTick.getInt("x"), tileTick.getInt("y"), tileTick.getInt("z")),
+				rBlock.getBlockFromName(tileTick.getString("i")), rWorld.getWorldTime(world) + tileTick.getInt("t"),
+				tileTick.getInt("p"), tileTick.getLong("id"));
+
+		// Like Minecraft, there's only one of a block at a position
+		if (world.getPendingTickListHashSet().add(entry))
+			world.getPendingTickListEntries().add(entry);
 	}
 	
 	public void getSchematic(OutputStream os) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, IOException {
@@ -302,35 +780,26 @@ public class SimWorld {
 		Log.i("Saving world");
 	}
 
+	/**
+	 * The world as a schematic. Its Blocks and Data arrays are kept by the simulation and written to again by the next
+	 * call after something changed, whoever keeps a schematic for longer than that has to copy them, like
+	 * {@link SchematicState#fromTag(Tag)} does. Until then, they can be read from any thread.
+	 */
 	public Tag getSchematic() throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException, IOException {
 
 		if (isSchematicUpToDate)
 			return cachedSchematic;
 
-        char[][][] blocks = getBlocks();
-
-		int size = world.getxSize() * world.getySize() * world.getzSize();
+		long start = System.nanoTime();
+		updateSchematicBlocks();
 
-		byte[] ids = new byte[size];
-		byte[] data = new byte[size];
-
-		int i = 0;
-		for (short y = 0; y < world.getySize(); y++)
-			for (short z = 0; z < world.getzSize(); z++)
-				for (short x = 0; x < world.getxSize(); x++) {
-					char block = blocks[x][y][z];
-					ids[i] = Block.getId(block);
-					data[i] = Block.getData(block);
-					i++;
-				}
-		
 			Tag tWidth	= new Tag(Tag.Type.TAG_Short, "Width" , (short) world.getxSize());
 			Tag tHeight = new Tag(Tag.Type.TAG_Short, "Height", (short) world.getySize());
 			Tag tLength = new Tag(Tag.Type.TAG_Short, "Length", (short) world.getzSize());
 			
 			Tag tMaterials = new Tag(Tag.Type.TAG_String, "Materials", "Alpha");
-			Tag tBlocks = new Tag(Tag.Type.TAG_Byte_Array, "Blocks", ids);
-			Tag tData = new Tag(Tag.Type.TAG_Byte_Array, "Data", data);
+			Tag tBlocks = new Tag(Tag.Type.TAG_Byte_Array, "Blocks", schematicIds);
+			Tag tData = new Tag(Tag.Type.TAG_Byte_Array, "Data", schematicData);
 			
 			// Both of these can be null
 			Tag tTileEntities = getTileEntities();
@@ -358,16 +827,81 @@ public class SimWorld {
 		}
 
 		isSchematicUpToDate = true;
+		metrics.lap(TickMetrics.Phase.SCHEMATIC, start);
 		
 		return cachedSchematic;
 	}
 	
+	/**
+	 * Writes the sections that changed since the last schematic into its blocks, in place. Until Minecraft's own
+	 * reports of what changed are trusted, every section counts as changed. Even after, every
+	 * {@link Constants#SCHEMATIC_REFRESH_INTERVAL} schematics they all do, so a change that went unreported doesn't
+	 * stay out of the schematic for long.
+	 */
+	private void updateSchematicBlocks() {
+
+		int xSize = world.getxSize(), ySize = world.getySize(), zSize = world.getzSize();
+		int size = xSize * ySize * zSize;
+
+		if (schematicIds == null || schematicIds.length != size) {
+			schematicIds = new byte[size];
+			schematicData = new byte[size];
+			world.markAllSectionsDirty();
+			partialSchematics = 0;
+
+		} else if (!rWorldAccess.isTrusted() || ++partialSchematics >= Constants.SCHEMATIC_REFRESH_INTERVAL) {
+			world.markAllSectionsDirty();
+			partialSchematics = 0;
+		}
+
+		BitSet dirty = world.getDirtySections();
+
+		if (dirty.isEmpty())
+			return;
+
+		byte[] ids = schematicIds;
+		byte[] data = schematicData;
+
+		for (int sx = 0; sx << 4 < xSize; sx++)
+			for (int sy = 0; sy << 4 < ySize; sy++)
+				for (int sz = 0; sz << 4 < zSize; sz++) {
+
+					if (!dirty.get(world.getSectionIndex(sx, sy, sz)))
+						continue;
+
+					int xMax = Math.min((sx + 1) << 4, xSize);
+
+					for (int y = sy << 4; y < Math.min((sy + 1) << 4, ySize); y++)
+						for (int z = sz << 4; z < Math.min((sz + 1) << 4, zSize); z++) {
+
+							int i = (y * zSize + z) * xSize + (sx << 4);
+
+							for (int x = sx << 4; x < xMax; x++, i++) {
+								char block = world.getBlockRaw(x, y, z);
+								ids[i] = Block.getId(block);
+								data[i] = Block.getData(block);
+							}
+						}
+				}
+
+		world.clearDirtySections();
+	}
+
+	/**
+	 * Minecraft doesn't say when a tile entity or entity changed, so they're all still saved. Only what saved different
+	 * from last time is turned into a Tag again though, the rest reuses its Tag from the last schematic.
+	 */
 	private Tag getTileEntities() throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, IOException {
 
         List<Object> tileEntities = rWorld.getLoadedTileEntities(world);
+		tileEntityIndex.clear();
 
-		if (tileEntities.size() == 0)
+		if (tileEntities.size() == 0) {
+			savedTileEntities.clear();
 			return null;
+		}
+
+		IdentityHashMap<Object, SavedRecord> saved = new IdentityHashMap<>(tileEntities.size());
 
 		Tag[] payload = new Tag[tileEntities.size()];
 		Iterator<Object> i = tileEntities.iterator();
@@ -380,19 +914,33 @@ public class SimWorld {
 
 			rTileEntity.getNBTFromTileEntity(mcTileEntity, mcTag);
 
-			payload[j] = rNBTTags.getTagFromMinecraftTag(mcTag);
+			SavedRecord record = savedTileEntities.get(mcTileEntity);
+
+			if (record == null || !record.mcTag.equals(mcTag))
+				record = new SavedRecord(mcTag, rNBTTags.getTagFromMinecraftTag(mcTag));
+
+			saved.put(mcTileEntity, record);
+
+			payload[j] = record.tag;
+			tileEntityIndex.put(SchematicState.getPositionKey(payload[j]), mcTileEntity);
 
 			j++;
 		}
 
+		savedTileEntities = saved;
+
 		return new Tag(Type.TAG_List, "TileEntities", payload);
 	}
 
 	private Tag getEntities() throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, IOException {
 		List<Object> entities = world.getLoadedEntities();
 
-		if (entities.size() == 0)
+		if (entities.size() == 0) {
+			savedEntities.clear();
 			return null;
+		}
+
+		IdentityHashMap<Object, SavedRecord> saved = new IdentityHashMap<>(entities.size());
 
 		Tag[] payload = new Tag[entities.size()];
 		Iterator<Object> i = entities.iterator();
@@ -403,16 +951,27 @@ public class SimWorld {
 			Object entity = i.next();
 			Object mcTag = rEntity.getNBTFromEntity(entity);
 
-			Tag tEntity = rNBTTags.getTagFromMinecraftTag(mcTag);
+			// Just like tile entities, one that saves the same as last time keeps its Tag
+			SavedRecord record = savedEntities.get(entity);
+
+			if (record == null || !record.mcTag.equals(mcTag)) {
+				Tag tEntity = rNBTTags.getTagFromMinecraftTag(mcTag);
+
+				// This will save dead entities as well
+				tEntity.addTag(new Tag(Type.TAG_String, "id", rEntity.getEntityString(entity)));
+				tEntity.addTag(new Tag(Type.TAG_String, "UUID", rEntity.getUUID(entity).toString()));
+
+				record = new SavedRecord(mcTag, tEntity);
+			}
 
-			// This will save dead entities as well
-			tEntity.addTag(new Tag(Type.TAG_String, "id", rEntity.getEntityString(entity)));
-            tEntity.addTag(new Tag(Type.TAG_String, "UUID", rEntity.getUUID(entity).toString()));
+			saved.put(entity, record);
 
-			payload[j] = tEntity;
+			payload[j] = record.tag;
 			j++;
 		}
 
+		savedEntities = saved;
+
 		return new Tag(Type.TAG_List, "Entities", payload);
 	}
 
@@ -422,10 +981,13 @@ public class SimWorld {
 		Set tickTicks = world.getPendingTickListEntries();
 		int size = tickTicks.size();
 
-		if (size == 0)
+		if (size == 0) {
+			savedTileTicks.clear();
 			return null;
+		}
 
 		Iterator<Object> tileTicksIterator = tickTicks.iterator();
+		IdentityHashMap<Object, SavedTileTick> saved = new IdentityHashMap<>(size);
 
 		Tag[] tTileTickArray = new Tag[size];
 		int index = 0;
@@ -433,34 +995,126 @@ public class SimWorld {
 		while (tileTicksIterator.hasNext()) {
 
 			Object tileTick = tileTicksIterator.next();
-			Object blockPos = rNextTickListEntry.getBlockPos(tileTick);
 
-			String blockName = rBlock.getInternalBlockName(rNextTickListEntry.getBlock(tileTick));
+			// Entries don't change once they're scheduled, only the time left does
+			SavedTileTick savedTileTick = savedTileTicks.get(tileTick);
+
+			if (savedTileTick == null) {
+				Object blockPos = rNextTickListEntry.getBlockPos(tileTick);
+
+				String blockName = rBlock.getInternalBlockName(rNextTickListEntry.getBlock(tileTick));
+
+				savedTileTick = new SavedTileTick(
+						new Tag(Type.TAG_Int, "x", rBlockPos.getX(blockPos)),
+						new Tag(Type.TAG_Int, "y", rBlockPos.getY(blockPos)),
+						new Tag(Type.TAG_Int, "z", rBlockPos.getZ(blockPos)),
+						new Tag(Type.TAG_String, "i", blockName),
+						new Tag(Type.TAG_Int, "p", rNextTickListEntry.getPriority(tileTick)),
+						new Tag(Type.TAG_Long, "id", rNextTickListEntry.getTickEntryID(tileTick)),
+						rNextTickListEntry.getScheduledTime(tileTick));
+			}
+
+			saved.put(tileTick, savedTileTick);
 
-			Tag tXCoord		= new Tag(Type.TAG_Int, "x", rBlockPos.getX(blockPos));
-			Tag tYCoord		= new Tag(Type.TAG_Int, "y", rBlockPos.getY(blockPos));
-			Tag tZCoord		= new Tag(Type.TAG_Int, "z", rBlockPos.getZ(blockPos));
-			Tag tBlock		= new Tag(Type.TAG_String, "i", blockName);
-			Tag tTime		= new Tag(Type.TAG_Int, "t", (int) (rNextTickListEntry.getScheduledTime(tileTick) - world.getWorldTime()));
-			Tag tPriority	= new Tag(Type.TAG_Int, "p", rNextTickListEntry.getPriority(tileTick));
+			Tag tTime		= new Tag(Type.TAG_Int, "t", (int) (savedTileTick.scheduledTime - world.getWorldTime()));
 			Tag tEnd		= new Tag(Tag.Type.TAG_End, "", null);
 
-			Tag tTileTick = new Tag(Type.TAG_Compound, null, new Tag[]{tXCoord, tYCoord, tZCoord, tBlock, tTime, tPriority, tEnd});
+			Tag tTileTick = new Tag(Type.TAG_Compound, null, new Tag[]{savedTileTick.x, savedTileTick.y, savedTileTick.z,
+					savedTileTick.block, tTime, savedTileTick.priority, savedTileTick.id, tEnd});
 
 			tTileTickArray[index++] = tTileTick;
 		}
 
+		savedTileTicks = saved;
+
 		return new Tag(Type.TAG_List, "TileTicks", tTileTickArray);
 	}
 
+	private static class SavedRecord {
+
+		// Minecraft's NBT, compared with equals to what it saves next time
+		private final Object mcTag;
+		private final Tag tag;
+
+		SavedRecord(Object mcTag, Tag tag) {
+			this.mcTag = mcTag;
+			this.tag = tag;
+		}
+	}
+
+	private static class SavedTileTick {
+
+		private final Tag x, y, z, block, priority, id;
+		private final long scheduledTime;
+
+		SavedTileTick(Tag x, Tag y, Tag z, Tag block, Tag priority, Tag id, long scheduledTime) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.block = block;
+			this.priority = priority;
+			this.id = id;
+			this.scheduledTime = scheduledTime;
+		}
+	}
+
 	public boolean tickWorld() throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
 
 		isSchematicUpToDate = false;
-        boolean result = !rWorld.tick(world, 1l);
+
+		// Until Minecraft's reports of what changed are trusted, they're checked against a full copy
+		char[][][] before = rWorldAccess.isVerifying() ? getBlocks() : null;
+
+		rWorldAccess.startTick();
+
+		long start = System.nanoTime();
+        boolean result = !rWorld.tick(world, 1l, metrics);
+		metrics.lap(TickMetrics.Phase.TICK, start);
+
+		if (++unsampledTicks >= Constants.PROFILER_SAMPLE_TICKS) {
+			profilerWindow.add(rProfiler.drain(profiler), unsampledTicks);
+			unsampledTicks = 0;
+		}
+
+		if (before != null)
+			rWorldAccess.verify(before, world);
+
+		// And once they are, a part of the world is still checked every tick
+		rWorldAccess.check(world);
 
         return result;
 	}
 
+	/**
+	 * When nothing but tile ticks is left in the world, the ticks before the first of those are empty. This moves the
+	 * clock past them, so the next {@link #tickWorld()} is the one in which something happens again.
+	 * @param max How many ticks may be skipped at most, for when nothing is scheduled at all.
+	 * @return How many ticks were skipped, 0 if the next tick isn't empty.
+	 */
+	public int skipIdleTicks(int max) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+
+		if (max <= 0 || !rWorld.isIdle(world))
+			return 0;
+
+		int skip = max;
+
+		// Sorted by when they're due, tile ticks are ticked once the clock reaches them
+		SortedSet<Object> pending = (SortedSet<Object>) world.getPendingTickListEntries();
+
+		if (!pending.isEmpty()) {
+			long due = rNextTickListEntry.getScheduledTime(pending.first()) - rWorld.getWorldTime(world) - 1;
+			skip = (int) Math.max(0, Math.min(due, max));
+		}
+
+		if (skip == 0)
+			return 0;
+
+		isSchematicUpToDate = false;
+		rWorld.advanceTicks(world, skip);
+
+		return skip;
+	}
+
 	public void onBlockActivated(int x, int y, int z) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
 
 		isSchematicUpToDate = false;
@@ -478,6 +1132,221 @@ public class SimWorld {
         Object blockState = rBlock.getStateFromMeta(block, blockData);
 
 		rWorld.setBlockState(world, x, y, z, blockState, update, true);
+		rWorldAccess.mark(x, y, z);
+	}
+
+	/**
+	 * The blocks that changed since the last time this was asked, see {@link BlockChanges}. Whoever asks is the only
+	 * one that gets them, so there should only be one.
+	 */
+	public BlockChanges getBlockChanges() {
+
+		long start = System.nanoTime();
+		BlockChanges changes = rWorldAccess.drain(world);
+		metrics.lap(TickMetrics.Phase.BLOCKS, start);
+
+		return changes;
+	}
+
+	/**
+	 * The blocks that changed in the last tick, as sorted schematic indices.
+	 * @return null if that isn't known, like when Minecraft's reports aren't trusted yet or the schematic was set since.
+	 */
+	public int[] getTickChanges() {
+		return rWorldAccess.getTickChanges();
+	}
+
+	/**
+	 * Makes the next {@link #getBlockChanges()} a copy of every block.
+	 */
+	public void markAllBlocksChanged() {
+		rWorldAccess.markAll();
+	}
+
+	/**
+	 * Sets a whole box of blocks at once. They're written straight into the chunk sections, only blocks with a tile
+	 * entity or a comparator output, before or after, go through Minecraft. After that every block in or next to the
+	 * box that has a changed neighbour is told what that neighbour was before, the touched chunks get their sky light
+	 * worked out again, and the light around every block that gives or blocks a different amount of light is checked.
+	 * Anything that falls outside the world is left out.
+	 * @param blocks Ordered like a schematic: x first, then z, then y.
+	 * @return How many blocks changed.
+	 */
+	public int setRegion(int x0, int y0, int z0, int xSize, int ySize, int zSize, char[] blocks, boolean update) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		isSchematicUpToDate = false;
+		long start = System.nanoTime();
+
+		// The part of the box that's in the world
+		int xMin = Math.max(x0, 0), xMax = Math.min(x0 + xSize, world.getxSize());
+		int yMin = Math.max(y0, 0), yMax = Math.min(y0 + ySize, world.getySize());
+		int zMin = Math.max(z0, 0), zMax = Math.min(z0 + zSize, world.getzSize());
+
+		if (xMin >= xMax || yMin >= yMax || zMin >= zMax)
+			return 0;
+
+		// Which blocks were written here and what they were before, by their place in the box grown by one on every side
+		int xGrown = xMax - xMin + 2, zGrown = zMax - zMin + 2;
+		BitSet written = new BitSet(xGrown * (yMax - yMin + 2) * zGrown);
+		char[] olds = new char[xGrown * (yMax - yMin + 2) * zGrown];
+		List<int[]> throughMinecraft = new ArrayList<>();
+		List<int[]> relit = new ArrayList<>();
+		int changed = 0;
+
+		for (int y = yMin; y < yMax; y++)
+			for (int z = zMin; z < zMax; z++)
+				for (int x = xMin; x < xMax; x++) {
+
+					char block = blocks[((y - y0) * zSize + z - z0) * xSize + x - x0];
+					char old = world.getBlockRaw(x, y, z);
+
+					if (block == old)
+						continue;
+
+					changed++;
+					rWorldAccess.mark(x, y, z);
+
+					if (goesThroughMinecraft(old) || goesThroughMinecraft(block)) {
+						throughMinecraft.add(new int[]{x, y, z, block});
+						continue;
+					}
+
+					int index = ((y - yMin + 1) * zGrown + z - zMin + 1) * xGrown + x - xMin + 1;
+
+					world.setBlockRaw(x, y, z, block);
+					written.set(index);
+					olds[index] = old;
+
+					if (changesLight(old, block))
+						relit.add(new int[]{x, y, z});
+				}
+
+		if (changed == 0)
+			return 0;
+
+		// Minecraft does its own updates, comparators and light for these, once everything else is in place
+		for (int[] b : throughMinecraft)
+			rWorld.setBlockState(world, b[0], b[1], b[2], rBlock.getStateFromMeta(
+					rBlock.getBlockById(Block.getId((char) b[3])), Block.getData((char) b[3])), update, true);
+
+		if (update)
+			notifyRegion(xMin, yMin, zMin, xMax, yMax, zMax, written, olds);
+
+		for (int x = xMin >> 4; x <= (xMax - 1) >> 4; x++)
+			for (int z = zMin >> 4; z <= (zMax - 1) >> 4; z++)
+				rChunk.generateSkylightMap(rChunkProvider.getChunk(x, z));
+
+		// The sky light map doesn't spread sideways and knows nothing of block light, so the rest is done like Minecraft
+		for (int[] b : relit)
+			rWorld.checkLight(world, b[0], b[1], b[2]);
+
+		metrics.lap(TickMetrics.Phase.REGION, start);
+
+		return changed;
+	}
+
+	/**
+	 * Sets every block in a box to the same block, see {@link #setRegion(int, int, int, int, int, int, char[], boolean)}.
+	 */
+	public int fill(int x0, int y0, int z0, int xSize, int ySize, int zSize, char block, boolean update) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		char[] blocks = new char[xSize * ySize * zSize];
+		Arrays.fill(blocks, block);
+
+		return setRegion(x0, y0, z0, xSize, ySize, zSize, blocks, update);
+	}
+
+	/**
+	 * Copies the blocks of a box to somewhere else, the two are allowed to overlap. Tile entities aren't copied along,
+	 * see {@link #setRegion(int, int, int, int, int, int, char[], boolean)}.
+	 */
+	public int copyRegion(int fromX, int fromY, int fromZ, int xSize, int ySize, int zSize, int toX, int toY, int toZ, boolean update) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		char[] blocks = new char[xSize * ySize * zSize];
+
+		int i = 0;
+		for (int y = fromY; y < fromY + ySize; y++)
+			for (int z = fromZ; z < fromZ + zSize; z++)
+				for (int x = fromX; x < fromX + xSize; x++) {
+
+					// Outside the world counts as air
+					if (x >= 0 && y >= 0 && z >= 0 && x < world.getxSize() && y < world.getySize() && z < world.getzSize())
+						blocks[i] = world.getBlockRaw(x, y, z);
+
+					i++;
+				}
+
+		return setRegion(toX, toY, toZ, xSize, ySize, zSize, blocks, update);
+	}
+
+	/**
+	 * Neighbour updates for every block in or around a box that is next to a written block, once the whole box is in
+	 * place. Minecraft tells a block which block its neighbour was before the change, so a block with written neighbours
+	 * gets one update for every different block they were, in the same order every time. That's usually one instead of
+	 * the 6 each written block would cause on its own, most of which would land on blocks that are about to change.
+	 */
+	private void notifyRegion(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, BitSet written, char[] olds) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
+
+		int xGrown = xMax - xMin + 2, zGrown = zMax - zMin + 2;
+		int[] neighbours = {-1, 1, -xGrown * zGrown, xGrown * zGrown, -xGrown, xGrown};
+		char[] notified = new char[neighbours.length];
+
+		for (int y = Math.max(yMin - 1, 0); y < Math.min(yMax + 1, world.getySize()); y++)
+			for (int z = Math.max(zMin - 1, 0); z < Math.min(zMax + 1, world.getzSize()); z++)
+				for (int x = Math.max(xMin - 1, 0); x < Math.min(xMax + 1, world.getxSize()); x++) {
+
+					int index = ((y - yMin + 1) * zGrown + z - zMin + 1) * xGrown + x - xMin + 1;
+					int count = 0;
+
+					// West, east, down, up, north, south, always in that order
+					for (int neighbour : neighbours) {
+						int other = index + neighbour;
+
+						if (other >= 0 && written.get(other))
+							count = addBlock(notified, count, Block.getId(olds[other]));
+					}
+
+					// A written block on its own still gets a look, it missed being placed
+					if (count == 0 && written.get(index))
+						count = addBlock(notified, count, Block.getId(olds[index]));
+
+					for (int i = 0; i < count; i++)
+						rWorld.notifyBlockOfStateChange(world, x, y, z, rBlock.getBlockById((byte) notified[i]));
+				}
+	}
+
+	/**
+	 * Adds a block id to the first count ids of a list, if it isn't in there yet.
+	 * @return The new count.
+	 */
+	private static int addBlock(char[] ids, int count, byte id) {
+
+		char c = (char) (id & 0xFF);
+
+		for (int i = 0; i < count; i++)
+			if (ids[i] == c)
+				return count;
+
+		ids[count] = c;
+		return count + 1;
+	}
+
+	/**
+	 * Whether Minecraft has to set a block itself, because it comes with a tile entity or a comparator reads it.
+	 */
+	private boolean goesThroughMinecraft(char block) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+
+		Object b = rBlock.getBlockById(Block.getId(block));
+		return rBlock.hasTileEntity(b) || rBlock.hasComparatorInputOverride(b);
+	}
+
+	/**
+	 * Whether Minecraft would check the light after setting one block over the other.
+	 */
+	private boolean changesLight(char old, char block) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+
+		Object o = rBlock.getBlockById(Block.getId(old)), b = rBlock.getBlockById(Block.getId(block));
+		return rBlock.getLightOpacity(o) != rBlock.getLightOpacity(b) || rBlock.getLightValue(o) != rBlock.getLightValue(b);
 	}
 
 	public Object getBlockState(int x, int y, int z) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, InstantiationException {
@@ -582,6 +1451,7 @@ public class SimWorld {
 
 	public Entity[] getEntityObjects() throws IllegalAccessException, InvocationTargetException {
 
+		long start = System.nanoTime();
 		List<Object> entities = world.getLoadedEntities();
 		Iterator<Object> entityIterator = entities.iterator();
 
@@ -608,10 +1478,38 @@ public class SimWorld {
 			output[index++] = new Entity(x, y, z, width, height, vx, vy, vz, isDead, id, uuid);
 		}
 
+		metrics.lap(TickMetrics.Phase.ENTITY_OBJECTS, start);
 		return output;
 	}
 
 	public long getWorldTime() {
 		return world.getWorldTime();
 	}
+
+	/**
+	 * How long ticks and their phases took since the world was made or this was last cleared. Only to be used on the
+	 * thread that ticks, see {@link TickMetrics#copy()}.
+	 */
+	public TickMetrics getMetrics() {
+		return metrics;
+	}
+
+	public int getPendingTickCount() {
+		return world.getPendingTickListEntries().size();
+	}
+
+	public int getEntityCount() {
+		return world.getLoadedEntities().size();
+	}
+
+	public int getTickableTileEntityCount() {
+		return world.getTickableTileEntities().size();
+	}
+
+	/**
+	 * What Minecraft's profiler measured over the last ticks. Like {@link #getMetrics()}, only for the thread that ticks.
+	 */
+	public ProfilerWindow getProfilerWindow() {
+		return profilerWindow;
+	}
 }
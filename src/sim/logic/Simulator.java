@@ -51,6 +51,9 @@ public class Simulator {
 
 		new RBootstrap(linker).register();
 
+		// Now that the blocks are registered, they can be mirrored
+		rBlock.setRegistry(new BlockRegistry(rBlock));
+
 		rNextTickListEntry = new RNextTickListEntry(linker);
 		
 		Log.i("Done loading");
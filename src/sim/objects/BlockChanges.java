@@ -0,0 +1,66 @@
+package sim.objects;
+
+/**
+ * The blocks that changed in a world since the last time that was asked, with what they are now. When too much
+ * changed or it isn't known what did, it's a copy of every block instead.
+ *
+ * Positions are schematic indices, (y * length + z) * width + x. Since it holds the current blocks rather than what
+ * they changed from, applying it more than once or on top of a newer copy does no harm.
+ */
+public class BlockChanges {
+
+    private final char[][][] blocks;
+
+    private final int[] positions;
+    private final char[] values;
+
+    /**
+     * Every block, as [x][y][z].
+     */
+    public BlockChanges(char[][][] blocks) {
+        this.blocks = blocks;
+
+        positions = null;
+        values = null;
+    }
+
+    public BlockChanges(int[] positions, char[] values) {
+        this.positions = positions;
+        this.values = values;
+
+        blocks = null;
+    }
+
+    /**
+     * Whether this is a copy of every block, see {@link #getBlocks()}.
+     */
+    public boolean isComplete() {
+        return blocks != null;
+    }
+
+    /**
+     * @return null if only some blocks are in here.
+     */
+    public char[][][] getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return null if this is a copy of every block.
+     */
+    public int[] getPositions() {
+        return positions;
+    }
+
+    public int getCount() {
+        return positions == null ? -1 : positions.length;
+    }
+
+    public int getPosition(int i) {
+        return positions[i];
+    }
+
+    public char getBlock(int i) {
+        return values[i];
+    }
+}
@@ -0,0 +1,128 @@
+package sim.objects;
+
+import java.util.Arrays;
+
+/**
+ * Counts durations in buckets that grow with the value, like HdrHistogram does: every power of two is split in the same
+ * amount of buckets, so a value is known to within about 3%, whether it's a few µs or a few seconds. Recording is an
+ * array increment, no objects are made.
+ *
+ * Not thread safe, it's recorded on the simulation thread and copied there for anyone else that wants to look.
+ */
+public class Histogram {
+
+	// Buckets per power of two
+	private static final int SUB_BITS = 5;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	// Enough for any positive long
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+	private final long[] counts;
+
+	private long count, total, max, last;
+
+	public Histogram() {
+		counts = new long[BUCKETS];
+	}
+
+	private Histogram(Histogram other) {
+		counts = other.counts.clone();
+		count = other.count;
+		total = other.total;
+		max = other.max;
+		last = other.last;
+	}
+
+	public void record(long value) {
+
+		if (value < 0)
+			value = 0;
+
+		counts[indexOf(value)]++;
+		count++;
+		total += value;
+		last = value;
+
+		if (value > max)
+			max = value;
+	}
+
+	public void clear() {
+		Arrays.fill(counts, 0);
+		count = total = max = last = 0;
+	}
+
+	public Histogram copy() {
+		return new Histogram(this);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * The value that was recorded last, 0 if there is none.
+	 */
+	public long getLast() {
+		return last;
+	}
+
+	public long getMean() {
+		return count == 0 ? 0 : total / count;
+	}
+
+	/**
+	 * The value that the given percentage of the recorded values is at or below, as the middle of its bucket.
+	 * @param percentile From 0 to 100.
+	 */
+	public long getPercentile(double percentile) {
+
+		if (count == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+
+			if (seen >= rank)
+				return Math.min(max, lowestOf(i) + (highestOf(i) - lowestOf(i)) / 2);
+		}
+
+		return max;
+	}
+
+	// Values below 2 * SUB_COUNT get a bucket each, above that each power of two gets SUB_COUNT of them
+	private static int indexOf(long value) {
+
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+		return shift * SUB_COUNT + (int) (value >>> shift);
+	}
+
+	private static long lowestOf(int index) {
+
+		if (index < 2 * SUB_COUNT)
+			return index;
+
+		int shift = index / SUB_COUNT - 1;
+		return (long) (index % SUB_COUNT + SUB_COUNT) << shift;
+	}
+
+	private static long highestOf(int index) {
+
+		if (index < 2 * SUB_COUNT)
+			return index;
+
+		return lowestOf(index) + (1L << (index / SUB_COUNT - 1)) - 1;
+	}
+}
@@ -0,0 +1,122 @@
+package sim.objects;
+
+import java.util.*;
+
+/**
+ * What Minecraft's profiler measured over the last so many ticks. Every sample is what the sections took since the one
+ * before, the oldest samples fall out once there are more ticks than fit.
+ *
+ * Sections are nested, "ticking" includes "ticking.something". Shares are of all top level sections together.
+ */
+public class ProfilerWindow {
+
+	private final int capacity;
+
+	private final ArrayDeque<Sample> samples;
+	private final HashMap<String, Long> totals;
+
+	private int ticks;
+
+	/**
+	 * @param capacity How many ticks to keep.
+	 */
+	public ProfilerWindow(int capacity) {
+		this.capacity = capacity;
+
+		samples = new ArrayDeque<>();
+		totals = new HashMap<>();
+	}
+
+	/**
+	 * @param sections The ns every section took since the last sample, this is kept as is.
+	 * @param ticks How many ticks that was.
+	 */
+	public void add(Map<String, Long> sections, int ticks) {
+
+		samples.addLast(new Sample(sections, ticks));
+		this.ticks += ticks;
+		addTotals(sections, 1);
+
+		while (this.ticks > capacity && samples.size() > 1) {
+			Sample oldest = samples.removeFirst();
+			this.ticks -= oldest.ticks;
+			addTotals(oldest.sections, -1);
+		}
+	}
+
+	private void addTotals(Map<String, Long> sections, int sign) {
+
+		for (Map.Entry<String, Long> section : sections.entrySet()) {
+			long total = totals.getOrDefault(section.getKey(), 0L) + sign * section.getValue();
+
+			if (total == 0 && sign < 0)
+				totals.remove(section.getKey());
+			else
+				totals.put(section.getKey(), total);
+		}
+	}
+
+	public void clear() {
+		samples.clear();
+		totals.clear();
+		ticks = 0;
+	}
+
+	/**
+	 * How many ticks the window spans now.
+	 */
+	public int getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * The sections that took the most time in the window, the most first.
+	 */
+	public List<Section> getHottest(int count) {
+
+		if (ticks == 0)
+			return Collections.emptyList();
+
+		long topLevel = 0;
+		for (Map.Entry<String, Long> section : totals.entrySet())
+			if (section.getKey().indexOf('.') < 0)
+				topLevel += section.getValue();
+
+		List<Map.Entry<String, Long>> sorted = new ArrayList<>(totals.entrySet());
+		sorted.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+		List<Section> hottest = new ArrayList<>(Math.min(count, sorted.size()));
+
+		for (Map.Entry<String, Long> section : sorted.subList(0, Math.min(count, sorted.size())))
+			hottest.add(new Section(section.getKey(), section.getValue() / ticks,
+					topLevel == 0 ? 0 : (double) section.getValue() / topLevel));
+
+		return hottest;
+	}
+
+	public static class Section {
+
+		public final String name;
+		public final long nanosPerTick;
+
+		// Of all top level sections together, from 0 to 1
+		public final double share;
+
+		Section(String name, long nanosPerTick, double share) {
+			this.name = name;
+			this.nanosPerTick = nanosPerTick;
+			this.share = share;
+		}
+	}
+
+	private static class Sample {
+
+		private final Map<String, Long> sections;
+		private final int ticks;
+
+		Sample(Map<String, Long> sections, int ticks) {
+			this.sections = sections;
+			this.ticks = ticks;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package sim.objects;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The difference between two consecutive {@link SchematicState}s. Both the old and the new values are kept, so a delta
+ * can be applied in either direction: forward to go from the older to the newer state, backward to undo it.
+ */
+public class SchematicDelta {
+
+    // Schematic indices (y * length + z) * width + x of every changed block, with its values on both sides
+    private final int[] blockIndices;
+    private final byte[] idsBefore, dataBefore, idsAfter, dataAfter;
+
+    private final RecordChanges tileEntities, entities, tileTicks;
+
+    SchematicDelta(int[] blockIndices, byte[] idsBefore, byte[] dataBefore, byte[] idsAfter, byte[] dataAfter,
+                   RecordChanges tileEntities, RecordChanges entities, RecordChanges tileTicks) {
+
+        this.blockIndices = blockIndices;
+        this.idsBefore = idsBefore;
+        this.dataBefore = dataBefore;
+        this.idsAfter = idsAfter;
+        this.dataAfter = dataAfter;
+        this.tileEntities = tileEntities;
+        this.entities = entities;
+        this.tileTicks = tileTicks;
+    }
+
+    public int getBlockCount() {
+        return blockIndices.length;
+    }
+
+    public int getBlockIndex(int i) {
+        return blockIndices[i];
+    }
+
+    public byte getId(int i, boolean forward) {
+        return forward ? idsAfter[i] : idsBefore[i];
+    }
+
+    public byte getData(int i, boolean forward) {
+        return forward ? dataAfter[i] : dataBefore[i];
+    }
+
+    public RecordChanges getTileEntities() {
+        return tileEntities;
+    }
+
+    public RecordChanges getEntities() {
+        return entities;
+    }
+
+    public RecordChanges getTileTicks() {
+        return tileTicks;
+    }
+
+    public boolean isEmpty() {
+        return blockIndices.length == 0 && tileEntities.isEmpty() && entities.isEmpty() && tileTicks.isEmpty();
+    }
+
+    /**
+     * Combines two consecutive deltas into one that goes straight from the first one's old state to the second one's
+     * new state. Blocks and records that end up where they started are left out.
+     */
+    public static SchematicDelta merge(SchematicDelta first, SchematicDelta second) {
+
+        int[] indices = new int[first.blockIndices.length + second.blockIndices.length];
+        byte[] idsBefore = new byte[indices.length];
+        byte[] dataBefore = new byte[indices.length];
+        byte[] idsAfter = new byte[indices.length];
+        byte[] dataAfter = new byte[indices.length];
+
+        // Both index arrays are sorted, so this is a simple merge walk
+        int i = 0, j = 0, count = 0;
+        while (i < first.blockIndices.length || j < second.blockIndices.length) {
+
+            int index;
+            byte idBefore, dBefore, idAfter, dAfter;
+
+            if (j == second.blockIndices.length || i < first.blockIndices.length && first.blockIndices[i] < second.blockIndices[j]) {
+                index = first.blockIndices[i];
+                idBefore = first.idsBefore[i];
+                dBefore = first.dataBefore[i];
+                idAfter = first.idsAfter[i];
+                dAfter = first.dataAfter[i];
+                i++;
+
+            } else if (i == first.blockIndices.length || second.blockIndices[j] < first.blockIndices[i]) {
+                index = second.blockIndices[j];
+                idBefore = second.idsBefore[j];
+                dBefore = second.dataBefore[j];
+                idAfter = second.idsAfter[j];
+                dAfter = second.dataAfter[j];
+                j++;
+
+            } else {
+                index = first.blockIndices[i];
+                idBefore = first.idsBefore[i];
+                dBefore = first.dataBefore[i];
+                idAfter = second.idsAfter[j];
+                dAfter = second.dataAfter[j];
+                i++;
+                j++;
+            }
+
+            if (idBefore == idAfter && dBefore == dAfter)
+                continue;
+
+            indices[count] = index;
+            idsBefore[count] = idBefore;
+            dataBefore[count] = dBefore;
+            idsAfter[count] = idAfter;
+            dataAfter[count] = dAfter;
+            count++;
+        }
+
+        return new SchematicDelta(Arrays.copyOf(indices, count), Arrays.copyOf(idsBefore, count),
+                Arrays.copyOf(dataBefore, count), Arrays.copyOf(idsAfter, count), Arrays.copyOf(dataAfter, count),
+                RecordChanges.merge(first.tileEntities, second.tileEntities),
+                RecordChanges.merge(first.entities, second.entities),
+                RecordChanges.merge(first.tileTicks, second.tileTicks));
+    }
+
+    /**
+     * Writes this delta out in a compact form that {@link #read(DataInputStream)} understands.
+     */
+    public void write(DataOutputStream out) throws IOException {
+
+        out.writeInt(blockIndices.length);
+
+        for (int i = 0; i < blockIndices.length; i++)
+            out.writeInt(blockIndices[i]);
+
+        out.write(idsBefore);
+        out.write(dataBefore);
+        out.write(idsAfter);
+        out.write(dataAfter);
+
+        tileEntities.write(out);
+        entities.write(out);
+        tileTicks.write(out);
+    }
+
+    public static SchematicDelta read(DataInputStream in) throws IOException {
+
+        int[] indices = new int[in.readInt()];
+
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = in.readInt();
+
+        byte[] idsBefore = new byte[indices.length];
+        byte[] dataBefore = new byte[indices.length];
+        byte[] idsAfter = new byte[indices.length];
+        byte[] dataAfter = new byte[indices.length];
+        in.readFully(idsBefore);
+        in.readFully(dataBefore);
+        in.readFully(idsAfter);
+        in.readFully(dataAfter);
+
+        return new SchematicDelta(indices, idsBefore, dataBefore, idsAfter, dataAfter,
+                RecordChanges.read(in), RecordChanges.read(in), RecordChanges.read(in));
+    }
+
+    /**
+     * Rough amount of heap this delta keeps alive, arrays and record payloads included.
+     */
+    public long getByteSize() {
+        return 64 + blockIndices.length * 8L + tileEntities.getByteSize() + entities.getByteSize() + tileTicks.getByteSize();
+    }
+
+    /**
+     * The records of one list (TileEntities, Entities or TileTicks) that were removed, added or changed. A changed
+     * record shows up in both maps under the same key.
+     */
+    public static class RecordChanges {
+
+        // Keyed record payloads as they were before and as they are after this delta
+        private final LinkedHashMap<String, byte[]> before, after;
+
+        RecordChanges() {
+            before = new LinkedHashMap<>();
+            after = new LinkedHashMap<>();
+        }
+
+        void putBefore(String key, byte[] payload) {
+            before.put(key, payload);
+        }
+
+        void putAfter(String key, byte[] payload) {
+            after.put(key, payload);
+        }
+
+        /**
+         * @param forward true for the records that this delta removes, false for the ones that undoing it removes.
+         */
+        public Map<String, byte[]> getRemoved(boolean forward) {
+            return forward ? before : after;
+        }
+
+        /**
+         * @param forward true for the records that this delta adds, false for the ones that undoing it adds.
+         */
+        public Map<String, byte[]> getAdded(boolean forward) {
+            return forward ? after : before;
+        }
+
+        public boolean isEmpty() {
+            return before.isEmpty() && after.isEmpty();
+        }
+
+        static RecordChanges merge(RecordChanges first, RecordChanges second) {
+
+            RecordChanges merged = new RecordChanges();
+
+            Set<String> keys = new LinkedHashSet<>();
+            keys.addAll(first.before.keySet());
+            keys.addAll(first.after.keySet());
+            keys.addAll(second.before.keySet());
+            keys.addAll(second.after.keySet());
+
+            for (String key : keys) {
+
+                // A key one delta doesn't mention wasn't changed by it, so the other delta knows its value there
+                boolean inFirst = first.before.containsKey(key) || first.after.containsKey(key);
+                boolean inSecond = second.before.containsKey(key) || second.after.containsKey(key);
+
+                byte[] oldest = inFirst ? first.before.get(key) : second.before.get(key);
+                byte[] newest = inSecond ? second.after.get(key) : first.after.get(key);
+
+                if (oldest == null ? newest == null : Arrays.equals(oldest, newest))
+                    continue;
+
+                if (oldest != null)
+                    merged.putBefore(key, oldest);
+
+                if (newest != null)
+                    merged.putAfter(key, newest);
+            }
+
+            return merged;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            SchematicState.writeRecords(out, before);
+            SchematicState.writeRecords(out, after);
+        }
+
+        static RecordChanges read(DataInputStream in) throws IOException {
+
+            RecordChanges changes = new RecordChanges();
+            changes.before.putAll(SchematicState.readRecords(in));
+            changes.after.putAll(SchematicState.readRecords(in));
+
+            return changes;
+        }
+
+        long getByteSize() {
+            long size = 32;
+
+            for (Map.Entry<String, byte[]> entry : before.entrySet())
+                size += 48 + entry.getKey().length() * 2 + entry.getValue().length;
+
+            for (Map.Entry<String, byte[]> entry : after.entrySet())
+                size += 48 + entry.getKey().length() * 2 + entry.getValue().length;
+
+            return size;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package sim.objects;
+
+import utils.NBT;
+import utils.Tag;
+import utils.Tag.Type;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, mutable copy of a schematic. Blocks are kept as the schematic's own id and data arrays, every tile entity,
+ * entity and tile tick as its serialized NBT payload under a key that identifies it between ticks.
+ * This is what the time line stores as keyframes, and what deltas are taken from and applied to.
+ */
+public class SchematicState {
+
+    private final short width, height, length;
+    private final byte[] ids, data;
+
+    private final LinkedHashMap<String, byte[]> tileEntities, entities, tileTicks;
+
+    private SchematicState(short width, short height, short length, byte[] ids, byte[] data,
+                           LinkedHashMap<String, byte[]> tileEntities, LinkedHashMap<String, byte[]> entities,
+                           LinkedHashMap<String, byte[]> tileTicks) {
+
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.ids = ids;
+        this.data = data;
+        this.tileEntities = tileEntities;
+        this.entities = entities;
+        this.tileTicks = tileTicks;
+    }
+
+    /**
+     * Copies everything out of a schematic tag, the tag itself is left alone.
+     */
+    public static SchematicState fromTag(Tag schematic) {
+
+        short width = (short) schematic.getChild("Width").getValue();
+        short height = (short) schematic.getChild("Height").getValue();
+        short length = (short) schematic.getChild("Length").getValue();
+
+        byte[] ids = ((byte[]) schematic.getChild("Blocks").getValue()).clone();
+        byte[] data = ((byte[]) schematic.getChild("Data").getValue()).clone();
+
+        LinkedHashMap<String, byte[]> tileEntities = new LinkedHashMap<>();
+        for (Tag tileEntity : getRecords(schematic, "TileEntities"))
+            tileEntities.put(getPositionKey(tileEntity), toPayload(tileEntity));
+
+        LinkedHashMap<String, byte[]> entities = new LinkedHashMap<>();
+        Tag[] entityTags = getRecords(schematic, "Entities");
+        for (int i = 0; i < entityTags.length; i++) {
+            Tag uuid = entityTags[i].getChild("UUID");
+
+            // An entity without UUID can't be followed between ticks, it'll just show up as removed and added
+            entities.put(uuid != null ? (String) uuid.getValue() : "#" + i, toPayload(entityTags[i]));
+        }
+
+        LinkedHashMap<String, byte[]> tileTicks = new LinkedHashMap<>();
+        for (Tag tileTick : getRecords(schematic, "TileTicks"))
+            tileTicks.put(getPositionKey(tileTick) + ',' + tileTick.getChild("i").getValue(), toPayload(tileTick));
+
+        return new SchematicState(width, height, length, ids, data, tileEntities, entities, tileTicks);
+    }
+
+    /**
+     * Builds a new schematic tag in the same layout as {@link sim.logic.SimWorld#getSchematic()}.
+     */
+    public Tag toTag() {
+
+        List<Tag> tags = new ArrayList<>();
+
+        tags.add(new Tag(Type.TAG_Short, "Height", height));
+        tags.add(new Tag(Type.TAG_Short, "Length", length));
+        tags.add(new Tag(Type.TAG_Short, "Width", width));
+        tags.add(new Tag(Type.TAG_String, "Materials", "Alpha"));
+        tags.add(new Tag(Type.TAG_Byte_Array, "Data", data.clone()));
+        tags.add(new Tag(Type.TAG_Byte_Array, "Blocks", ids.clone()));
+
+        // Empty lists are left out, like the simulator does
+        addRecords(tags, "TileEntities", tileEntities);
+        addRecords(tags, "Entities", entities);
+        addRecords(tags, "TileTicks", tileTicks);
+
+        tags.add(new Tag(Type.TAG_End, "", null));
+
+        return new Tag(Type.TAG_Compound, "Schematic", tags.toArray(new Tag[tags.size()]));
+    }
+
+    public SchematicState copy() {
+
+        return new SchematicState(width, height, length, ids.clone(), data.clone(),
+                new LinkedHashMap<>(tileEntities), new LinkedHashMap<>(entities), new LinkedHashMap<>(tileTicks));
+    }
+
+    /**
+     * Computes what changed to get from this state to another one of the same size.
+     */
+    public SchematicDelta diff(SchematicState to) {
+
+        if (to.width != width || to.height != height || to.length != length)
+            throw new IllegalArgumentException("Can't take a delta between schematics of different sizes");
+
+        int count = 0;
+        for (int i = 0; i < ids.length; i++)
+            if (ids[i] != to.ids[i] || data[i] != to.data[i])
+                count++;
+
+        int[] indices = new int[count];
+        byte[] idsBefore = new byte[count];
+        byte[] dataBefore = new byte[count];
+        byte[] idsAfter = new byte[count];
+        byte[] dataAfter = new byte[count];
+
+        for (int i = 0, j = 0; j < count; i++)
+            if (ids[i] != to.ids[i] || data[i] != to.data[i]) {
+                indices[j] = i;
+                idsBefore[j] = ids[i];
+                dataBefore[j] = data[i];
+                idsAfter[j] = to.ids[i];
+                dataAfter[j] = to.data[i];
+                j++;
+            }
+
+        return new SchematicDelta(indices, idsBefore, dataBefore, idsAfter, dataAfter,
+                diffRecords(tileEntities, to.tileEntities),
+                diffRecords(entities, to.entities),
+                diffRecords(tileTicks, to.tileTicks));
+    }
+
+    /**
+     * Like {@link #diff(SchematicState)}, but only looks at some of the blocks. The records are all compared.
+     * @param candidates Sorted schematic indices of the blocks that may differ, the others are taken to be the same.
+     */
+    public SchematicDelta diff(SchematicState to, int[] candidates) {
+
+        if (to.width != width || to.height != height || to.length != length)
+            throw new IllegalArgumentException("Can't take a delta between schematics of different sizes");
+
+        int count = 0;
+        for (int i : candidates)
+            if (ids[i] != to.ids[i] || data[i] != to.data[i])
+                count++;
+
+        int[] indices = new int[count];
+        byte[] idsBefore = new byte[count];
+        byte[] dataBefore = new byte[count];
+        byte[] idsAfter = new byte[count];
+        byte[] dataAfter = new byte[count];
+
+        int j = 0;
+        for (int i : candidates)
+            if (ids[i] != to.ids[i] || data[i] != to.data[i]) {
+                indices[j] = i;
+                idsBefore[j] = ids[i];
+                dataBefore[j] = data[i];
+                idsAfter[j] = to.ids[i];
+                dataAfter[j] = to.data[i];
+                j++;
+            }
+
+        return new SchematicDelta(indices, idsBefore, dataBefore, idsAfter, dataAfter,
+                diffRecords(tileEntities, to.tileEntities),
+                diffRecords(entities, to.entities),
+                diffRecords(tileTicks, to.tileTicks));
+    }
+
+    /**
+     * Applies a delta to this state in place.
+     * @param forward true to go from the delta's old state to its new one, false to undo it.
+     */
+    public void apply(SchematicDelta delta, boolean forward) {
+
+        for (int i = 0; i < delta.getBlockCount(); i++) {
+            int index = delta.getBlockIndex(i);
+            ids[index] = delta.getId(i, forward);
+            data[index] = delta.getData(i, forward);
+        }
+
+        applyRecords(tileEntities, delta.getTileEntities(), forward);
+        applyRecords(entities, delta.getEntities(), forward);
+        applyRecords(tileTicks, delta.getTileTicks(), forward);
+    }
+
+    /**
+     * Rough amount of heap this state keeps alive.
+     */
+    public long getByteSize() {
+        return 64 + ids.length * 2L + getByteSize(tileEntities) + getByteSize(entities) + getByteSize(tileTicks);
+    }
+
+    /**
+     * Writes this state out in a compact form that {@link #read(DataInputStream)} understands.
+     */
+    public void write(DataOutputStream out) throws IOException {
+
+        out.writeShort(width);
+        out.writeShort(height);
+        out.writeShort(length);
+        out.write(ids);
+        out.write(data);
+
+        writeRecords(out, tileEntities);
+        writeRecords(out, entities);
+        writeRecords(out, tileTicks);
+    }
+
+    public static SchematicState read(DataInputStream in) throws IOException {
+
+        short width = in.readShort();
+        short height = in.readShort();
+        short length = in.readShort();
+
+        byte[] ids = new byte[width * height * length];
+        byte[] data = new byte[ids.length];
+        in.readFully(ids);
+        in.readFully(data);
+
+        return new SchematicState(width, height, length, ids, data, readRecords(in), readRecords(in), readRecords(in));
+    }
+
+    public short getWidth() {
+        return width;
+    }
+
+    public short getHeight() {
+        return height;
+    }
+
+    public short getLength() {
+        return length;
+    }
+
+    private static SchematicDelta.RecordChanges diffRecords(Map<String, byte[]> from, Map<String, byte[]> to) {
+
+        SchematicDelta.RecordChanges changes = new SchematicDelta.RecordChanges();
+
+        for (Map.Entry<String, byte[]> entry : from.entrySet()) {
+            byte[] newPayload = to.get(entry.getKey());
+
+            if (newPayload == null)
+                changes.putBefore(entry.getKey(), entry.getValue());
+
+            else if (!Arrays.equals(entry.getValue(), newPayload)) {
+                changes.putBefore(entry.getKey(), entry.getValue());
+                changes.putAfter(entry.getKey(), newPayload);
+            }
+        }
+
+        for (Map.Entry<String, byte[]> entry : to.entrySet())
+            if (!from.containsKey(entry.getKey()))
+                changes.putAfter(entry.getKey(), entry.getValue());
+
+        return changes;
+    }
+
+    private static void applyRecords(Map<String, byte[]> records, SchematicDelta.RecordChanges changes, boolean forward) {
+
+        Map<String, byte[]> added = changes.getAdded(forward);
+
+        // Changed records are overwritten in place so they keep their position in the list
+        for (String key : changes.getRemoved(forward).keySet())
+            if (!added.containsKey(key))
+                records.remove(key);
+
+        records.putAll(added);
+    }
+
+    private static long getByteSize(Map<String, byte[]> records) {
+
+        long size = 32;
+
+        for (Map.Entry<String, byte[]> entry : records.entrySet())
+            size += 48 + entry.getKey().length() * 2 + entry.getValue().length;
+
+        return size;
+    }
+
+    static void writeRecords(DataOutputStream out, Map<String, byte[]> records) throws IOException {
+
+        out.writeInt(records.size());
+
+        for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+    }
+
+    static LinkedHashMap<String, byte[]> readRecords(DataInputStream in) throws IOException {
+
+        int size = in.readInt();
+        LinkedHashMap<String, byte[]> records = new LinkedHashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            records.put(key, payload);
+        }
+
+        return records;
+    }
+
+    private static void addRecords(List<Tag> tags, String name, Map<String, byte[]> records) {
+
+        if (records.isEmpty())
+            return;
+
+        Tag[] payload = new Tag[records.size()];
+        Iterator<byte[]> i = records.values().iterator();
+
+        for (int j = 0; j < payload.length; j++)
+            payload[j] = fromPayload(i.next());
+
+        tags.add(new Tag(Type.TAG_List, name, payload));
+    }
+
+    private static Tag[] getRecords(Tag schematic, String name) {
+
+        Tag list = schematic.getChild(name);
+
+        if (list == null || !(list.getValue() instanceof Tag[]))
+            return new Tag[0];
+
+        return (Tag[]) list.getValue();
+    }
+
+    /**
+     * The key a tile entity or tile tick is known by, tile ticks add their block name to it.
+     */
+    public static String getPositionKey(Tag record) {
+        return record.getChild("x").getValue() + "," + record.getChild("y").getValue() + "," + record.getChild("z").getValue();
+    }
+
+    static byte[] toPayload(Tag record) {
+
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            record.writePayload(new DataOutputStream(bos));
+            return bos.toByteArray();
+
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+    }
+
+    /**
+     * Turns a record of a {@link SchematicDelta} back into a compound tag.
+     */
+    public static Tag fromPayload(byte[] payload) {
+
+        try {
+            return Tag.createCompountTag(new DataInputStream(new ByteArrayInputStream(payload)));
+
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt record in schematic state", e);
+        }
+    }
+
+    /**
+     * Like {@link #fromPayload(byte[])}, for records of which the fields are only read.
+     */
+    public static NBT readPayload(byte[] payload) {
+
+        try {
+            return NBT.read(new DataInputStream(new ByteArrayInputStream(payload)), Type.TAG_Compound, null);
+
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt record in schematic state", e);
+        }
+    }
+}
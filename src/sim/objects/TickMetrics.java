@@ -0,0 +1,97 @@
+package sim.objects;
+
+import java.io.PrintWriter;
+
+/**
+ * How long the parts of a tick took, and the work around it that turns the world into something to show or save. One
+ * histogram of nanoseconds per phase, per world.
+ */
+public class TickMetrics {
+
+	public enum Phase {
+		TICK("Whole tick"),
+		TICK_UPDATES("Tile ticks"),
+		BLOCK_EVENTS("Block events"),
+		ENTITIES("Entities"),
+		TILE_ENTITIES("Tile entities"),
+		SCHEMATIC("Schematic"),
+		BLOCKS("Blocks for the view"),
+		ENTITY_OBJECTS("Entities for the view"),
+		REGION("Region edits");
+
+		private final String label;
+
+		Phase(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private final Histogram[] histograms;
+
+	public TickMetrics() {
+
+		histograms = new Histogram[Phase.values().length];
+
+		for (int i = 0; i < histograms.length; i++)
+			histograms[i] = new Histogram();
+	}
+
+	private TickMetrics(TickMetrics other) {
+
+		histograms = new Histogram[other.histograms.length];
+
+		for (int i = 0; i < histograms.length; i++)
+			histograms[i] = other.histograms[i].copy();
+	}
+
+	public void record(Phase phase, long nanos) {
+		histograms[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Records the time since the given one, for timing phases one after the other.
+	 * @param since When the phase started, from System.nanoTime().
+	 * @return Now, which is when the next phase starts.
+	 */
+	public long lap(Phase phase, long since) {
+
+		long now = System.nanoTime();
+		histograms[phase.ordinal()].record(now - since);
+
+		return now;
+	}
+
+	public Histogram get(Phase phase) {
+		return histograms[phase.ordinal()];
+	}
+
+	public void clear() {
+		for (Histogram histogram : histograms)
+			histogram.clear();
+	}
+
+	public TickMetrics copy() {
+		return new TickMetrics(this);
+	}
+
+	/**
+	 * A line per phase, the times are in µs.
+	 */
+	public void writeCsv(PrintWriter writer) {
+
+		writer.println("phase,count,mean,p50,p90,p99,max");
+
+		for (Phase phase : Phase.values()) {
+			Histogram histogram = get(phase);
+
+			writer.println(phase.name().toLowerCase() + "," + histogram.getCount() + ","
+					+ histogram.getMean() / 1000 + "," + histogram.getPercentile(50) / 1000 + ","
+					+ histogram.getPercentile(90) / 1000 + "," + histogram.getPercentile(99) / 1000 + ","
+					+ histogram.getMax() / 1000);
+		}
+	}
+}
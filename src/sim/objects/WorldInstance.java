@@ -4,6 +4,7 @@ import sim.logic.RIntHashMap;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
@@ -22,6 +23,9 @@ public class WorldInstance {
     // This is a 3D array of ExtendedBlockStorage's data array, directly accessing the array containing the world
     private char[][][] worldData[];
 
+    // Sections whose blocks may have changed since the last clean, by getSectionIndex
+    private BitSet dirtySections;
+
 	 // TODO make this so time is only updated when time changes, doesn't need to setTime when ticking
 	private boolean doTimeUpdate;
 	
@@ -138,11 +142,18 @@ public class WorldInstance {
 	}
 
     public void setSize(int xSize, int ySize, int zSize) {
+
+        // The section arrays of a world this size are about to be linked again
+        if (worldData != null && xSize == this.xSize && ySize == this.ySize && zSize == this.zSize)
+            return;
+
         this.xSize = xSize;
         this.ySize = ySize;
         this.zSize = zSize;
 
         worldData = new char[(xSize >> 4) + 1][(ySize >> 4) + 1][(zSize >> 4) + 1][4096]; // 4096 = 16³
+        dirtySections = new BitSet();
+        markAllSectionsDirty();
     }
 
 	public int getxSize() {
@@ -159,10 +170,47 @@ public class WorldInstance {
 
     public void setWorldData(int x, int y, int z, char[] array) {
         worldData[x][y][z] = array;
+        dirtySections.set(getSectionIndex(x, y, z));
     }
 
     public void setBlockRaw(int x, int y, int z, char block) {
         worldData[x >> 4][y >> 4][z >> 4][getCoordinateIndex(x & 0xf, y & 0xf, z & 0xf)] = block;
+        dirtySections.set(getSectionIndex(x >> 4, y >> 4, z >> 4));
+    }
+
+    /**
+     * For blocks Minecraft changed itself, it writes into the sections without coming by here.
+     */
+    public void markDirty(int x, int y, int z) {
+
+        if (x < 0 || y < 0 || z < 0 || x >= xSize || y >= ySize || z >= zSize)
+            return;
+
+        dirtySections.set(getSectionIndex(x >> 4, y >> 4, z >> 4));
+    }
+
+    public void markAllSectionsDirty() {
+        dirtySections.set(0, worldData.length * worldData[0].length * worldData[0][0].length);
+    }
+
+    /**
+     * Where the sections are in {@link #getDirtySections()}.
+     * @param x The section's x, a block's x >> 4. The same goes for y and z.
+     */
+    public int getSectionIndex(int x, int y, int z) {
+        return (x * worldData[0].length + y) * worldData[0][0].length + z;
+    }
+
+    /**
+     * The sections changed since the last {@link #clearDirtySections()}, by {@link #getSectionIndex(int, int, int)}.
+     * This is the set itself, not a copy.
+     */
+    public BitSet getDirtySections() {
+        return dirtySections;
+    }
+
+    public void clearDirtySections() {
+        dirtySections.clear();
     }
 
     public char getBlockRaw(int x, int y, int z) {
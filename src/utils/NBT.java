@@ -0,0 +1,533 @@
+package utils;
+
+import utils.Tag.Type;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compact NBT tree. Compounds keep an index of their children by name, so getting a field is a lookup and not a
+ * search, and numbers are kept as they are instead of boxed. Lists and compounds are put together with a
+ * {@link Builder}, reading included, so big trees are read in one go without copying arrays around.
+ *
+ * {@link Tag} is still what most of the code works with, {@link #fromTag(Tag)} and {@link #toTag()} go between them.
+ */
+public final class NBT {
+
+    private static final NBT[] NO_CHILDREN = new NBT[0];
+
+    private final Type type;
+    private final String name;
+
+    // Every number, floats and doubles by their bits
+    private final long number;
+
+    // A byte[], int[] or String
+    private final Object value;
+
+    // Only for lists and compounds, the index only for compounds
+    private final Type listType;
+    private final NBT[] children;
+    private final HashMap<String, NBT> index;
+
+    private NBT(Type type, String name, long number, Object value, Type listType, NBT[] children) {
+        this.type = type;
+        this.name = name;
+        this.number = number;
+        this.value = value;
+        this.listType = listType;
+        this.children = children;
+
+        if (type == Type.TAG_Compound) {
+            index = new HashMap<>(children.length * 2);
+
+            // Like the search in Tag, the first one wins if a name is used twice
+            for (NBT child : children)
+                index.putIfAbsent(child.getName(), child);
+
+        } else
+            index = null;
+    }
+
+    private static NBT ofNumber(Type type, String name, long number) {
+        return new NBT(type, name, number, null, null, NO_CHILDREN);
+    }
+
+    private static NBT ofValue(Type type, String name, Object value) {
+
+        if (value == null)
+            throw new IllegalArgumentException("A " + type + " needs a value");
+
+        return new NBT(type, name, 0, value, null, NO_CHILDREN);
+    }
+
+    public static NBT ofByte(String name, byte value) {
+        return ofNumber(Type.TAG_Byte, name, value);
+    }
+
+    public static NBT ofShort(String name, short value) {
+        return ofNumber(Type.TAG_Short, name, value);
+    }
+
+    public static NBT ofInt(String name, int value) {
+        return ofNumber(Type.TAG_Int, name, value);
+    }
+
+    public static NBT ofLong(String name, long value) {
+        return ofNumber(Type.TAG_Long, name, value);
+    }
+
+    public static NBT ofFloat(String name, float value) {
+        return ofNumber(Type.TAG_Float, name, Float.floatToRawIntBits(value));
+    }
+
+    public static NBT ofDouble(String name, double value) {
+        return ofNumber(Type.TAG_Double, name, Double.doubleToRawLongBits(value));
+    }
+
+    public static NBT ofByteArray(String name, byte[] value) {
+        return ofValue(Type.TAG_Byte_Array, name, value);
+    }
+
+    public static NBT ofString(String name, String value) {
+        return ofValue(Type.TAG_String, name, value);
+    }
+
+    public static NBT ofIntArray(String name, int[] value) {
+        return ofValue(Type.TAG_Int_Array, name, value);
+    }
+
+    public static Builder compound(String name) {
+        return new Builder(Type.TAG_Compound, name, null);
+    }
+
+    /**
+     * @param listType What the elements are, also for when there are none.
+     */
+    public static Builder list(String name, Type listType) {
+        return new Builder(Type.TAG_List, name, listType);
+    }
+
+    /**
+     * Adds children one at a time, the tree is only made once it's complete.
+     */
+    public static class Builder {
+
+        private final Type type;
+        private final String name;
+        private final Type listType;
+
+        private NBT[] children;
+        private int size;
+
+        private Builder(Type type, String name, Type listType) {
+            this.type = type;
+            this.name = name;
+            this.listType = listType;
+
+            children = new NBT[8];
+        }
+
+        public Builder add(NBT child) {
+
+            if (type == Type.TAG_List && child.type != listType)
+                throw new IllegalArgumentException("A list of " + listType + " can't hold a " + child.type);
+
+            if (child.type == Type.TAG_End)
+                throw new IllegalArgumentException("Compounds are ended when they're written, not by a child");
+
+            if (size == children.length)
+                children = Arrays.copyOf(children, size * 2);
+
+            children[size++] = child;
+            return this;
+        }
+
+        public NBT build() {
+            return new NBT(type, name, 0, null, listType, size == 0 ? NO_CHILDREN : Arrays.copyOf(children, size));
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Like {@link Tag#getName()}, an unnamed tag has "" as its name.
+     */
+    public String getName() {
+        return name == null ? "" : name;
+    }
+
+    private long getNumber(Type expected) {
+
+        if (type != expected)
+            throw new IllegalStateException(getName() + " is a " + type + ", not a " + expected);
+
+        return number;
+    }
+
+    private Object getValue(Type expected) {
+
+        if (type != expected)
+            throw new IllegalStateException(getName() + " is a " + type + ", not a " + expected);
+
+        return value;
+    }
+
+    public byte getByte() {
+        return (byte) getNumber(Type.TAG_Byte);
+    }
+
+    public short getShort() {
+        return (short) getNumber(Type.TAG_Short);
+    }
+
+    public int getInt() {
+        return (int) getNumber(Type.TAG_Int);
+    }
+
+    public long getLong() {
+        return getNumber(Type.TAG_Long);
+    }
+
+    public float getFloat() {
+        return Float.intBitsToFloat((int) getNumber(Type.TAG_Float));
+    }
+
+    public double getDouble() {
+        return Double.longBitsToDouble(getNumber(Type.TAG_Double));
+    }
+
+    /**
+     * The array itself, not a copy.
+     */
+    public byte[] getByteArray() {
+        return (byte[]) getValue(Type.TAG_Byte_Array);
+    }
+
+    public String getString() {
+        return (String) getValue(Type.TAG_String);
+    }
+
+    /**
+     * The array itself, not a copy.
+     */
+    public int[] getIntArray() {
+        return (int[]) getValue(Type.TAG_Int_Array);
+    }
+
+    /**
+     * What the elements of a list are.
+     */
+    public Type getListType() {
+        return listType;
+    }
+
+    /**
+     * How many children a list or compound has, 0 for anything else.
+     */
+    public int size() {
+        return children.length;
+    }
+
+    public NBT get(int i) {
+        return children[i];
+    }
+
+    public List<NBT> getChildren() {
+        return Collections.unmodifiableList(Arrays.asList(children));
+    }
+
+    /**
+     * A direct child of a compound, without looking any deeper.
+     * @return null if there is none, or if this isn't a compound.
+     */
+    public NBT get(String name) {
+        return index == null ? null : index.get(name);
+    }
+
+    public boolean has(String name) {
+        return get(name) != null;
+    }
+
+    private NBT getExisting(String name) {
+
+        NBT child = get(name);
+
+        if (child == null)
+            throw new IllegalArgumentException(getName() + " has no " + name);
+
+        return child;
+    }
+
+    public byte getByte(String name) {
+        return getExisting(name).getByte();
+    }
+
+    public short getShort(String name) {
+        return getExisting(name).getShort();
+    }
+
+    public int getInt(String name) {
+        return getExisting(name).getInt();
+    }
+
+    public long getLong(String name) {
+        return getExisting(name).getLong();
+    }
+
+    public String getString(String name) {
+        return getExisting(name).getString();
+    }
+
+    public byte[] getByteArray(String name) {
+        return getExisting(name).getByteArray();
+    }
+
+    /**
+     * Searches the whole tree below this one, the direct children first, then every child's own tree in order. This is
+     * what {@link Tag#findTagByName(String)} is for, {@link #get(String)} is what's usually meant.
+     * @return null if there is none.
+     */
+    public NBT find(String name) {
+
+        NBT child = get(name);
+
+        if (child != null)
+            return child;
+
+        for (NBT nested : children) {
+            NBT found = nested.find(name);
+
+            if (found != null)
+                return found;
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads a whole GZIP compressed NBT file.
+     */
+    public static NBT readFrom(InputStream is) throws IOException {
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new GZIPInputStream(is)))) {
+            Type type = readType(dis);
+
+            if (type == Type.TAG_End)
+                throw new IOException("There's no NBT in here");
+
+            return read(dis, type, dis.readUTF());
+        }
+    }
+
+    /**
+     * Reads a single tag of which the type and name were already read, for reading a stream a piece at a time.
+     */
+    public static NBT read(DataInputStream dis, Type type, String name) throws IOException {
+
+        switch (type) {
+            case TAG_Byte:          return ofNumber(type, name, dis.readByte());
+            case TAG_Short:         return ofNumber(type, name, dis.readShort());
+            case TAG_Int:           return ofNumber(type, name, dis.readInt());
+            case TAG_Long:          return ofNumber(type, name, dis.readLong());
+            case TAG_Float:         return ofNumber(type, name, dis.readInt());
+            case TAG_Double:        return ofNumber(type, name, dis.readLong());
+            case TAG_String:        return ofValue(type, name, dis.readUTF());
+
+            case TAG_Byte_Array: {
+                byte[] bytes = new byte[dis.readInt()];
+                dis.readFully(bytes);
+                return ofValue(type, name, bytes);
+            }
+
+            case TAG_Int_Array: {
+                int[] ints = new int[dis.readInt()];
+                for (int i = 0; i < ints.length; i++)
+                    ints[i] = dis.readInt();
+                return ofValue(type, name, ints);
+            }
+
+            case TAG_List: {
+                Type listType = readType(dis);
+                int length = dis.readInt();
+
+                Builder builder = list(name, listType);
+                for (int i = 0; i < length; i++)
+                    builder.add(read(dis, listType, null));
+
+                return builder.build();
+            }
+
+            case TAG_Compound: {
+                Builder builder = compound(name);
+
+                for (Type childType = readType(dis); childType != Type.TAG_End; childType = readType(dis))
+                    builder.add(read(dis, childType, dis.readUTF()));
+
+                return builder.build();
+            }
+
+            default:
+                throw new IOException("A " + type + " can't be read on its own");
+        }
+    }
+
+    public static Type readType(DataInputStream dis) throws IOException {
+
+        byte type = dis.readByte();
+
+        if (type < 0 || type >= Type.values().length)
+            throw new IOException("Unknown tag type " + type);
+
+        return Type.values()[type];
+    }
+
+    /**
+     * Writes this as a whole GZIP compressed NBT file.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(os)));
+
+        dos.writeByte(type.ordinal());
+        dos.writeUTF(getName());
+        writePayload(dos);
+
+        dos.close();
+    }
+
+    public void writePayload(DataOutputStream dos) throws IOException {
+
+        switch (type) {
+            case TAG_Byte:          dos.writeByte((int) number);    break;
+            case TAG_Short:         dos.writeShort((int) number);   break;
+            case TAG_Int:           dos.writeInt((int) number);     break;
+            case TAG_Long:          dos.writeLong(number);          break;
+            case TAG_Float:         dos.writeInt((int) number);     break;
+            case TAG_Double:        dos.writeLong(number);          break;
+            case TAG_String:        dos.writeUTF((String) value);   break;
+
+            case TAG_Byte_Array: {
+                byte[] bytes = (byte[]) value;
+                dos.writeInt(bytes.length);
+                dos.write(bytes);
+                break;
+            }
+
+            case TAG_Int_Array: {
+                int[] ints = (int[]) value;
+                dos.writeInt(ints.length);
+                for (int i : ints)
+                    dos.writeInt(i);
+                break;
+            }
+
+            case TAG_List:
+                dos.writeByte(listType.ordinal());
+                dos.writeInt(children.length);
+                for (NBT child : children)
+                    child.writePayload(dos);
+                break;
+
+            case TAG_Compound:
+                for (NBT child : children) {
+                    dos.writeByte(child.type.ordinal());
+                    dos.writeUTF(child.getName());
+                    child.writePayload(dos);
+                }
+                dos.writeByte(Type.TAG_End.ordinal());
+        }
+    }
+
+    /**
+     * The TAG_End at the end of a compound is left out, it's written again by {@link #toTag()}.
+     */
+    public static NBT fromTag(Tag tag) {
+
+        String name = tag.getName().isEmpty() ? null : tag.getName();
+        Object value = tag.getValue();
+
+        switch (tag.getType()) {
+            case TAG_Byte:          return ofNumber(Type.TAG_Byte, name, (Byte) value);
+            case TAG_Short:         return ofNumber(Type.TAG_Short, name, (Short) value);
+            case TAG_Int:           return ofNumber(Type.TAG_Int, name, (Integer) value);
+            case TAG_Long:          return ofNumber(Type.TAG_Long, name, (Long) value);
+            case TAG_Float:         return ofFloat(name, (Float) value);
+            case TAG_Double:        return ofDouble(name, (Double) value);
+            case TAG_Byte_Array:
+            case TAG_String:
+            case TAG_Int_Array:     return ofValue(tag.getType(), name, value);
+
+            case TAG_List: {
+                Tag[] elements = (Tag[]) value;
+                Type listType = tag.getListType() != null ? tag.getListType()
+                        : elements.length > 0 ? elements[0].getType() : Type.TAG_End;
+
+                Builder builder = list(name, listType);
+                for (Tag element : elements)
+                    builder.add(fromTag(element));
+
+                return builder.build();
+            }
+
+            case TAG_Compound: {
+                Builder builder = compound(name);
+
+                for (Tag child : (Tag[]) value)
+                    if (child.getType() != Type.TAG_End)
+                        builder.add(fromTag(child));
+
+                return builder.build();
+            }
+
+            default:
+                throw new IllegalArgumentException("A " + tag.getType() + " can't be on its own");
+        }
+    }
+
+    /**
+     * A new Tag tree of this, compounds get their TAG_End back.
+     */
+    public Tag toTag() {
+
+        switch (type) {
+            case TAG_Byte:          return new Tag(type, name, getByte());
+            case TAG_Short:         return new Tag(type, name, getShort());
+            case TAG_Int:           return new Tag(type, name, getInt());
+            case TAG_Long:          return new Tag(type, name, getLong());
+            case TAG_Float:         return new Tag(type, name, getFloat());
+            case TAG_Double:        return new Tag(type, name, getDouble());
+
+            case TAG_List: {
+                if (children.length == 0)
+                    return new Tag(name, listType);
+
+                Tag[] elements = new Tag[children.length];
+                for (int i = 0; i < elements.length; i++)
+                    elements[i] = children[i].toTag();
+
+                return new Tag(type, name, elements);
+            }
+
+            case TAG_Compound: {
+                Tag[] tags = new Tag[children.length + 1];
+                for (int i = 0; i < children.length; i++)
+                    tags[i] = children[i].toTag();
+
+                tags[children.length] = new Tag(Type.TAG_End, null, null);
+
+                return new Tag(type, name, tags);
+            }
+
+            default:
+                return new Tag(type, name, value);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.io.*;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -290,6 +291,23 @@ public class Tag {
         }
     }
 
+    /**
+     * Find a direct child with the specified name in a TAG_Compound, without looking into nested tags like
+     * {@link #findTagByName(String)} does. For many lookups in a big compound, see {@link NBT}.
+     *
+     * @param name the name to look for.
+     * @return the first child with that name, or null if there is none or this isn't a TAG_Compound.
+     */
+    public Tag getChild(String name) {
+        if (type != Type.TAG_Compound)
+            return null;
+        for (Tag subtag : (Tag[]) value) {
+            if (name.equals(subtag.getName()))
+                return subtag;
+        }
+        return null;
+    }
+
     /**
      * Find the first nested tag with specified name in a TAG_Compound.
      *
@@ -368,6 +386,17 @@ public class Tag {
         return new Tag(Type.TAG_Compound, null, tPayload);
     }
 
+    /**
+     * Read a single tag of which the type and name were already read, for reading a stream a piece at a time.
+     *
+     * @param dis stream to read from, without GZIP
+     * @return the tag, with no hash
+     * @throws IOException if there was no valid NBT payload or if another IOException occurred.
+     */
+    public static Tag readTag(DataInputStream dis, Type type, String name) throws IOException {
+        return new Tag(type, name, readPayload(dis, (byte) type.ordinal()));
+    }
+
     private static Object readPayload(DataInputStream dis, byte type) throws IOException {
         switch (type) {
         case 0:
@@ -404,19 +433,21 @@ public class Tag {
                 return lo;
         case 10:
             byte stt;
-            Tag[] tags = new Tag[0];
+            ArrayList<Tag> tags = new ArrayList<>();
             do {
                 stt = dis.readByte();
                 String name = null;
                 if (stt != 0) {
                     name = dis.readUTF();
                 }
-                Tag[] newTags = new Tag[tags.length + 1];
-                System.arraycopy(tags, 0, newTags, 0, tags.length);
-                newTags[tags.length] = new Tag(Type.values()[stt], name, readPayload(dis, stt));
-                tags = newTags;
+                tags.add(new Tag(Type.values()[stt], name, readPayload(dis, stt)));
             } while (stt != 0);
-            return tags;
+            return tags.toArray(new Tag[tags.size()]);
+        case 11:
+            int[] ia = new int[dis.readInt()];
+            for (int i = 0; i < ia.length; i++)
+                ia[i] = dis.readInt();
+            return ia;
         }
         return null;
     }
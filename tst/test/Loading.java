@@ -278,7 +278,7 @@ public class Loading {
 		try {
 			world = simulator.createWorld();
 			world.createInstance();
-			controller = new SimController(world);
+			controller = new SimController(world, "Loading");
 			
 		} catch (IllegalAccessException | IllegalArgumentException
 				| InvocationTargetException | InstantiationException e) {
@@ -49,7 +49,7 @@ public class McMechanics {
 		try {
 			world = simulator.createWorld();
 			world.createInstance();
-            SimController controller = new SimController(world);
+            SimController controller = new SimController(world, schematic);
 			
 			Tag schematicTag = Tag.readFrom(new FileInputStream(file));
 			controller.setSchematic(schematicTag);
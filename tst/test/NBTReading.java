@@ -0,0 +1,238 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+import utils.NBT;
+import utils.Tag;
+import utils.Tag.Type;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that what {@link Tag} writes is read back by {@link NBT} as it was, that fields are found by name the same
+ * way, and that going from one to the other and back changes nothing. These don't need Minecraft, the tags are made up.
+ */
+public class NBTReading {
+
+	private Tag tag;
+	private NBT nbt;
+
+	@Before
+	public void setUp() throws IOException {
+
+		Tag[] tileTicks = new Tag[3];
+
+		for (int i = 0; i < tileTicks.length; i++)
+			tileTicks[i] = new Tag(Type.TAG_Compound, null, new Tag[]{
+					new Tag(Type.TAG_Int, "x", i),
+					new Tag(Type.TAG_Int, "y", -1),
+					new Tag(Type.TAG_Int, "z", 70000),
+					new Tag(Type.TAG_String, "i", "minecraft:unpowered_repeater"),
+					new Tag(Type.TAG_Int, "t", i * 2),
+					new Tag(Type.TAG_Int, "p", -i),
+					new Tag(Type.TAG_End, "", null)});
+
+		tag = new Tag(Type.TAG_Compound, "Schematic", new Tag[]{
+				new Tag(Type.TAG_Byte, "Byte", (byte) -3),
+				new Tag(Type.TAG_Short, "Short", (short) 300),
+				new Tag(Type.TAG_Int, "Int", Integer.MIN_VALUE),
+				new Tag(Type.TAG_Long, "Long", Long.MAX_VALUE),
+				new Tag(Type.TAG_Float, "Float", 1.5f),
+				new Tag(Type.TAG_Double, "Double", -0.1),
+				new Tag(Type.TAG_String, "String", "Alpha"),
+				new Tag(Type.TAG_Byte_Array, "Bytes", new byte[]{1, -2, 3}),
+				new Tag(Type.TAG_Int_Array, "Ints", new int[]{4, -5, 6}),
+				new Tag(Type.TAG_List, "TileTicks", tileTicks),
+				new Tag("Entities", Type.TAG_Compound),
+				// The same name twice, the first one is what's found
+				new Tag(Type.TAG_Int, "Int", 1),
+				new Tag(Type.TAG_End, "", null)});
+
+		nbt = write(tag);
+	}
+
+	@Test
+	public void testNumbers() {
+
+		assertEquals(Type.TAG_Compound, nbt.getType());
+		assertEquals("Schematic", nbt.getName());
+
+		assertEquals(-3, nbt.get("Byte").getByte());
+		assertEquals(300, nbt.get("Short").getShort());
+		assertEquals(Integer.MIN_VALUE, nbt.getInt("Int"));
+		assertEquals(Long.MAX_VALUE, nbt.get("Long").getLong());
+		assertEquals(1.5f, nbt.get("Float").getFloat(), 0);
+		assertEquals(-0.1, nbt.get("Double").getDouble(), 0);
+	}
+
+	@Test
+	public void testValues() {
+
+		assertEquals("Alpha", nbt.getString("String"));
+		assertArrayEquals(new byte[]{1, -2, 3}, nbt.get("Bytes").getByteArray());
+		assertArrayEquals(new int[]{4, -5, 6}, nbt.get("Ints").getIntArray());
+	}
+
+	@Test
+	public void testLists() {
+
+		NBT tileTicks = nbt.get("TileTicks");
+		Tag[] expected = (Tag[]) tag.getChild("TileTicks").getValue();
+
+		assertEquals(Type.TAG_List, tileTicks.getType());
+		assertEquals(Type.TAG_Compound, tileTicks.getListType());
+		assertEquals(expected.length, tileTicks.size());
+
+		for (int i = 0; i < expected.length; i++) {
+			NBT tileTick = tileTicks.get(i);
+
+			assertEquals("", tileTick.getName());
+			assertEquals(6, tileTick.size());
+
+			for (String field : new String[]{"x", "y", "z", "t", "p"})
+				assertEquals(expected[i].getChild(field).getValue(), tileTick.getInt(field));
+
+			assertEquals(expected[i].getChild("i").getValue(), tileTick.getString("i"));
+		}
+
+		// An empty list still knows what it would hold
+		NBT entities = nbt.get("Entities");
+
+		assertEquals(0, entities.size());
+		assertEquals(Type.TAG_Compound, entities.getListType());
+	}
+
+	@Test
+	public void testLookups() {
+
+		// Found like Tag finds them, only the direct children and the first of a name
+		assertEquals(tag.getChild("Int").getValue(), nbt.getInt("Int"));
+		assertNull(nbt.get("x"));
+		assertNull(nbt.get("Missing"));
+		assertNull(nbt.get("String").get("String"));
+
+		// The TAG_End isn't kept, it's written again
+		assertEquals(12, nbt.size());
+		assertSame(nbt.get(0), nbt.get("Byte"));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+
+		// Converted instead of read, it's the same tree
+		NBT converted = NBT.fromTag(tag);
+
+		assertArrayEquals(bytes(nbt), bytes(converted));
+		assertEquals(nbt.getInt("Int"), converted.getInt("Int"));
+		assertEquals(nbt.get("TileTicks").size(), converted.get("TileTicks").size());
+
+		// And back, byte for byte what it was
+		assertArrayEquals(bytes(tag), bytes(converted.toTag()));
+		assertArrayEquals(bytes(tag), bytes(nbt.toTag()));
+
+		// An empty list keeps its type both ways
+		assertEquals(Type.TAG_Compound, NBT.fromTag(nbt.get("Entities").toTag()).getListType());
+	}
+
+	@Test
+	public void testFind() {
+
+		// Deeper than get looks, the direct children first
+		assertNull(nbt.get("p"));
+		assertEquals(0, nbt.find("p").getInt());
+		assertSame(nbt.get("Int"), nbt.find("Int"));
+		assertNull(nbt.find("Missing"));
+	}
+
+	@Test
+	public void testBuilder() throws IOException {
+
+		NBT built = NBT.compound("Schematic")
+				.add(NBT.ofShort("Width", (short) 3))
+				.add(NBT.list("TileTicks", Type.TAG_Compound)
+						.add(NBT.compound(null).add(NBT.ofInt("x", 1)).add(NBT.ofString("i", "minecraft:stone")).build())
+						.build())
+				.build();
+
+		NBT read = write(built.toTag());
+
+		assertEquals(3, read.get("Width").getShort());
+		assertEquals(1, read.get("TileTicks").get(0).getInt("x"));
+		assertEquals("minecraft:stone", read.get("TileTicks").get(0).getString("i"));
+		assertArrayEquals(bytes(built), bytes(read));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongListType() {
+		NBT.list("TileTicks", Type.TAG_Compound).add(NBT.ofInt("x", 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingField() {
+		nbt.getInt("Missing");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testWrongType() {
+		nbt.getInt("Short");
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownType() throws IOException {
+		NBT.readType(new DataInputStream(new ByteArrayInputStream(new byte[]{(byte) Type.values().length})));
+	}
+
+	private static byte[] bytes(Tag tag) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream dos = new DataOutputStream(bytes)) {
+			tag.writePayload(dos);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	private static byte[] bytes(NBT nbt) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream dos = new DataOutputStream(bytes)) {
+			nbt.writePayload(dos);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes a tag the way a schematic is written, then reads it back the way a schematic is read.
+	 */
+	private static NBT write(Tag tag) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream dos = new DataOutputStream(bytes)) {
+			dos.writeByte(tag.getType().ordinal());
+			dos.writeUTF(tag.getName());
+			tag.writePayload(dos);
+		}
+
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			Type type = NBT.readType(dis);
+			NBT nbt = NBT.read(dis, type, dis.readUTF());
+
+			assertEquals("Everything that was written is read", -1, dis.read());
+
+			return nbt;
+		}
+	}
+}
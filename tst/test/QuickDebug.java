@@ -62,7 +62,7 @@ public class QuickDebug {
         try {
             SimWorld world = simulator.createWorld();
             world.createInstance();
-            SimController controller = new SimController(world);
+            SimController controller = new SimController(world, schematic.getName());
 
             Tag schematicTag = Tag.readFrom(new FileInputStream(schematic));
             controller.setSchematic(schematicTag);
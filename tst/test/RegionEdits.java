@@ -0,0 +1,106 @@
+package test;
+
+import logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import presentation.controllers.SimController;
+import presentation.objects.Block;
+import sim.constants.Constants;
+import sim.constants.Globals;
+import sim.logic.SimWorld;
+import sim.logic.Simulator;
+import utils.Tag;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that setting a box of blocks at once leaves the world like setting them one by one would. The box schematic is
+ * bedrock all around, with air in the middle.
+ */
+public class RegionEdits {
+
+	private static final byte BEDROCK = 7, CHEST = 54, TRAPDOOR = 96, REDSTONEBLOCK = (byte) 152;
+
+	// Facing north, so it hangs on the bedrock behind it, and open
+	private static final byte TRAPDOOR_OPEN = 4;
+
+	private Simulator simulator;
+	private SimWorld world;
+
+    private static final String SCHEMATIC = "3x3x3-box.schematic";
+
+	@Before
+	public void setUp() throws Exception {
+
+		Log.setTest(true);
+		simulator = new Simulator(Constants.MCPCONFFOLDER, Globals.getMinecraftFolder());
+
+		File file = new File("schems/tests/" + SCHEMATIC);
+
+		try {
+			world = simulator.createWorld();
+			world.createInstance();
+            SimController controller = new SimController(world, SCHEMATIC);
+
+			Tag schematic = Tag.readFrom(new FileInputStream(file));
+			controller.setSchematic(schematic);
+
+		} catch (NoSuchAlgorithmException | IOException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | InstantiationException e) {
+
+			fail("Failed to open " + SCHEMATIC);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+
+		Log.setTest(false);
+	}
+
+	/**
+	 * An open trapdoor next to a redstone block that's taken away has to close. It only looks at its power again when
+	 * the neighbour that changed could give power, so it has to be told that neighbour was a redstone block, not what
+	 * it is now.
+	 */
+	@Test
+	public void testNotifiedWithOldBlock() throws Exception {
+
+		world.setBlock(0, 1, 1, REDSTONEBLOCK, (byte) 0, false);
+		world.setBlock(1, 1, 1, TRAPDOOR, TRAPDOOR_OPEN, false);
+
+		assertEquals(1, world.fill(0, 1, 1, 1, 1, 1, Block.getChar(BEDROCK, (byte) 0), true));
+
+		char trapdoor = world.getBlocks()[1][1][1];
+
+		assertEquals(TRAPDOOR, Block.getId(trapdoor));
+		assertEquals("The trapdoor closed", 0, Block.getData(trapdoor) & TRAPDOOR_OPEN);
+	}
+
+	/**
+	 * Blocks with a tile entity go through Minecraft, so placing one makes its tile entity and taking it away again
+	 * removes it.
+	 */
+	@Test
+	public void testTileEntities() throws Exception {
+
+		assertEquals(0, world.getTickableTileEntityCount());
+
+		assertEquals(1, world.setRegion(1, 1, 1, 1, 1, 1, new char[]{Block.getChar(CHEST, (byte) 2)}, true));
+		assertEquals(CHEST, Block.getId(world.getBlocks()[1][1][1]));
+		assertEquals("The chest has its tile entity", 1, world.getTickableTileEntityCount());
+
+		assertEquals(1, world.fill(1, 1, 1, 1, 1, 1, (char) 0, true));
+		world.tickWorld();
+
+		assertEquals(0, Block.getId(world.getBlocks()[1][1][1]));
+		assertEquals("The chest's tile entity is gone", 0, world.getTickableTileEntityCount());
+	}
+}
@@ -48,7 +48,7 @@ public class SetBlock {
 		try {
 			world = simulator.createWorld();
 			world.createInstance();
-            SimController controller = new SimController(world);
+            SimController controller = new SimController(world, SCHEMATIC);
 			
 			Tag schematic = Tag.readFrom(new FileInputStream(file));
 			controller.setSchematic(schematic);
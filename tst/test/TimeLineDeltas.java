@@ -0,0 +1,431 @@
+package test;
+
+import org.junit.Before;
+import org.junit.Test;
+import presentation.gui.time.CheckpointIndex;
+import presentation.gui.time.TimeLine;
+import presentation.gui.time.TimeLineSpill;
+import sim.objects.SchematicState;
+import utils.Tag;
+import utils.Tag.Type;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the delta compressed time line gives back exactly what was put in, no matter how it is walked.
+ * These don't need Minecraft, the schematics are made up.
+ */
+public class TimeLineDeltas {
+
+	private static final int SIZE = 16;
+	private static final int TICKS = 60;
+
+	private Random random;
+	private List<Tag> schematics;
+
+	@Before
+	public void setUp() {
+
+		random = new Random(42);
+		schematics = new ArrayList<>();
+
+		byte[] ids = new byte[SIZE * SIZE * SIZE];
+		byte[] data = new byte[SIZE * SIZE * SIZE];
+
+		for (int tick = 0; tick < TICKS; tick++) {
+
+			for (int i = 0; i < 20; i++) {
+				int index = random.nextInt(ids.length);
+				ids[index] = (byte) random.nextInt(200);
+				data[index] = (byte) random.nextInt(16);
+			}
+
+			schematics.add(createSchematic(ids, data, tick));
+		}
+	}
+
+	@Test
+	public void testSteppingBackAndForth() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 8, 1, false);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		assertTrue(timeLine.atEnd());
+		assertSchematic(TICKS - 1, timeLine.get());
+
+		for (int tick = TICKS - 2; tick >= 0; tick--)
+			assertSchematic(tick, timeLine.prev());
+
+		assertTrue(timeLine.atStart());
+
+		for (int tick = 1; tick < TICKS; tick++)
+			assertSchematic(tick, timeLine.next());
+	}
+
+	@Test
+	public void testSeeking() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 8, 1, false);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		for (int i = 0; i < 100; i++) {
+			int tick = random.nextInt(TICKS);
+			assertSchematic(tick, timeLine.getAtTick(tick));
+		}
+
+		assertSchematic(0, timeLine.first());
+		assertSchematic(TICKS - 1, timeLine.last());
+	}
+
+	@Test
+	public void testEviction() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 4, 1, false);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		long budget = timeLine.getRetainedBytes() / 2;
+		timeLine.setBudget(budget);
+
+		assertTrue(timeLine.getRetainedBytes() <= budget);
+		assertEquals(TICKS - 1, timeLine.getLastTick());
+		assertEquals(timeLine.getLastTick() - timeLine.getFirstTick() + 1, timeLine.getEntryCount());
+
+		int first = timeLine.getFirstTick();
+		assertSchematic(first, timeLine.first());
+
+		for (int tick = first + 1; tick < TICKS; tick++)
+			assertSchematic(tick, timeLine.next());
+	}
+
+	@Test
+	public void testThinning() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 4, 4, true);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		long budget = timeLine.getRetainedBytes() * 2 / 3;
+		timeLine.setBudget(budget);
+
+		assertTrue(timeLine.getRetainedBytes() <= budget);
+		assertTrue(timeLine.getEntryCount() < timeLine.getLastTick() - timeLine.getFirstTick() + 1);
+
+		// Whatever is left should still be exact, both walking and seeking
+		assertSchematic(timeLine.getFirstTick(), timeLine.first());
+
+		while (!timeLine.atEnd()) {
+			Tag schematic = timeLine.next();
+			assertSchematic(timeLine.getTick(), schematic);
+			assertSchematic(timeLine.getTick(), timeLine.getAtTick(timeLine.getTick()));
+		}
+	}
+
+	@Test
+	public void testSpilling() throws IOException {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 4, 1, true);
+		timeLine.setSpill(new TimeLineSpill(Files.createTempDirectory("timeline").toFile(), 4096, 8));
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		// Nothing is lost, most of it just isn't on the heap anymore
+		timeLine.setBudget(timeLine.getRetainedBytes() / 4);
+
+		assertEquals(0, timeLine.getFirstTick());
+		assertEquals(TICKS, timeLine.getEntryCount());
+		assertTrue(timeLine.getSpilledBytes() > 0);
+
+		for (int tick = TICKS - 2; tick >= 0; tick--)
+			assertSchematic(tick, timeLine.prev());
+
+		for (int i = 0; i < 100; i++) {
+			int tick = random.nextInt(TICKS);
+			assertSchematic(tick, timeLine.getAtTick(tick));
+		}
+
+		// Going back to a spilled tick and changing it
+		timeLine.first();
+		for (int tick = 1; tick <= 5; tick++)
+			timeLine.next();
+
+		timeLine.set(schematics.get(40));
+		timeLine.add(schematics.get(41), 6);
+
+		assertSchematic(4, timeLine.getAtTick(4));
+		assertSchematic(40, timeLine.getAtTick(5));
+		assertSchematic(41, timeLine.last());
+		assertSchematic(40, timeLine.prev());
+		assertSchematic(4, timeLine.prev());
+
+		timeLine.setSpill(null);
+	}
+
+	@Test
+	public void testCheckpoints() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 4, 1, false);
+		CheckpointIndex checkpoints = new CheckpointIndex(10, 3);
+		timeLine.setCheckpoints(checkpoints);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		timeLine.setBudget(timeLine.getRetainedBytes() / 4);
+
+		// The checkpoints outlive the ticks, but got thinned to every 20 ticks
+		assertEquals(-1, timeLine.getTickAtOrBefore(0));
+		assertEquals(0, checkpoints.getTickAtOrBefore(15));
+		assertEquals(20, checkpoints.getTickAtOrBefore(39));
+		assertEquals(40, checkpoints.getTickAtOrBefore(TICKS - 1));
+		assertSchematic(0, checkpoints.get(0));
+		assertSchematic(40, checkpoints.get(40));
+
+		// An edit is pinned, and whatever came after it is forgotten
+		while (timeLine.getTick() > 50)
+			timeLine.prev();
+
+		timeLine.set(schematics.get(20));
+
+		assertEquals(50, checkpoints.getTickAtOrBefore(TICKS - 1));
+		assertSchematic(20, checkpoints.get(50));
+		assertEquals(40, checkpoints.getTickAtOrBefore(49));
+	}
+
+	@Test
+	public void testCheckpointLimits() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 4, 1, false);
+		CheckpointIndex checkpoints = new CheckpointIndex(10, TICKS, 2, Long.MAX_VALUE);
+		timeLine.setCheckpoints(checkpoints);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < 40; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		// Two edits and the first tick are one pin too many, so the oldest checkpoint goes
+		while (timeLine.getTick() > 35)
+			timeLine.prev();
+
+		timeLine.set(schematics.get(50));
+		timeLine.add(schematics.get(36), 36);
+		timeLine.set(schematics.get(51));
+
+		assertEquals(2, checkpoints.getPinnedCount());
+		assertEquals(10, checkpoints.getFirstTick());
+		assertEquals(-1, checkpoints.getTickAtOrBefore(9));
+		assertSchematic(50, checkpoints.get(35));
+		assertSchematic(51, checkpoints.get(36));
+
+		// The pins count towards the bytes too, only the newest ones fit
+		long size = SchematicState.fromTag(schematics.get(0)).getByteSize();
+
+		checkpoints = new CheckpointIndex(10, TICKS, TICKS, size * 3);
+		timeLine.setCheckpoints(checkpoints);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		assertTrue(checkpoints.getByteSize() <= size * 3);
+		assertEquals(0, checkpoints.getPinnedCount());
+		assertEquals(50, checkpoints.getTickAtOrBefore(TICKS - 1));
+		assertEquals(-1, checkpoints.getTickAtOrBefore(29));
+	}
+
+	@Test
+	public void testSteps() throws IOException {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 4, 4, true);
+		timeLine.setSpill(new TimeLineSpill(Files.createTempDirectory("timeline").toFile(), 4096, 8));
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		timeLine.setBudget(timeLine.getRetainedBytes() / 4);
+
+		// Following the steps by hand, across the heap and the disk, should end up where the time line does
+		SchematicState state = SchematicState.fromTag(timeLine.get());
+
+		while (!timeLine.atStart()) {
+			state.apply(timeLine.getStep(false), false);
+			assertSchematic(timeLine.getTick() - 1, state.toTag());
+			timeLine.prev();
+		}
+
+		while (!timeLine.atEnd()) {
+			state.apply(timeLine.getStep(true), true);
+			timeLine.next();
+			assertSchematic(timeLine.getTick(), state.toTag());
+		}
+
+		timeLine.setSpill(null);
+	}
+
+	@Test
+	public void testSetDiscardsTheFuture() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 8, 1, false);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < 30; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		for (int tick = 29; tick > 12; tick--)
+			timeLine.prev();
+
+		timeLine.set(schematics.get(40));
+
+		assertTrue(timeLine.atEnd());
+		assertSchematic(40, timeLine.get());
+		assertSchematic(11, timeLine.prev());
+		assertSchematic(40, timeLine.next());
+	}
+
+	@Test
+	public void testSetOnlyChangedBlocks() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 8, 1, false);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < 30; tick++)
+			timeLine.add(schematics.get(tick), tick);
+
+		for (int tick = 29; tick > 12; tick--)
+			timeLine.prev();
+
+		// An edit of tick 12, only the edited blocks are given
+		byte[] ids = ((byte[]) schematics.get(12).getChild("Blocks").getValue()).clone();
+		byte[] data = ((byte[]) schematics.get(12).getChild("Data").getValue()).clone();
+		int[] edited = {7, 300, 4000};
+
+		for (int i : edited)
+			ids[i]++;
+
+		timeLine.set(createSchematic(ids, data, 12), edited);
+
+		assertArrayEquals(ids, (byte[]) timeLine.get().getChild("Blocks").getValue());
+		assertSchematic(11, timeLine.prev());
+		assertArrayEquals(ids, (byte[]) timeLine.next().getChild("Blocks").getValue());
+	}
+
+	@Test
+	public void testOnlyChangedBlocks() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 8, 1, false);
+		timeLine.init(schematics.get(0), 0);
+
+		for (int tick = 1; tick < TICKS; tick++) {
+			byte[] before = (byte[]) schematics.get(tick - 1).findTagByName("Blocks").getValue();
+			byte[] beforeData = (byte[]) schematics.get(tick - 1).findTagByName("Data").getValue();
+			byte[] after = (byte[]) schematics.get(tick).findTagByName("Blocks").getValue();
+			byte[] afterData = (byte[]) schematics.get(tick).findTagByName("Data").getValue();
+
+			// What changed, and every 100th block that didn't, like a change report with some noise in it
+			List<Integer> changed = new ArrayList<>();
+			for (int i = 0; i < before.length; i++)
+				if (before[i] != after[i] || beforeData[i] != afterData[i] || i % 100 == 0)
+					changed.add(i);
+
+			int[] candidates = new int[changed.size()];
+			for (int i = 0; i < candidates.length; i++)
+				candidates[i] = changed.get(i);
+
+			timeLine.add(schematics.get(tick), tick, candidates);
+		}
+
+		for (int tick = TICKS - 2; tick >= 0; tick--)
+			assertSchematic(tick, timeLine.prev());
+
+		for (int tick = 1; tick < TICKS; tick++)
+			assertSchematic(tick, timeLine.next());
+	}
+
+	@Test
+	public void testSkippedTicks() {
+
+		TimeLine timeLine = new TimeLine(Long.MAX_VALUE, 4, 1, false);
+		CheckpointIndex checkpoints = new CheckpointIndex(10, TICKS);
+		timeLine.setCheckpoints(checkpoints);
+		timeLine.init(schematics.get(0), 0);
+
+		// Every 7th tick, as if the ones in between were skipped for being idle
+		for (int i = 1; i < TICKS; i++)
+			timeLine.add(schematics.get(i), i * 7);
+
+		assertEquals((TICKS - 1) * 7, timeLine.getLastTick());
+		assertEquals(35, timeLine.getTickAtOrBefore(38));
+		assertSchematic(5, timeLine.getAtTick(38));
+
+		// A checkpoint is taken at the first tick past every multiple of the interval
+		assertEquals(0, checkpoints.getTickAtOrBefore(13));
+		assertEquals(14, checkpoints.getTickAtOrBefore(20));
+		assertEquals(21, checkpoints.getTickAtOrBefore(34));
+		assertSchematic(3, checkpoints.get(21));
+	}
+
+	private void assertSchematic(int tick, Tag actual) {
+
+		Tag expected = schematics.get(tick);
+
+		assertArrayEquals("Blocks of tick " + tick, (byte[]) expected.findTagByName("Blocks").getValue(),
+				(byte[]) actual.findTagByName("Blocks").getValue());
+		assertArrayEquals("Data of tick " + tick, (byte[]) expected.findTagByName("Data").getValue(),
+				(byte[]) actual.findTagByName("Data").getValue());
+
+		Tag[] expectedTicks = (Tag[]) expected.findTagByName("TileTicks").getValue();
+		Tag[] actualTicks = (Tag[]) actual.findTagByName("TileTicks").getValue();
+
+		assertEquals("Tile ticks of tick " + tick, expectedTicks.length, actualTicks.length);
+
+		for (int i = 0; i < expectedTicks.length; i++)
+			assertEquals(expectedTicks[i].findTagByName("t").getValue(), actualTicks[i].findTagByName("t").getValue());
+	}
+
+	private Tag createSchematic(byte[] ids, byte[] data, int tick) {
+
+		Tag[] tileTicks = new Tag[tick % 5 + 1];
+
+		for (int i = 0; i < tileTicks.length; i++)
+			tileTicks[i] = new Tag(Type.TAG_Compound, null, new Tag[]{
+					new Tag(Type.TAG_Int, "x", i),
+					new Tag(Type.TAG_Int, "y", 1),
+					new Tag(Type.TAG_Int, "z", 2),
+					new Tag(Type.TAG_String, "i", "minecraft:unpowered_repeater"),
+					new Tag(Type.TAG_Int, "t", tick + i),
+					new Tag(Type.TAG_Int, "p", 0),
+					new Tag(Type.TAG_End, "", null)});
+
+		return new Tag(Type.TAG_Compound, "Schematic", new Tag[]{
+				new Tag(Type.TAG_Short, "Height", (short) SIZE),
+				new Tag(Type.TAG_Short, "Length", (short) SIZE),
+				new Tag(Type.TAG_Short, "Width", (short) SIZE),
+				new Tag(Type.TAG_String, "Materials", "Alpha"),
+				new Tag(Type.TAG_Byte_Array, "Data", data.clone()),
+				new Tag(Type.TAG_Byte_Array, "Blocks", ids.clone()),
+				new Tag(Type.TAG_List, "TileTicks", tileTicks),
+				new Tag(Type.TAG_End, "", null)});
+	}
+}